@@ -15,7 +15,6 @@
  */
 package com.ibatis.common.jdbc;
 
-import com.ibatis.common.beans.ClassInfo;
 import com.ibatis.common.exception.NestedRuntimeException;
 import com.ibatis.common.resources.Resources;
 import com.ibatis.common.logging.LogFactory;
@@ -23,9 +22,7 @@ import com.ibatis.common.logging.Log;
 
 import javax.sql.DataSource;
 import java.io.PrintWriter;
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.lang.ref.WeakReference;
 import java.sql.*;
 import java.util.*;
 
@@ -47,7 +44,16 @@ import java.util.*;
  * Pool.PingEnabled
  * Pool.PingConnectionsOlderThan
  * Pool.PingConnectionsNotUsedFor
+ * Pool.FairHandoff
  * Pool.QuietMode
+ * <p/>
+ * MAINTENANCE PROPERTIES (a background thread runs if any is set)
+ * -------------------
+ * Pool.MinimumIdleConnections
+ * Pool.IdleTimeout
+ * Pool.MaximumLifetime
+ * Pool.ValidateIdleConnections
+ * Pool.MaintenanceInterval
  */
 public class SimpleDataSource implements DataSource {
 
@@ -69,11 +75,20 @@ public class SimpleDataSource implements DataSource {
   private static final String PROP_POOL_PING_CONN_OLDER_THAN = "Pool.PingConnectionsOlderThan";
   private static final String PROP_POOL_PING_ENABLED = "Pool.PingEnabled";
   private static final String PROP_POOL_PING_CONN_NOT_USED_FOR = "Pool.PingConnectionsNotUsedFor";
+  private static final String PROP_POOL_FAIR_HANDOFF = "Pool.FairHandoff";
+  private static final String PROP_POOL_MIN_IDLE_CONN = "Pool.MinimumIdleConnections";
+  private static final String PROP_POOL_IDLE_TIMEOUT = "Pool.IdleTimeout";
+  private static final String PROP_POOL_MAX_LIFETIME = "Pool.MaximumLifetime";
+  private static final String PROP_POOL_VALIDATE_IDLE_CONN = "Pool.ValidateIdleConnections";
+  private static final String PROP_POOL_MAINTENANCE_INTERVAL = "Pool.MaintenanceInterval";
   private int expectedConnectionTypeCode;
   // Additional Driver Properties prefix
   private static final String ADD_DRIVER_PROPS_PREFIX = "Driver.";
   private static final int ADD_DRIVER_PROPS_PREFIX_LENGTH = ADD_DRIVER_PROPS_PREFIX.length();
 
+  // Upper limits of the buckets of the wait time histogram (ms)
+  private static final long[] WAIT_TIME_LIMITS = {10, 100, 1000, 10000};
+
   // ----- BEGIN: FIELDS LOCKED BY POOL_LOCK -----
   private final Object POOL_LOCK = new Object();
   private List idleConnections = new ArrayList();
@@ -86,6 +101,13 @@ public class SimpleDataSource implements DataSource {
   private long accumulatedWaitTime = 0;
   private long hadToWaitCount = 0;
   private long badConnectionCount = 0;
+  private long leakedStatementCount = 0;
+  // connections being created, checked or returned outside of the lock, which still count as active
+  private int pendingConnectionCount = 0;
+  // threads waiting for a connection, oldest first (fair handoff only)
+  private LinkedList waiters = new LinkedList();
+  private int waitingCount = 0;
+  private long[] waitTimeHistogram = new long[WAIT_TIME_LIMITS.length + 1];
   // ----- END: FIELDS LOCKED BY POOL_LOCK -----
 
   // ----- BEGIN: PROPERTY FIELDS FOR CONFIGURATION -----
@@ -105,8 +127,17 @@ public class SimpleDataSource implements DataSource {
   private boolean poolPingEnabled;
   private int poolPingConnectionsOlderThan;
   private int poolPingConnectionsNotUsedFor;
+  private boolean poolFairHandoff;
+  private int poolMinimumIdleConnections;
+  private int poolIdleTimeout;
+  private int poolMaximumLifetime;
+  private boolean poolValidateIdleConnections;
+  private int poolMaintenanceInterval;
   //----- END: PROPERTY FIELDS FOR CONFIGURATION -----
 
+  // locked by POOL_LOCK, null once the pool has been closed
+  private Timer maintenanceTimer;
+
   /**
    * Constructor to allow passing in a map of properties for configuration
    *
@@ -173,6 +204,34 @@ public class SimpleDataSource implements DataSource {
             ? Integer.parseInt((String) props.get(PROP_POOL_PING_CONN_NOT_USED_FOR))
             : 0;
 
+        poolFairHandoff =
+            props.containsKey(PROP_POOL_FAIR_HANDOFF)
+                && Boolean.valueOf((String) props.get(PROP_POOL_FAIR_HANDOFF)).booleanValue();
+
+        poolMinimumIdleConnections =
+            props.containsKey(PROP_POOL_MIN_IDLE_CONN)
+            ? Integer.parseInt((String) props.get(PROP_POOL_MIN_IDLE_CONN))
+            : 0;
+
+        poolIdleTimeout =
+            props.containsKey(PROP_POOL_IDLE_TIMEOUT)
+            ? Integer.parseInt((String) props.get(PROP_POOL_IDLE_TIMEOUT))
+            : 0;
+
+        poolMaximumLifetime =
+            props.containsKey(PROP_POOL_MAX_LIFETIME)
+            ? Integer.parseInt((String) props.get(PROP_POOL_MAX_LIFETIME))
+            : 0;
+
+        poolValidateIdleConnections =
+            props.containsKey(PROP_POOL_VALIDATE_IDLE_CONN)
+                && Boolean.valueOf((String) props.get(PROP_POOL_VALIDATE_IDLE_CONN)).booleanValue();
+
+        poolMaintenanceInterval =
+            props.containsKey(PROP_POOL_MAINTENANCE_INTERVAL)
+            ? Integer.parseInt((String) props.get(PROP_POOL_MAINTENANCE_INTERVAL))
+            : 30000;
+
         jdbcDefaultAutoCommit =
             props.containsKey(PROP_JDBC_DEFAULT_AUTOCOMMIT)
                 && Boolean.valueOf((String) props.get(PROP_JDBC_DEFAULT_AUTOCOMMIT)).booleanValue();
@@ -194,6 +253,11 @@ public class SimpleDataSource implements DataSource {
         expectedConnectionTypeCode = assembleConnectionTypeCode(jdbcUrl, jdbcUsername, jdbcPassword);
 
         Resources.instantiate(jdbcDriver);
+
+        if (poolMinimumIdleConnections > 0 || poolIdleTimeout > 0 || poolMaximumLifetime > 0
+            || poolValidateIdleConnections) {
+          startMaintenance();
+        }
       }
 
     } catch (Exception e) {
@@ -210,14 +274,14 @@ public class SimpleDataSource implements DataSource {
    * @see javax.sql.DataSource#getConnection()
    */
   public Connection getConnection() throws SQLException {
-    return popConnection(jdbcUsername, jdbcPassword).getProxyConnection();
+    return popConnection(jdbcUsername, jdbcPassword);
   }
 
   /**
    * @see javax.sql.DataSource#getConnection(java.lang.String, java.lang.String)
    */
   public Connection getConnection(String username, String password) throws SQLException {
-    return popConnection(username, password).getProxyConnection();
+    return popConnection(username, password);
   }
 
   /**
@@ -347,6 +411,75 @@ public class SimpleDataSource implements DataSource {
     return poolPingConnectionsOlderThan;
   }
 
+  /**
+   * Getter to tell if returned connections are handed to the longest waiting thread
+   * @return True if waiting threads are served first come, first served
+   */
+  public boolean isPoolFairHandoff() {
+    return poolFairHandoff;
+  }
+
+  /**
+   * Getter for the number of threads waiting for a connection
+   * @return The number of waiting threads
+   */
+  public int getWaitQueueLength() {
+    synchronized (POOL_LOCK) {
+      return poolFairHandoff ? waiters.size() : waitingCount;
+    }
+  }
+
+  /**
+   * Getter for the number of requests that had to wait, by how long they took
+   * (under 10ms, 100ms, 1s, 10s and longer)
+   * @return The counts
+   */
+  public long[] getWaitTimeHistogram() {
+    synchronized (POOL_LOCK) {
+      return (long[]) waitTimeHistogram.clone();
+    }
+  }
+
+  /**
+   * Getter for the number of idle connections kept open by the maintenance thread
+   * @return The minimum number of idle connections
+   */
+  public int getPoolMinimumIdleConnections() {
+    return poolMinimumIdleConnections;
+  }
+
+  /**
+   * Getter for the time a connection can stay idle before it is closed
+   * @return The time (0 to never close idle connections)
+   */
+  public int getPoolIdleTimeout() {
+    return poolIdleTimeout;
+  }
+
+  /**
+   * Getter for the age at which a connection is retired (less a random part of up to a tenth)
+   * @return The age (0 to never retire connections)
+   */
+  public int getPoolMaximumLifetime() {
+    return poolMaximumLifetime;
+  }
+
+  /**
+   * Getter to tell if idle connections are pinged by the maintenance thread
+   * @return True if idle connections are checked in the background
+   */
+  public boolean isPoolValidateIdleConnections() {
+    return poolValidateIdleConnections;
+  }
+
+  /**
+   * Getter for the time between two runs of the maintenance thread
+   * @return The time
+   */
+  public int getPoolMaintenanceInterval() {
+    return poolMaintenanceInterval;
+  }
+
   private int getExpectedConnectionTypeCode() {
     return expectedConnectionTypeCode;
   }
@@ -401,6 +534,16 @@ public class SimpleDataSource implements DataSource {
     }
   }
 
+  /**
+   * Getter for the number of statements that were still open when their connection was returned
+   * @return The number of statements
+   */
+  public long getLeakedStatementCount() {
+    synchronized (POOL_LOCK) {
+      return leakedStatementCount;
+    }
+  }
+
   /**
    * Getter for the number of connections that were claimed before they were returned
    * @return The number of connections
@@ -452,6 +595,12 @@ public class SimpleDataSource implements DataSource {
     buffer.append("\n poolPingQuery                  " + poolPingQuery);
     buffer.append("\n poolPingConnectionsOlderThan   " + poolPingConnectionsOlderThan);
     buffer.append("\n poolPingConnectionsNotUsedFor  " + poolPingConnectionsNotUsedFor);
+    buffer.append("\n poolFairHandoff                " + poolFairHandoff);
+    buffer.append("\n poolMinIdleConnections         " + poolMinimumIdleConnections);
+    buffer.append("\n poolIdleTimeout                " + poolIdleTimeout);
+    buffer.append("\n poolMaxLifetime                " + poolMaximumLifetime);
+    buffer.append("\n poolValidateIdleConnections    " + poolValidateIdleConnections);
+    buffer.append("\n poolMaintenanceInterval        " + poolMaintenanceInterval);
     buffer.append("\n --------------------------------------------------------------");
     buffer.append("\n activeConnections              " + activeConnections.size());
     buffer.append("\n idleConnections                " + idleConnections.size());
@@ -460,45 +609,45 @@ public class SimpleDataSource implements DataSource {
     buffer.append("\n averageCheckoutTime            " + getAverageCheckoutTime());
     buffer.append("\n claimedOverdue                 " + getClaimedOverdueConnectionCount());
     buffer.append("\n averageOverdueCheckoutTime     " + getAverageOverdueCheckoutTime());
+    buffer.append("\n leakedStatements               " + getLeakedStatementCount());
     buffer.append("\n hadToWait                      " + getHadToWaitCount());
     buffer.append("\n averageWaitTime                " + getAverageWaitTime());
+    buffer.append("\n waitQueueLength                " + getWaitQueueLength());
+    long[] histogram = getWaitTimeHistogram();
+    buffer.append("\n waitTimeHistogram              ");
+    for (int i = 0; i < histogram.length; i++) {
+      buffer.append(i < WAIT_TIME_LIMITS.length ? "<" + WAIT_TIME_LIMITS[i] : ">=" + WAIT_TIME_LIMITS[i - 1]);
+      buffer.append("ms:").append(histogram[i]).append(i < histogram.length - 1 ? " " : "");
+    }
     buffer.append("\n badConnectionCount             " + getBadConnectionCount());
     buffer.append("\n===============================================================");
     return buffer.toString();
   }
 
   /**
-   * Closes all of the connections in the pool
+   * Closes all of the connections in the pool.  The pool stays usable, and
+   * its maintenance goes on opening and checking new connections.
    */
   public void forceCloseAll() {
+    List connections = new ArrayList();
     synchronized (POOL_LOCK) {
-      for (int i = activeConnections.size(); i > 0; i--) {
-        try {
-          SimplePooledConnection conn = (SimplePooledConnection) activeConnections.remove(i - 1);
-          conn.invalidate();
-
-          Connection realConn = conn.getRealConnection();
-          if (!realConn.getAutoCommit()) {
-            realConn.rollback();
-          }
-          realConn.close();
-        } catch (Exception e) {
-          // ignore
-        }
+      connections.addAll(activeConnections);
+      connections.addAll(idleConnections);
+      activeConnections.clear();
+      idleConnections.clear();
+      for (int i = 0; i < connections.size(); i++) {
+        ((SimplePooledConnection) connections.get(i)).invalidate();
       }
-      for (int i = idleConnections.size(); i > 0; i--) {
-        try {
-          SimplePooledConnection conn = (SimplePooledConnection) idleConnections.remove(i - 1);
-          conn.invalidate();
-
-          Connection realConn = conn.getRealConnection();
-          if (!realConn.getAutoCommit()) {
-            realConn.rollback();
-          }
-          realConn.close();
-        } catch (Exception e) {
-          // ignore
+    }
+    for (int i = 0; i < connections.size(); i++) {
+      try {
+        Connection realConn = ((SimplePooledConnection) connections.get(i)).getRealConnection();
+        if (!realConn.getAutoCommit()) {
+          realConn.rollback();
         }
+        realConn.close();
+      } catch (Exception e) {
+        // ignore
       }
     }
     if (log.isDebugEnabled()) {
@@ -510,32 +659,46 @@ public class SimpleDataSource implements DataSource {
       throws SQLException {
 
     synchronized (POOL_LOCK) {
-      activeConnections.remove(conn);
-      if (conn.isValid()) {
-        if (idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == getExpectedConnectionTypeCode()) {
-          accumulatedCheckoutTime += conn.getCheckoutTime();
-          if (!conn.getRealConnection().getAutoCommit()) {
-            conn.getRealConnection().rollback();
-          }
-          SimplePooledConnection newConn = new SimplePooledConnection(conn.getRealConnection(), this);
-          idleConnections.add(newConn);
+      if (!removeActiveConnection(conn)) {
+        if (log.isDebugEnabled()) {
+          log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+        }
+        badConnectionCount++;
+        return;
+      }
+      accumulatedCheckoutTime += conn.getCheckoutTime();
+      conn.invalidate();
+      // The slot stays taken while the connection is checked outside of the lock
+      pendingConnectionCount++;
+    }
+
+    int leaked = conn.closeStatements();
+    Connection realConn = conn.getRealConnection();
+    boolean good = pingConnection(conn);
+    if (good) {
+      try {
+        conn.rollbackIfDirty();
+      } catch (SQLException e) {
+        good = false;
+      }
+    }
+
+    boolean pooled = false;
+    synchronized (POOL_LOCK) {
+      pendingConnectionCount--;
+      leakedStatementCount += leaked;
+      if (good) {
+        if (idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == getExpectedConnectionTypeCode()
+            && !isExpired(conn)) {
+          SimplePooledConnection newConn = new SimplePooledConnection(realConn, this);
           newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
           newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
-          conn.invalidate();
+          newConn.copyStateFrom(conn);
+          offerConnection(newConn, true);
+          pooled = true;
           if (log.isDebugEnabled()) {
             log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
           }
-          POOL_LOCK.notifyAll();
-        } else {
-          accumulatedCheckoutTime += conn.getCheckoutTime();
-          if (!conn.getRealConnection().getAutoCommit()) {
-            conn.getRealConnection().rollback();
-          }
-          conn.getRealConnection().close();
-          if (log.isDebugEnabled()) {
-            log.debug("Closed connection " + conn.getRealHashCode() + ".");
-          }
-          conn.invalidate();
         }
       } else {
         if (log.isDebugEnabled()) {
@@ -543,9 +706,31 @@ public class SimpleDataSource implements DataSource {
         }
         badConnectionCount++;
       }
+      signalWaiters();
+    }
+
+    if (!pooled) {
+      closeQuietly(realConn);
+      if (good && log.isDebugEnabled()) {
+        log.debug("Closed connection " + conn.getRealHashCode() + ".");
+      }
     }
   }
 
+  /**
+   * Removes a connection from the active connections by identity, since
+   * equals() also matches a newer wrapper of the same real connection
+   */
+  private boolean removeActiveConnection(SimplePooledConnection conn) {
+    for (int i = 0, n = activeConnections.size(); i < n; i++) {
+      if (activeConnections.get(i) == conn) {
+        activeConnections.remove(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
   private SimplePooledConnection popConnection(String username, String password)
       throws SQLException {
     boolean countedWait = false;
@@ -553,95 +738,177 @@ public class SimpleDataSource implements DataSource {
     long t = System.currentTimeMillis();
     int localBadConnectionCount = 0;
 
+    Waiter waiter = null;
     while (conn == null) {
+      boolean create = false;
       synchronized (POOL_LOCK) {
-        if (idleConnections.size() > 0) {
-          // Pool has available connection
-          conn = (SimplePooledConnection) idleConnections.remove(0);
+        if (waiter != null && waiter.granted) {
+          // A connection or a free slot was handed over
+          conn = waiter.connection;
+          create = conn == null;
+          waiter = null;
+        } else if (poolFairHandoff && !waiters.isEmpty() && waiters.getFirst() != waiter) {
+          // Others have waited longer
+          if (waiter == null) {
+            waiter = new Waiter();
+            waiters.addLast(waiter);
+          }
+        } else if (idleConnections.size() > 0) {
+          // Pool has available connection (the most recently used one is the least likely to be stale)
+          conn = (SimplePooledConnection) idleConnections.remove(idleConnections.size() - 1);
+          pendingConnectionCount++;
           if (log.isDebugEnabled()) {
             log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
           }
         } else {
           // Pool does not have available connection
-          if (activeConnections.size() < poolMaximumActiveConnections) {
-            // Can create new connection
-            if (useDriverProps) {
-              conn = new SimplePooledConnection(DriverManager.getConnection(jdbcUrl, driverProps), this);
-            } else {
-              conn = new SimplePooledConnection(DriverManager.getConnection(jdbcUrl, jdbcUsername, jdbcPassword), this);
-            }
-            Connection realConn = conn.getRealConnection();
-            if (realConn.getAutoCommit() != jdbcDefaultAutoCommit) {
-              realConn.setAutoCommit(jdbcDefaultAutoCommit);
-            }
+          if (activeConnections.size() + pendingConnectionCount < poolMaximumActiveConnections) {
+            // Can create new connection, once a slot is reserved for it
+            pendingConnectionCount++;
+            create = true;
+          } else if (activeConnections.size() > 0
+              && ((SimplePooledConnection) activeConnections.get(0)).getCheckoutTime() > poolMaximumCheckoutTime) {
+            // Can claim overdue connection
+            SimplePooledConnection oldestActiveConnection = (SimplePooledConnection) activeConnections.remove(0);
+            long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
+            claimedOverdueConnectionCount++;
+            accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
+            accumulatedCheckoutTime += longestCheckoutTime;
+            conn = new SimplePooledConnection(oldestActiveConnection.getRealConnection(), this);
+            conn.copyStateFrom(oldestActiveConnection);
+            // The previous holder may still be using it, so whatever it did is rolled back
+            conn.markDirty();
+            oldestActiveConnection.invalidate();
+            pendingConnectionCount++;
             if (log.isDebugEnabled()) {
-              log.debug("Created connection " + conn.getRealHashCode() + ".");
+              log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+            }
+          } else if (poolFairHandoff) {
+            // Must wait, in line
+            if (waiter == null) {
+              waiter = new Waiter();
+              waiters.addLast(waiter);
             }
           } else {
-            // Cannot create new connection
-            SimplePooledConnection oldestActiveConnection = (SimplePooledConnection) activeConnections.get(0);
-            long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
-            if (longestCheckoutTime > poolMaximumCheckoutTime) {
-              // Can claim overdue connection
-              claimedOverdueConnectionCount++;
-              accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-              accumulatedCheckoutTime += longestCheckoutTime;
-              activeConnections.remove(oldestActiveConnection);
-              if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
-                oldestActiveConnection.getRealConnection().rollback();
+            // Must wait
+            try {
+              if (!countedWait) {
+                hadToWaitCount++;
+                countedWait = true;
               }
-              conn = new SimplePooledConnection(oldestActiveConnection.getRealConnection(), this);
-              oldestActiveConnection.invalidate();
               if (log.isDebugEnabled()) {
-                log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+                log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
               }
-            } else {
-              // Must wait
+              long wt = System.currentTimeMillis();
+              waitingCount++;
               try {
-                if (!countedWait) {
-                  hadToWaitCount++;
-                  countedWait = true;
-                }
-                if (log.isDebugEnabled()) {
-                  log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
-                }
-                long wt = System.currentTimeMillis();
                 POOL_LOCK.wait(poolTimeToWait);
-                accumulatedWaitTime += System.currentTimeMillis() - wt;
-              } catch (InterruptedException e) {
-                break;
+              } finally {
+                waitingCount--;
               }
+              accumulatedWaitTime += System.currentTimeMillis() - wt;
+            } catch (InterruptedException e) {
+              break;
             }
+            continue;
           }
         }
-        if (conn != null) {
-          if (conn.isValid()) {
-            if (!conn.getRealConnection().getAutoCommit()) {
-              conn.getRealConnection().rollback();
-            }
-            conn.setConnectionTypeCode(assembleConnectionTypeCode(jdbcUrl, username, password));
-            conn.setCheckoutTimestamp(System.currentTimeMillis());
-            conn.setLastUsedTimestamp(System.currentTimeMillis());
-            activeConnections.add(conn);
-            requestCount++;
-            accumulatedRequestTime += System.currentTimeMillis() - t;
-          } else {
-            if (log.isDebugEnabled()) {
-              log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
-            }
-            badConnectionCount++;
-            localBadConnectionCount++;
-            conn = null;
-            if (localBadConnectionCount > (poolMaximumIdleConnections + 3)) {
-              if (log.isDebugEnabled()) {
-                log.debug("SimpleDataSource: Could not get a good connection to the database.");
-              }
-              throw new SQLException("SimpleDataSource: Could not get a good connection to the database.");
-            }
+        if (waiter != null && (conn != null || create)) {
+          // Served while first in line
+          waiters.remove(waiter);
+          waiter = null;
+        }
+        if (waiter != null && !countedWait) {
+          hadToWaitCount++;
+          countedWait = true;
+        }
+      }
+
+      if (waiter != null) {
+        // Wait outside of the lock to be handed a connection, waking up now and then to claim overdue connections
+        if (log.isDebugEnabled()) {
+          log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+        }
+        long wt = System.currentTimeMillis();
+        try {
+          waiter.await(poolTimeToWait);
+        } catch (InterruptedException e) {
+          abandon(waiter);
+          break;
+        } finally {
+          synchronized (POOL_LOCK) {
+            accumulatedWaitTime += System.currentTimeMillis() - wt;
           }
         }
+        continue;
       }
 
+      // Connecting, pinging and rolling back are done without the lock, in the reserved slot
+      boolean good;
+      if (create) {
+        try {
+          conn = new SimplePooledConnection(newConnection(), this);
+        } catch (SQLException e) {
+          synchronized (POOL_LOCK) {
+            pendingConnectionCount--;
+            signalWaiters();
+          }
+          throw e;
+        } catch (RuntimeException e) {
+          synchronized (POOL_LOCK) {
+            pendingConnectionCount--;
+            signalWaiters();
+          }
+          throw e;
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("Created connection " + conn.getRealHashCode() + ".");
+        }
+        good = true;
+      } else {
+        good = conn.isValid();
+      }
+      if (good) {
+        try {
+          conn.rollbackIfDirty();
+        } catch (SQLException e) {
+          good = false;
+        }
+      }
+
+      synchronized (POOL_LOCK) {
+        pendingConnectionCount--;
+        if (good) {
+          conn.setConnectionTypeCode(assembleConnectionTypeCode(jdbcUrl, username, password));
+          conn.setCheckoutTimestamp(System.currentTimeMillis());
+          conn.setLastUsedTimestamp(System.currentTimeMillis());
+          activeConnections.add(conn);
+          requestCount++;
+          accumulatedRequestTime += System.currentTimeMillis() - t;
+          if (countedWait) {
+            recordWaitTime(System.currentTimeMillis() - t);
+          }
+        } else {
+          if (log.isDebugEnabled()) {
+            log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+          }
+          badConnectionCount++;
+          localBadConnectionCount++;
+          signalWaiters();
+        }
+      }
+
+      if (!good) {
+        closeQuietly(conn.getRealConnection());
+        conn.invalidate();
+        conn = null;
+        if (localBadConnectionCount > (poolMaximumIdleConnections + 3)) {
+          if (log.isDebugEnabled()) {
+            log.debug("SimpleDataSource: Could not get a good connection to the database.");
+          }
+          throw new SQLException("SimpleDataSource: Could not get a good connection to the database.");
+        }
+      }
     }
 
     if (conn == null) {
@@ -654,6 +921,223 @@ public class SimpleDataSource implements DataSource {
     return conn;
   }
 
+  /**
+   * Makes a connection idle, or hands it to the longest waiting thread in
+   * fair handoff mode (the slot of the connection is reserved for that thread).
+   * Must be called with POOL_LOCK held.
+   *
+   * @param conn - the connection
+   * @param mostRecent - true if the connection was just used
+   */
+  private void offerConnection(SimplePooledConnection conn, boolean mostRecent) {
+    if (poolFairHandoff && !waiters.isEmpty()) {
+      pendingConnectionCount++;
+      ((Waiter) waiters.removeFirst()).grant(conn);
+    } else if (mostRecent) {
+      idleConnections.add(conn);
+    } else {
+      idleConnections.add(0, conn);
+    }
+  }
+
+  /**
+   * Lets waiting threads know that connections or slots are available.  In
+   * fair handoff mode the free slots are handed to the longest waiting threads,
+   * otherwise all of them wake up and compete.  Must be called with POOL_LOCK held.
+   */
+  private void signalWaiters() {
+    if (poolFairHandoff) {
+      while (!waiters.isEmpty() && activeConnections.size() + pendingConnectionCount < poolMaximumActiveConnections) {
+        pendingConnectionCount++;
+        ((Waiter) waiters.removeFirst()).grant(null);
+      }
+    } else {
+      POOL_LOCK.notifyAll();
+    }
+  }
+
+  /**
+   * Takes a waiting thread out of line, passing on what it was handed if anything
+   *
+   * @param waiter - the waiter
+   */
+  private void abandon(Waiter waiter) {
+    synchronized (POOL_LOCK) {
+      if (!waiter.granted) {
+        waiters.remove(waiter);
+      } else {
+        pendingConnectionCount--;
+        if (waiter.connection != null) {
+          offerConnection(waiter.connection, true);
+        }
+        signalWaiters();
+      }
+    }
+  }
+
+  private void recordWaitTime(long time) {
+    int i = 0;
+    while (i < WAIT_TIME_LIMITS.length && time >= WAIT_TIME_LIMITS[i]) {
+      i++;
+    }
+    waitTimeHistogram[i]++;
+  }
+
+  private Connection newConnection() throws SQLException {
+    Connection realConn;
+    if (useDriverProps) {
+      realConn = DriverManager.getConnection(jdbcUrl, driverProps);
+    } else {
+      realConn = DriverManager.getConnection(jdbcUrl, jdbcUsername, jdbcPassword);
+    }
+    try {
+      if (realConn.getAutoCommit() != jdbcDefaultAutoCommit) {
+        realConn.setAutoCommit(jdbcDefaultAutoCommit);
+      }
+    } catch (SQLException e) {
+      closeQuietly(realConn);
+      throw e;
+    }
+    return realConn;
+  }
+
+  private void closeQuietly(Connection realConn) {
+    try {
+      realConn.close();
+    } catch (Exception e) {
+      // ignore
+    }
+  }
+
+  private void startMaintenance() {
+    synchronized (POOL_LOCK) {
+      maintenanceTimer = new Timer(true);
+      maintenanceTimer.schedule(new MaintenanceTask(this), 0, poolMaintenanceInterval);
+    }
+  }
+
+  private void stopMaintenance() {
+    synchronized (POOL_LOCK) {
+      if (maintenanceTimer != null) {
+        maintenanceTimer.cancel();
+        maintenanceTimer = null;
+      }
+    }
+  }
+
+  /**
+   * Closes the idle connections that have timed out or expired, pings the
+   * others if asked to, then opens connections up to the minimum number of
+   * idle connections.  Like checkouts, all of the work on connections is done
+   * outside of the lock, in reserved slots.
+   */
+  private void maintain() {
+    try {
+      List closing = new ArrayList();
+      List checking = new ArrayList();
+      synchronized (POOL_LOCK) {
+        for (int i = idleConnections.size() - 1; i >= 0; i--) {
+          SimplePooledConnection conn = (SimplePooledConnection) idleConnections.get(i);
+          if (isExpired(conn)
+              || (poolIdleTimeout > 0 && conn.getTimeElapsedSinceLastUse() > poolIdleTimeout
+              && idleConnections.size() > poolMinimumIdleConnections)) {
+            closing.add(idleConnections.remove(i));
+          } else if (poolValidateIdleConnections && poolPingEnabled) {
+            checking.add(idleConnections.remove(i));
+          }
+        }
+        pendingConnectionCount += closing.size() + checking.size();
+      }
+
+      for (int i = 0; i < closing.size(); i++) {
+        SimplePooledConnection conn = (SimplePooledConnection) closing.get(i);
+        conn.invalidate();
+        closeQuietly(conn.getRealConnection());
+        if (log.isDebugEnabled()) {
+          log.debug("Closed idle connection " + conn.getRealHashCode() + ".");
+        }
+      }
+      for (int i = checking.size() - 1; i >= 0; i--) {
+        SimplePooledConnection conn = (SimplePooledConnection) checking.get(i);
+        if (!pingConnection(conn, true)) {
+          checking.remove(i);
+          conn.invalidate();
+          closeQuietly(conn.getRealConnection());
+          synchronized (POOL_LOCK) {
+            badConnectionCount++;
+          }
+        }
+      }
+
+      List surplus = new ArrayList();
+      synchronized (POOL_LOCK) {
+        pendingConnectionCount -= closing.size() + checking.size();
+        for (int i = 0; i < checking.size(); i++) {
+          SimplePooledConnection conn = (SimplePooledConnection) checking.get(i);
+          if (maintenanceTimer != null && idleConnections.size() < poolMaximumIdleConnections) {
+            offerConnection(conn, false);
+          } else {
+            surplus.add(conn);
+          }
+        }
+        signalWaiters();
+      }
+      for (int i = 0; i < surplus.size(); i++) {
+        closeQuietly(((SimplePooledConnection) surplus.get(i)).getRealConnection());
+      }
+
+      while (true) {
+        synchronized (POOL_LOCK) {
+          if (maintenanceTimer == null
+              || idleConnections.size() >= poolMinimumIdleConnections
+              || activeConnections.size() + idleConnections.size() + pendingConnectionCount >= poolMaximumActiveConnections) {
+            break;
+          }
+          pendingConnectionCount++;
+        }
+        SimplePooledConnection conn = null;
+        try {
+          conn = new SimplePooledConnection(newConnection(), this);
+          if (log.isDebugEnabled()) {
+            log.debug("Created idle connection " + conn.getRealHashCode() + ".");
+          }
+        } finally {
+          synchronized (POOL_LOCK) {
+            pendingConnectionCount--;
+            if (conn != null && maintenanceTimer != null) {
+              conn.setConnectionTypeCode(getExpectedConnectionTypeCode());
+              offerConnection(conn, false);
+              conn = null;
+            }
+            signalWaiters();
+          }
+          if (conn != null) {
+            // the pool was closed meanwhile
+            closeQuietly(conn.getRealConnection());
+          }
+        }
+      }
+    } catch (Exception e) {
+      log.error("SimpleDataSource: Error while maintaining the pool. Cause: " + e.toString(), e);
+    }
+  }
+
+  /**
+   * Tells if a connection has passed its maximum lifetime.  The lifetime of
+   * each connection is shortened by up to a tenth, so that connections opened
+   * together are not all reopened together.
+   *
+   * @param conn - the connection to check
+   * @return True if the connection should be retired
+   */
+  private boolean isExpired(SimplePooledConnection conn) {
+    if (poolMaximumLifetime <= 0) {
+      return false;
+    }
+    int jitter = (conn.getRealHashCode() & Integer.MAX_VALUE) % (poolMaximumLifetime / 10 + 1);
+    return conn.getAge() > poolMaximumLifetime - jitter;
+  }
+
   /**
    * Method to check to see if a connection is still usable
    *
@@ -661,6 +1145,17 @@ public class SimpleDataSource implements DataSource {
    * @return True if the connection is still usable
    */
   private boolean pingConnection(SimplePooledConnection conn) {
+    return pingConnection(conn, false);
+  }
+
+  /**
+   * Method to check to see if a connection is still usable
+   *
+   * @param conn - the connection to check
+   * @param force - true to run the ping query whatever the age of the connection
+   * @return True if the connection is still usable
+   */
+  private boolean pingConnection(SimplePooledConnection conn, boolean force) {
     boolean result = true;
 
     try {
@@ -671,7 +1166,8 @@ public class SimpleDataSource implements DataSource {
 
     if (result) {
       if (poolPingEnabled) {
-        if ((poolPingConnectionsOlderThan > 0 && conn.getAge() > poolPingConnectionsOlderThan)
+        if (force
+            || (poolPingConnectionsOlderThan > 0 && conn.getAge() > poolPingConnectionsOlderThan)
             || (poolPingConnectionsNotUsedFor > 0 && conn.getTimeElapsedSinceLastUse() > poolPingConnectionsNotUsedFor)) {
 
           try {
@@ -683,9 +1179,8 @@ public class SimpleDataSource implements DataSource {
             ResultSet rs = statement.executeQuery(poolPingQuery);
             rs.close();
             statement.close();
-            if (!realConn.getAutoCommit()) {
-              realConn.rollback();
-            }
+            conn.markDirty();
+            conn.rollbackIfDirty();
             result = true;
             if (log.isDebugEnabled()) {
               log.debug("Connection " + conn.getRealHashCode() + " is GOOD!");
@@ -722,28 +1217,92 @@ public class SimpleDataSource implements DataSource {
   }
 
   protected void finalize() throws Throwable {
+    stopMaintenance();
     forceCloseAll();
   }
 
+  /**
+   * Runs the maintenance of a pool.  The task only holds the data source weakly
+   * (and is not an inner class), so an unused pool can still be collected and closed.
+   */
+  private static class MaintenanceTask extends TimerTask {
+
+    private WeakReference reference;
+
+    public MaintenanceTask(SimpleDataSource dataSource) {
+      this.reference = new WeakReference(dataSource);
+    }
+
+    public void run() {
+      SimpleDataSource dataSource = (SimpleDataSource) reference.get();
+      if (dataSource == null) {
+        cancel();
+      } else {
+        dataSource.maintain();
+      }
+    }
+  }
+
+  /**
+   * A thread waiting in line for a connection, in fair handoff mode
+   */
+  private static class Waiter {
+
+    // Set with POOL_LOCK held
+    private boolean granted;
+    private SimplePooledConnection connection;
+
+    /**
+     * Hands a connection (or a free slot, if null) to the waiting thread
+     *
+     * @param connection - the connection
+     */
+    public synchronized void grant(SimplePooledConnection connection) {
+      this.connection = connection;
+      this.granted = true;
+      notify();
+    }
+
+    /**
+     * Waits to be handed a connection or a free slot
+     *
+     * @param timeout - the longest time to wait
+     * @throws InterruptedException - if the thread is interrupted
+     */
+    public synchronized void await(long timeout) throws InterruptedException {
+      if (!granted) {
+        wait(timeout);
+      }
+    }
+  }
+
   /**
    * ---------------------------------------------------------------------------------------
    * SimplePooledConnection
    * ---------------------------------------------------------------------------------------
    */
-  private static class SimplePooledConnection implements InvocationHandler {
+  static class SimplePooledConnection implements Connection {
 
-    private static final String CLOSE = "close";
-    private static final Class[] IFACES = new Class[]{Connection.class};
+    private static final int UNKNOWN = -1;
 
     private int hashCode = 0;
     private SimpleDataSource dataSource;
     private Connection realConnection;
-    private Connection proxyConnection;
+    // statements not yet closed, most recent last (only used by the thread holding the connection)
+    private List statements = new ArrayList();
+    // client side copies of the connection state, null (or UNKNOWN) until first read or set
+    private Boolean autoCommit;
+    private int transactionIsolation = UNKNOWN;
+    private Boolean readOnly;
+    // isolation level to set before the next statement is executed, or UNKNOWN
+    private int requestedIsolation = UNKNOWN;
+    // a statement was executed since the last commit or rollback
+    private boolean dirty;
     private long checkoutTimestamp;
     private long createdTimestamp;
     private long lastUsedTimestamp;
     private int connectionTypeCode;
-    private boolean valid;
+    private volatile boolean valid;
 
     /**
      * Constructor for SimplePooledConnection that uses the Connection and SimpleDataSource passed in
@@ -758,8 +1317,6 @@ public class SimpleDataSource implements DataSource {
       this.createdTimestamp = System.currentTimeMillis();
       this.lastUsedTimestamp = System.currentTimeMillis();
       this.valid = true;
-
-      proxyConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES, this);
     }
 
     /**
@@ -786,14 +1343,6 @@ public class SimpleDataSource implements DataSource {
       return realConnection;
     }
 
-    /**
-     * Getter for the proxy for the connection
-     * @return The proxy
-     */
-    public Connection getProxyConnection() {
-      return proxyConnection;
-    }
-
     /**
      * Gets the hashcode of the real connection (or 0 if it is null)
      *
@@ -922,43 +1471,124 @@ public class SimpleDataSource implements DataSource {
       }
     }
 
-    // **********************************
-    // Implemented Connection Methods -- Now handled by proxy
-    // **********************************
+    /**
+     * Takes over the state known about the real connection from another pooled connection
+     *
+     * @param conn - the pooled connection that wrapped the same real connection
+     */
+    public void copyStateFrom(SimplePooledConnection conn) {
+      autoCommit = conn.autoCommit;
+      transactionIsolation = conn.transactionIsolation;
+      requestedIsolation = conn.requestedIsolation;
+      readOnly = conn.readOnly;
+      dirty = conn.dirty;
+    }
 
     /**
-     * Required for InvocationHandler inplementaion.
+     * Notes that work was done in the current transaction
+     */
+    void markDirty() {
+      dirty = true;
+    }
+
+    /**
+     * Prepares the real connection for a statement to be executed, setting the
+     * requested isolation level if it differs from the current one
      *
-     * @param proxy  - not used
-     * @param method - the method to be executed
-     * @param args   - the parameters to be passed to the method
-     * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+     * @throws SQLException - if the isolation level cannot be set
      */
-    public Object invoke(Object proxy, Method method, Object[] args)
-        throws Throwable {
-      String methodName = method.getName();
-      if (CLOSE.hashCode() == methodName.hashCode() && CLOSE.equals(methodName)) {
-        dataSource.pushConnection(this);
-        return null;
-      } else {
-        try {
-          return method.invoke(getValidConnection(), args);
-        } catch (Throwable t) {
-          throw ClassInfo.unwrapThrowable(t);
+    void beforeExecute() throws SQLException {
+      if (requestedIsolation != UNKNOWN) {
+        int level = requestedIsolation;
+        requestedIsolation = UNKNOWN;
+        if (transactionIsolation != level) {
+          transactionIsolation = UNKNOWN;
+          realConnection.setTransactionIsolation(level);
+          transactionIsolation = level;
         }
       }
+      dirty = true;
     }
 
+    /**
+     * Rolls back the current transaction, unless nothing was executed since it began
+     * (the connection does not need to be valid, so the pool can use this on returned connections)
+     *
+     * @throws SQLException - if the rollback fails
+     */
+    public void rollbackIfDirty() throws SQLException {
+      if (dirty) {
+        if (autoCommit == null) {
+          autoCommit = Boolean.valueOf(realConnection.getAutoCommit());
+        }
+        if (!autoCommit.booleanValue()) {
+          realConnection.rollback();
+        }
+        dirty = false;
+      }
+    }
+
+    /**
+     * Keeps track of a statement until it is closed
+     *
+     * @param statement - the statement
+     */
+    private void addStatement(SimplePooledStatement statement) {
+      statements.add(statement);
+    }
+
+    /**
+     * Stops keeping track of a statement that has been closed
+     *
+     * @param statement - the statement
+     */
+    void removeStatement(SimplePooledStatement statement) {
+      int i = statements.lastIndexOf(statement);
+      if (i > -1) {
+        statements.remove(i);
+      }
+    }
+
+    /**
+     * Closes the statements (and so their result sets) that were left open
+     *
+     * @return The number of statements closed
+     */
+    public int closeStatements() {
+      if (statements.isEmpty()) {
+        return 0;
+      }
+      SimplePooledStatement[] open = (SimplePooledStatement[]) statements.toArray(new SimplePooledStatement[statements.size()]);
+      statements.clear();
+      for (int i = 0; i < open.length; i++) {
+        open[i].forceClose();
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Closed " + open.length + " statement(s) left open on connection " + getRealHashCode() + ".");
+      }
+      return open.length;
+    }
+
+    // **********************************
+    // Implemented Connection Methods
+    // **********************************
+
     public Statement createStatement() throws SQLException {
-      return getValidConnection().createStatement();
+      SimplePooledStatement statement = new SimplePooledStatement(getValidConnection().createStatement(), this);
+      addStatement(statement);
+      return statement;
     }
 
     public PreparedStatement prepareStatement(String sql) throws SQLException {
-      return getValidConnection().prepareStatement(sql);
+      SimplePooledPreparedStatement statement = new SimplePooledPreparedStatement(getValidConnection().prepareStatement(sql), this);
+      addStatement(statement);
+      return statement;
     }
 
     public CallableStatement prepareCall(String sql) throws SQLException {
-      return getValidConnection().prepareCall(sql);
+      SimplePooledCallableStatement statement = new SimplePooledCallableStatement(getValidConnection().prepareCall(sql), this);
+      addStatement(statement);
+      return statement;
     }
 
     public String nativeSQL(String sql) throws SQLException {
@@ -966,23 +1596,42 @@ public class SimpleDataSource implements DataSource {
     }
 
     public void setAutoCommit(boolean autoCommit) throws SQLException {
-      getValidConnection().setAutoCommit(autoCommit);
+      Connection conn = getValidConnection();
+      if (this.autoCommit == null || this.autoCommit.booleanValue() != autoCommit) {
+        this.autoCommit = null;
+        conn.setAutoCommit(autoCommit);
+        this.autoCommit = Boolean.valueOf(autoCommit);
+        if (autoCommit) {
+          // switching autocommit on commits the current transaction
+          dirty = false;
+        }
+      }
     }
 
     public boolean getAutoCommit() throws SQLException {
-      return getValidConnection().getAutoCommit();
+      Connection conn = getValidConnection();
+      if (autoCommit == null) {
+        autoCommit = Boolean.valueOf(conn.getAutoCommit());
+      }
+      return autoCommit.booleanValue();
     }
 
     public void commit() throws SQLException {
+      // Always passed on: work done through unwrapConnection() or by the driver itself is not tracked
       getValidConnection().commit();
+      dirty = false;
     }
 
     public void rollback() throws SQLException {
       getValidConnection().rollback();
+      dirty = false;
     }
 
     public void close() throws SQLException {
-      dataSource.pushConnection(this);
+      // Closing a connection that was already closed (or claimed as overdue) does nothing
+      if (valid) {
+        dataSource.pushConnection(this);
+      }
     }
 
     public boolean isClosed() throws SQLException {
@@ -994,11 +1643,20 @@ public class SimpleDataSource implements DataSource {
     }
 
     public void setReadOnly(boolean readOnly) throws SQLException {
-      getValidConnection().setReadOnly(readOnly);
+      Connection conn = getValidConnection();
+      if (this.readOnly == null || this.readOnly.booleanValue() != readOnly) {
+        this.readOnly = null;
+        conn.setReadOnly(readOnly);
+        this.readOnly = Boolean.valueOf(readOnly);
+      }
     }
 
     public boolean isReadOnly() throws SQLException {
-      return getValidConnection().isReadOnly();
+      Connection conn = getValidConnection();
+      if (readOnly == null) {
+        readOnly = Boolean.valueOf(conn.isReadOnly());
+      }
+      return readOnly.booleanValue();
     }
 
     public void setCatalog(String catalog) throws SQLException {
@@ -1009,12 +1667,26 @@ public class SimpleDataSource implements DataSource {
       return getValidConnection().getCatalog();
     }
 
+    /**
+     * Sets the isolation level, which is only passed on to the real connection before the
+     * next statement is executed (so setting and restoring it around unused connections is free)
+     *
+     * @param level - the isolation level
+     */
     public void setTransactionIsolation(int level) throws SQLException {
-      getValidConnection().setTransactionIsolation(level);
+      getValidConnection();
+      requestedIsolation = level;
     }
 
     public int getTransactionIsolation() throws SQLException {
-      return getValidConnection().getTransactionIsolation();
+      Connection conn = getValidConnection();
+      if (requestedIsolation != UNKNOWN) {
+        return requestedIsolation;
+      }
+      if (transactionIsolation == UNKNOWN) {
+        transactionIsolation = conn.getTransactionIsolation();
+      }
+      return transactionIsolation;
     }
 
     public SQLWarning getWarnings() throws SQLException {
@@ -1026,15 +1698,21 @@ public class SimpleDataSource implements DataSource {
     }
 
     public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
-      return getValidConnection().createStatement(resultSetType, resultSetConcurrency);
+      SimplePooledStatement statement = new SimplePooledStatement(getValidConnection().createStatement(resultSetType, resultSetConcurrency), this);
+      addStatement(statement);
+      return statement;
     }
 
     public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
-      return getValidConnection().prepareCall(sql, resultSetType, resultSetConcurrency);
+      SimplePooledPreparedStatement statement = new SimplePooledPreparedStatement(getValidConnection().prepareStatement(sql, resultSetType, resultSetConcurrency), this);
+      addStatement(statement);
+      return statement;
     }
 
     public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
-      return getValidConnection().prepareCall(sql, resultSetType, resultSetConcurrency);
+      SimplePooledCallableStatement statement = new SimplePooledCallableStatement(getValidConnection().prepareCall(sql, resultSetType, resultSetConcurrency), this);
+      addStatement(statement);
+      return statement;
     }
 
     public Map getTypeMap() throws SQLException {
@@ -1075,34 +1753,46 @@ public class SimpleDataSource implements DataSource {
 
     public Statement createStatement(int resultSetType, int resultSetConcurrency,
                                      int resultSetHoldability) throws SQLException {
-      return getValidConnection().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+      SimplePooledStatement statement = new SimplePooledStatement(getValidConnection().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability), this);
+      addStatement(statement);
+      return statement;
     }
 
     public PreparedStatement prepareStatement(String sql, int resultSetType,
                                               int resultSetConcurrency, int resultSetHoldability)
         throws SQLException {
-      return getValidConnection().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+      SimplePooledPreparedStatement statement = new SimplePooledPreparedStatement(getValidConnection().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability), this);
+      addStatement(statement);
+      return statement;
     }
 
     public CallableStatement prepareCall(String sql, int resultSetType,
                                          int resultSetConcurrency,
                                          int resultSetHoldability) throws SQLException {
-      return getValidConnection().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+      SimplePooledCallableStatement statement = new SimplePooledCallableStatement(getValidConnection().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability), this);
+      addStatement(statement);
+      return statement;
     }
 
     public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys)
         throws SQLException {
-      return getValidConnection().prepareStatement(sql, autoGeneratedKeys);
+      SimplePooledPreparedStatement statement = new SimplePooledPreparedStatement(getValidConnection().prepareStatement(sql, autoGeneratedKeys), this);
+      addStatement(statement);
+      return statement;
     }
 
     public PreparedStatement prepareStatement(String sql, int columnIndexes[])
         throws SQLException {
-      return getValidConnection().prepareStatement(sql, columnIndexes);
+      SimplePooledPreparedStatement statement = new SimplePooledPreparedStatement(getValidConnection().prepareStatement(sql, columnIndexes), this);
+      addStatement(statement);
+      return statement;
     }
 
     public PreparedStatement prepareStatement(String sql, String columnNames[])
         throws SQLException {
-      return getValidConnection().prepareStatement(sql, columnNames);
+      SimplePooledPreparedStatement statement = new SimplePooledPreparedStatement(getValidConnection().prepareStatement(sql, columnNames), this);
+      addStatement(statement);
+      return statement;
     }
 
 
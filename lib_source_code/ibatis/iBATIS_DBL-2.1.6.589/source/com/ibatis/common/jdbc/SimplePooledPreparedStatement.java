@@ -0,0 +1,190 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.common.jdbc;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.*;
+import java.util.Calendar;
+
+/**
+ * A prepared statement created by a pooled connection
+ */
+class SimplePooledPreparedStatement extends SimplePooledStatement implements PreparedStatement {
+
+  private PreparedStatement statement;
+
+  /**
+   * Constructor for SimplePooledPreparedStatement that wraps the statement passed in
+   *
+   * @param statement - the real statement
+   * @param connection - the pooled connection that created the statement
+   */
+  public SimplePooledPreparedStatement(PreparedStatement statement, SimpleDataSource.SimplePooledConnection connection) {
+    super(statement, connection);
+    this.statement = statement;
+  }
+
+  public ResultSet executeQuery() throws SQLException {
+    executing();
+    return statement.executeQuery();
+  }
+
+  public int executeUpdate() throws SQLException {
+    executing();
+    return statement.executeUpdate();
+  }
+
+  public void setNull(int parameterIndex, int sqlType) throws SQLException {
+    statement.setNull(parameterIndex, sqlType);
+  }
+
+  public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+    statement.setBoolean(parameterIndex, x);
+  }
+
+  public void setByte(int parameterIndex, byte x) throws SQLException {
+    statement.setByte(parameterIndex, x);
+  }
+
+  public void setShort(int parameterIndex, short x) throws SQLException {
+    statement.setShort(parameterIndex, x);
+  }
+
+  public void setInt(int parameterIndex, int x) throws SQLException {
+    statement.setInt(parameterIndex, x);
+  }
+
+  public void setLong(int parameterIndex, long x) throws SQLException {
+    statement.setLong(parameterIndex, x);
+  }
+
+  public void setFloat(int parameterIndex, float x) throws SQLException {
+    statement.setFloat(parameterIndex, x);
+  }
+
+  public void setDouble(int parameterIndex, double x) throws SQLException {
+    statement.setDouble(parameterIndex, x);
+  }
+
+  public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+    statement.setBigDecimal(parameterIndex, x);
+  }
+
+  public void setString(int parameterIndex, String x) throws SQLException {
+    statement.setString(parameterIndex, x);
+  }
+
+  public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+    statement.setBytes(parameterIndex, x);
+  }
+
+  public void setDate(int parameterIndex, Date x) throws SQLException {
+    statement.setDate(parameterIndex, x);
+  }
+
+  public void setTime(int parameterIndex, Time x) throws SQLException {
+    statement.setTime(parameterIndex, x);
+  }
+
+  public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+    statement.setTimestamp(parameterIndex, x);
+  }
+
+  public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+    statement.setAsciiStream(parameterIndex, x, length);
+  }
+
+  public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+    statement.setUnicodeStream(parameterIndex, x, length);
+  }
+
+  public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+    statement.setBinaryStream(parameterIndex, x, length);
+  }
+
+  public void clearParameters() throws SQLException {
+    statement.clearParameters();
+  }
+
+  public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+    statement.setObject(parameterIndex, x, targetSqlType);
+  }
+
+  public void setObject(int parameterIndex, Object x) throws SQLException {
+    statement.setObject(parameterIndex, x);
+  }
+
+  public boolean execute() throws SQLException {
+    executing();
+    return statement.execute();
+  }
+
+  public void addBatch() throws SQLException {
+    statement.addBatch();
+  }
+
+  public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
+    statement.setCharacterStream(parameterIndex, reader, length);
+  }
+
+  public void setRef(int parameterIndex, Ref x) throws SQLException {
+    statement.setRef(parameterIndex, x);
+  }
+
+  public void setBlob(int parameterIndex, Blob x) throws SQLException {
+    statement.setBlob(parameterIndex, x);
+  }
+
+  public void setClob(int parameterIndex, Clob x) throws SQLException {
+    statement.setClob(parameterIndex, x);
+  }
+
+  public void setArray(int parameterIndex, Array x) throws SQLException {
+    statement.setArray(parameterIndex, x);
+  }
+
+  public ResultSetMetaData getMetaData() throws SQLException {
+    return statement.getMetaData();
+  }
+
+  public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+    statement.setDate(parameterIndex, x, cal);
+  }
+
+  public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+    statement.setTime(parameterIndex, x, cal);
+  }
+
+  public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+    statement.setTimestamp(parameterIndex, x, cal);
+  }
+
+  public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+    statement.setNull(parameterIndex, sqlType, typeName);
+  }
+
+  public void setURL(int parameterIndex, URL x) throws SQLException {
+    statement.setURL(parameterIndex, x);
+  }
+
+  public ParameterMetaData getParameterMetaData() throws SQLException {
+    return statement.getParameterMetaData();
+  }
+
+}
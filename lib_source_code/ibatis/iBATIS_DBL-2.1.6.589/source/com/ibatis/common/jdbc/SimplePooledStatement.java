@@ -0,0 +1,230 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.common.jdbc;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+/**
+ * A statement created by a pooled connection.  Calls go straight to the real
+ * statement, and the connection keeps track of the statement until it is
+ * closed, so that statements left open can be closed (along with their result
+ * sets) when the connection goes back to the pool.
+ */
+class SimplePooledStatement implements Statement {
+
+  private Statement statement;
+  private SimpleDataSource.SimplePooledConnection connection;
+  private boolean closed;
+
+  /**
+   * Constructor for SimplePooledStatement that wraps the statement passed in
+   *
+   * @param statement - the real statement
+   * @param connection - the pooled connection that created the statement
+   */
+  public SimplePooledStatement(Statement statement, SimpleDataSource.SimplePooledConnection connection) {
+    this.statement = statement;
+    this.connection = connection;
+  }
+
+  /**
+   * Closes the real statement for a connection that is discarding its statements
+   */
+  void forceClose() {
+    closed = true;
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      // ignore
+    }
+  }
+
+  /**
+   * Lets the connection know that work is being done in the current transaction
+   *
+   * @throws SQLException - if the connection cannot be prepared for it
+   */
+  void executing() throws SQLException {
+    connection.beforeExecute();
+  }
+
+  public ResultSet executeQuery(String sql) throws SQLException {
+    executing();
+    return statement.executeQuery(sql);
+  }
+
+  public int executeUpdate(String sql) throws SQLException {
+    executing();
+    return statement.executeUpdate(sql);
+  }
+
+  public void close() throws SQLException {
+    if (!closed) {
+      closed = true;
+      connection.removeStatement(this);
+      statement.close();
+    }
+  }
+
+  public int getMaxFieldSize() throws SQLException {
+    return statement.getMaxFieldSize();
+  }
+
+  public void setMaxFieldSize(int max) throws SQLException {
+    statement.setMaxFieldSize(max);
+  }
+
+  public int getMaxRows() throws SQLException {
+    return statement.getMaxRows();
+  }
+
+  public void setMaxRows(int max) throws SQLException {
+    statement.setMaxRows(max);
+  }
+
+  public void setEscapeProcessing(boolean enable) throws SQLException {
+    statement.setEscapeProcessing(enable);
+  }
+
+  public int getQueryTimeout() throws SQLException {
+    return statement.getQueryTimeout();
+  }
+
+  public void setQueryTimeout(int seconds) throws SQLException {
+    statement.setQueryTimeout(seconds);
+  }
+
+  public void cancel() throws SQLException {
+    statement.cancel();
+  }
+
+  public SQLWarning getWarnings() throws SQLException {
+    return statement.getWarnings();
+  }
+
+  public void clearWarnings() throws SQLException {
+    statement.clearWarnings();
+  }
+
+  public void setCursorName(String name) throws SQLException {
+    statement.setCursorName(name);
+  }
+
+  public boolean execute(String sql) throws SQLException {
+    executing();
+    return statement.execute(sql);
+  }
+
+  public ResultSet getResultSet() throws SQLException {
+    return statement.getResultSet();
+  }
+
+  public int getUpdateCount() throws SQLException {
+    return statement.getUpdateCount();
+  }
+
+  public boolean getMoreResults() throws SQLException {
+    return statement.getMoreResults();
+  }
+
+  public void setFetchDirection(int direction) throws SQLException {
+    statement.setFetchDirection(direction);
+  }
+
+  public int getFetchDirection() throws SQLException {
+    return statement.getFetchDirection();
+  }
+
+  public void setFetchSize(int rows) throws SQLException {
+    statement.setFetchSize(rows);
+  }
+
+  public int getFetchSize() throws SQLException {
+    return statement.getFetchSize();
+  }
+
+  public int getResultSetConcurrency() throws SQLException {
+    return statement.getResultSetConcurrency();
+  }
+
+  public int getResultSetType() throws SQLException {
+    return statement.getResultSetType();
+  }
+
+  public void addBatch(String sql) throws SQLException {
+    statement.addBatch(sql);
+  }
+
+  public void clearBatch() throws SQLException {
+    statement.clearBatch();
+  }
+
+  public int[] executeBatch() throws SQLException {
+    executing();
+    return statement.executeBatch();
+  }
+
+  public Connection getConnection() throws SQLException {
+    return connection;
+  }
+
+  public boolean getMoreResults(int current) throws SQLException {
+    return statement.getMoreResults(current);
+  }
+
+  public ResultSet getGeneratedKeys() throws SQLException {
+    return statement.getGeneratedKeys();
+  }
+
+  public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+    executing();
+    return statement.executeUpdate(sql, autoGeneratedKeys);
+  }
+
+  public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+    executing();
+    return statement.executeUpdate(sql, columnIndexes);
+  }
+
+  public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+    executing();
+    return statement.executeUpdate(sql, columnNames);
+  }
+
+  public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+    executing();
+    return statement.execute(sql, autoGeneratedKeys);
+  }
+
+  public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+    executing();
+    return statement.execute(sql, columnIndexes);
+  }
+
+  public boolean execute(String sql, String[] columnNames) throws SQLException {
+    executing();
+    return statement.execute(sql, columnNames);
+  }
+
+  public int getResultSetHoldability() throws SQLException {
+    return statement.getResultSetHoldability();
+  }
+
+}
@@ -0,0 +1,146 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.common.util;
+
+import java.util.LinkedList;
+
+/**
+ * A fixed number of daemon threads running tasks from a bounded queue.
+ * <p/>
+ * Tasks that do not fit in the queue are refused rather than waited for, so
+ * the caller can run them itself or not at all.  The threads are only started
+ * when the first task is queued, and stop when the executor is shut down.
+ */
+public class BoundedExecutor {
+
+  private final Object LOCK = new Object();
+
+  private String name;
+  private int threads;
+  private int queueSize;
+
+  private LinkedList queue = new LinkedList();
+  private int started;
+  private boolean shutdown;
+
+  /**
+   * Create an executor
+   * @param name - the name of the threads
+   * @param threads - the number of threads
+   * @param queueSize - the maximum number of tasks waiting for a thread
+   */
+  public BoundedExecutor(String name, int threads, int queueSize) {
+    this.name = name;
+    this.threads = threads;
+    this.queueSize = queueSize;
+  }
+
+  /**
+   * Queue a task to be run by one of the threads
+   * @param task - the task
+   * @return - false if the queue is full or the executor is shut down, and the task was refused
+   */
+  public boolean execute(Runnable task) {
+    synchronized (LOCK) {
+      if (shutdown || queue.size() >= queueSize) {
+        return false;
+      }
+      queue.addLast(task);
+      if (started < threads) {
+        Thread thread = new Thread(new Worker(), name + "-" + started);
+        thread.setDaemon(true);
+        thread.start();
+        started++;
+      }
+      LOCK.notify();
+      return true;
+    }
+  }
+
+  /**
+   * Remove a task that has not been started yet
+   * @param task - the task
+   * @return - true if the task was removed (and will never be run)
+   */
+  public boolean remove(Runnable task) {
+    synchronized (LOCK) {
+      return queue.remove(task);
+    }
+  }
+
+  /**
+   * Stop the threads once they finish the tasks they are running.  Tasks that
+   * have not been started are dropped, and no more tasks are accepted.
+   */
+  public void shutdown() {
+    synchronized (LOCK) {
+      shutdown = true;
+      queue.clear();
+      LOCK.notifyAll();
+    }
+  }
+
+  /**
+   * Get the number of tasks waiting for a thread
+   * @return - the queue length
+   */
+  public int getQueueLength() {
+    synchronized (LOCK) {
+      return queue.size();
+    }
+  }
+
+  private Runnable take() throws InterruptedException {
+    synchronized (LOCK) {
+      while (queue.isEmpty()) {
+        if (shutdown) {
+          return null;
+        }
+        LOCK.wait();
+      }
+      return (Runnable) queue.removeFirst();
+    }
+  }
+
+  private class Worker implements Runnable {
+    public void run() {
+      try {
+        while (true) {
+          Runnable task;
+          try {
+            task = take();
+          } catch (InterruptedException e) {
+            return;
+          }
+          if (task == null) {
+            return;
+          }
+          try {
+            task.run();
+          } catch (RuntimeException e) {
+            // the task is responsible for reporting its own failures
+          }
+        }
+      } finally {
+        // let the next task start a replacement
+        synchronized (LOCK) {
+          started--;
+        }
+      }
+    }
+  }
+
+}
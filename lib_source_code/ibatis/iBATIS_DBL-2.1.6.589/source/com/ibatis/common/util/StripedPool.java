@@ -0,0 +1,237 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.common.util;
+
+import com.ibatis.common.exception.NestedRuntimeException;
+
+/**
+ * A fixed size pool of objects split into stripes, each with its own lock.
+ * <p/>
+ * Threads pop from and push to the stripe picked by their identity, so
+ * concurrent callers rarely touch the same monitor.  An empty stripe steals
+ * from its neighbours, and a caller only blocks when every object in the pool
+ * is in use.  Like ThrottledPool, the pooled objects themselves act as the
+ * permits, so at most <code>size</code> objects are ever handed out.
+ */
+public class StripedPool {
+
+  private final Object WAIT_LOCK = new Object();
+
+  private Class type;
+  private int size;
+  private Stripe[] stripes;
+  private int mask;
+
+  private volatile int waiting;
+
+  private long stolenCount;
+  private long waitCount;
+  private long waitTime;
+
+  /**
+   * Create a StripedPool for a Class
+   * @param type - the type of objects being managed
+   * @param size - the size of the pool
+   */
+  public StripedPool(Class type, int size) {
+    this(type, size, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Create a StripedPool for a Class with a given level of concurrency
+   * @param type - the type of objects being managed
+   * @param size - the size of the pool
+   * @param concurrency - the expected number of concurrently active threads
+   */
+  public StripedPool(Class type, int size, int concurrency) {
+    int stripeCount = 1;
+    while (stripeCount < concurrency && stripeCount * 2 <= size) {
+      stripeCount *= 2;
+    }
+    this.type = type;
+    this.size = size;
+    this.mask = stripeCount - 1;
+    this.stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe(size / stripeCount + 1);
+    }
+    try {
+      for (int i = 0; i < size; i++) {
+        stripes[i & mask].push(type.newInstance());
+      }
+    } catch (Exception e) {
+      throw new NestedRuntimeException("Error instantiating class.  Cause: " + e, e);
+    }
+  }
+
+  /**
+   * Pop an object from the pool, waiting if every object is in use
+   * @return - the Object
+   */
+  public Object pop() {
+    int home = stripeIndex();
+    Object o = stripes[home].pop();
+    if (o == null) {
+      o = steal(home);
+      if (o == null) {
+        o = await(home);
+      }
+    }
+    return o;
+  }
+
+  /**
+   * Push an object onto the pool
+   * @param o - the object to put into the pool
+   */
+  public void push(Object o) {
+    if (o != null && o.getClass() == type) {
+      int home = stripeIndex();
+      if (!stripes[home].push(o)) {
+        for (int i = 1; i <= mask; i++) {
+          if (stripes[(home + i) & mask].push(o)) {
+            break;
+          }
+        }
+      }
+      if (waiting > 0) {
+        synchronized (WAIT_LOCK) {
+          WAIT_LOCK.notify();
+        }
+      }
+    }
+  }
+
+  /**
+   * Getter for the size of the pool
+   * @return - the number of objects managed by the pool
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Getter for the number of stripes
+   * @return - the number of independently locked stripes
+   */
+  public int getStripeCount() {
+    return stripes.length;
+  }
+
+  /**
+   * Getter for the number of pops served from another thread's stripe
+   * @return - the count
+   */
+  public synchronized long getStolenCount() {
+    return stolenCount;
+  }
+
+  /**
+   * Getter for the number of pops that had to wait for an object
+   * @return - the count
+   */
+  public long getWaitCount() {
+    synchronized (WAIT_LOCK) {
+      return waitCount;
+    }
+  }
+
+  /**
+   * Getter for the total time spent waiting for objects
+   * @return - the time in milliseconds
+   */
+  public long getWaitTime() {
+    synchronized (WAIT_LOCK) {
+      return waitTime;
+    }
+  }
+
+  private int stripeIndex() {
+    int h = System.identityHashCode(Thread.currentThread());
+    h ^= (h >>> 16);
+    return h & mask;
+  }
+
+  private Object steal(int home) {
+    for (int i = 1; i <= mask; i++) {
+      Object o = stripes[(home + i) & mask].pop();
+      if (o != null) {
+        synchronized (this) {
+          stolenCount++;
+        }
+        return o;
+      }
+    }
+    return null;
+  }
+
+  private Object await(int home) {
+    synchronized (WAIT_LOCK) {
+      long start = System.currentTimeMillis();
+      waiting++;
+      try {
+        while (true) {
+          Object o = stripes[home].pop();
+          if (o == null) {
+            o = steal(home);
+          }
+          if (o != null) {
+            return o;
+          }
+          try {
+            WAIT_LOCK.wait();
+          } catch (InterruptedException e) {
+            //ignore
+          }
+        }
+      } finally {
+        waiting--;
+        waitCount++;
+        waitTime += System.currentTimeMillis() - start;
+      }
+    }
+  }
+
+  /**
+   * A bounded stack of free objects guarded by its own lock
+   */
+  private static class Stripe {
+    private Object[] items;
+    private int count;
+
+    public Stripe(int capacity) {
+      items = new Object[capacity];
+    }
+
+    public synchronized Object pop() {
+      if (count == 0) {
+        return null;
+      }
+      Object o = items[--count];
+      items[count] = null;
+      return o;
+    }
+
+    public synchronized boolean push(Object o) {
+      if (count == items.length) {
+        return false;
+      }
+      items[count++] = o;
+      return true;
+    }
+  }
+
+}
@@ -19,6 +19,7 @@ import com.ibatis.common.util.PaginatedList;
 import com.ibatis.dao.client.DaoException;
 import com.ibatis.dao.client.DaoManager;
 import com.ibatis.dao.engine.transaction.sqlmap.SqlMapDaoTransaction;
+import com.ibatis.sqlmap.client.SqlMapCursor;
 import com.ibatis.sqlmap.client.SqlMapExecutor;
 import com.ibatis.sqlmap.client.SqlMapTransactionManager;
 import com.ibatis.sqlmap.client.event.RowHandler;
@@ -255,6 +256,24 @@ public abstract class SqlMapDaoTemplate extends DaoTemplate implements SqlMapExe
     }
   }
 
+  /**
+   * Executes a mapped SQL SELECT statement that returns a number of
+   * result objects that will be read one at a time from a cursor.
+   * The cursor must always be closed.
+   *
+   * @param id              The name of the statement to execute.
+   * @param parameterObject The parameter object (e.g. JavaBean, Map, XML etc.).
+   * @return A SqlMapCursor over the result objects.
+   */
+  public SqlMapCursor queryForCursor(String id, Object parameterObject) {
+    try {
+      return getSqlMapExecutor().queryForCursor(id, parameterObject);
+    } catch (SQLException e) {
+      throw new DaoException("Failed to queryForCursor - id [" + id + "], parameterObject ["
+          + parameterObject + "].  Cause: " + e, e);
+    }
+  }
+
   /**
    * Executes a mapped SQL SELECT statement that returns data to populate
    * a number of result objects a page at a time.
@@ -276,6 +295,29 @@ public abstract class SqlMapDaoTemplate extends DaoTemplate implements SqlMapExe
     }
   }
 
+  /**
+   * Executes a mapped SQL SELECT statement that returns data to populate
+   * a number of result objects a page at a time, loading the pages that
+   * follow the current page in the background while it is being used.
+   * <p/>
+   * Each page is loaded with a session of its own, so the pages are not
+   * read within the current transaction.
+   *
+   * @param id              The name of the statement to execute.
+   * @param parameterObject The parameter object (e.g. JavaBean, Map, XML etc.).
+   * @param pageSize        The maximum number of result objects each page can hold.
+   * @param prefetchDepth   The number of pages to load ahead of the current page.
+   * @return A PaginatedList of result objects.
+   */
+  public PaginatedList queryForPaginatedList(String id, Object parameterObject, int pageSize, int prefetchDepth) {
+    try {
+      return getSqlMapExecutor().queryForPaginatedList(id, parameterObject, pageSize, prefetchDepth);
+    } catch (SQLException e) {
+      throw new DaoException("Failed to queryForPaginatedList - id [" + id + "], parameterObject ["
+          + parameterObject + "], pageSize [" + pageSize + "], prefetchDepth [" + prefetchDepth + "].  Cause: " + e, e);
+    }
+  }
+
   /**
    * Executes a mapped SQL SELECT statement that returns data to populate
    * a number of result objects that will be keyed into a Map.
@@ -174,6 +174,15 @@ public interface SqlMapClient extends SqlMapExecutor, SqlMapTransactionManager {
    */
   public SqlMapSession getSession();
 
+  /**
+   * Stops the background threads of this client, such as those loading the
+   * pages of prefetching paginated lists ahead of time.  The client can still
+   * be used afterwards, but pages are then only loaded when they are needed.
+   * Call this when the client is no longer needed, e.g. when an application
+   * is undeployed.
+   */
+  public void shutdown();
+
   /**
    * Flushes all data caches.
    */
@@ -0,0 +1,56 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.client;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+
+/**
+ * An iterator over the results of a query that maps rows as they are read.
+ * <p/>
+ * Unlike queryForList(), only a small window of result objects is kept in
+ * memory, and unlike queryWithRowHandler(), the caller pulls the results.  The
+ * statement (and the connection, if the cursor started its own transaction)
+ * stays open until the last row has been read or close() is called, so a cursor
+ * should always be closed in a finally block.
+ * <p/>
+ * Example:
+ * <pre>
+ * SqlMapCursor cursor = sqlMap.queryForCursor("findAllEmployees", null);
+ * try {
+ *   while (cursor.hasNext()) {
+ *     Employee employee = (Employee) cursor.next();
+ *     ...
+ *   }
+ * } finally {
+ *   cursor.close();
+ * }
+ * </pre>
+ * Errors while reading rows are thrown from hasNext() and next() as
+ * NestedRuntimeExceptions, and close the cursor.  The remove() method is not
+ * supported.
+ */
+public interface SqlMapCursor extends Iterator {
+
+  /**
+   * Closes the result set and statement of the cursor, and ends the transaction
+   * if the cursor started it.  Closing a cursor more than once has no effect.
+   *
+   * @throws SQLException If an error occurs.
+   */
+  void close() throws SQLException;
+
+}
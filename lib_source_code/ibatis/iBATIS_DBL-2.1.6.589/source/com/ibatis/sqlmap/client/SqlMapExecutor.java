@@ -159,6 +159,27 @@ public interface SqlMapExecutor {
    */
   void queryWithRowHandler(String id, Object parameterObject, RowHandler rowHandler) throws SQLException;
 
+  /**
+   * Executes a mapped SQL SELECT statement that returns a number of
+   * result objects that will be read one at a time from a cursor.
+   * <p/>
+   * Like a RowHandler, this is a good approach to take when dealing with large
+   * sets of records, but the caller pulls each result object instead of being
+   * called back.  The cursor holds the statement open until it is exhausted or
+   * closed, so it must always be closed.  Outside of a transaction the cursor
+   * reads on a connection and transaction of its own, so other statements can
+   * be executed while it is open.
+   * <p/>
+   * The parameter object is generally used to supply the input
+   * data for the WHERE clause parameter(s) of the SELECT statement.
+   *
+   * @param id              The name of the statement to execute.
+   * @param parameterObject The parameter object (e.g. JavaBean, Map, XML etc.).
+   * @return A SqlMapCursor over the result objects.
+   * @throws java.sql.SQLException If an error occurs.
+   */
+  SqlMapCursor queryForCursor(String id, Object parameterObject) throws SQLException;
+
   /**
    * Executes a mapped SQL SELECT statement that returns data to populate
    * a number of result objects a page at a time.
@@ -174,6 +195,26 @@ public interface SqlMapExecutor {
    */
   PaginatedList queryForPaginatedList(String id, Object parameterObject, int pageSize) throws SQLException;
 
+  /**
+   * Executes a mapped SQL SELECT statement that returns data to populate
+   * a number of result objects a page at a time, loading the pages that
+   * follow the current page in the background while it is being used.
+   * <p/>
+   * Each page is loaded with a session of its own, so the pages are not
+   * read within the current transaction.
+   * <p/>
+   * The parameter object is generally used to supply the input
+   * data for the WHERE clause parameter(s) of the SELECT statement.
+   *
+   * @param id              The name of the statement to execute.
+   * @param parameterObject The parameter object (e.g. JavaBean, Map, XML etc.).
+   * @param pageSize        The maximum number of result objects each page can hold.
+   * @param prefetchDepth   The number of pages to load ahead of the current page.
+   * @return A PaginatedList of result objects.
+   * @throws java.sql.SQLException If an error occurs.
+   */
+  PaginatedList queryForPaginatedList(String id, Object parameterObject, int pageSize, int prefetchDepth) throws SQLException;
+
   /**
    * Executes a mapped SQL SELECT statement that returns data to populate
    * a number of result objects that will be keyed into a Map.
@@ -23,6 +23,7 @@ import java.util.Map;
 public class AccessPlanFactory {
 
   private static boolean bytecodeEnhancementEnabled = false;
+  private static boolean accessorGenerationEnabled = false;
 
   private AccessPlanFactory() {
   }
@@ -55,25 +56,37 @@ public class AccessPlanFactory {
       plan = new ComplexAccessPlan(clazz, propertyNames);
     } else if (Map.class.isAssignableFrom(clazz)) {
       plan = new MapAccessPlan(clazz, propertyNames);
+    } else if (accessorGenerationEnabled) {
+      try {
+        plan = new GeneratedAccessPlan(clazz, propertyNames);
+      } catch (Throwable t) {
+        plan = getPropertyAccessPlan(clazz, propertyNames);
+      }
     } else {
-      // Possibly causes bug 945746 --but the bug is unconfirmed (can't be reproduced)
-      if (bytecodeEnhancementEnabled) {
-        try {
-          plan = new EnhancedPropertyAccessPlan(clazz, propertyNames);
-        } catch (Throwable t) {
-          try {
-            plan = new PropertyAccessPlan(clazz, propertyNames);
-          } catch (Throwable t2) {
-            plan = new ComplexAccessPlan(clazz, propertyNames);
-          }
-        }
-      } else {
+      plan = getPropertyAccessPlan(clazz, propertyNames);
+    }
+    return plan;
+  }
+
+  private static AccessPlan getPropertyAccessPlan(Class clazz, String[] propertyNames) {
+    AccessPlan plan;
+    // Possibly causes bug 945746 --but the bug is unconfirmed (can't be reproduced)
+    if (bytecodeEnhancementEnabled) {
+      try {
+        plan = new EnhancedPropertyAccessPlan(clazz, propertyNames);
+      } catch (Throwable t) {
         try {
           plan = new PropertyAccessPlan(clazz, propertyNames);
-        } catch (Throwable t) {
+        } catch (Throwable t2) {
           plan = new ComplexAccessPlan(clazz, propertyNames);
         }
       }
+    } else {
+      try {
+        plan = new PropertyAccessPlan(clazz, propertyNames);
+      } catch (Throwable t) {
+        plan = new ComplexAccessPlan(clazz, propertyNames);
+      }
     }
     return plan;
   }
@@ -96,4 +109,25 @@ public class AccessPlanFactory {
     AccessPlanFactory.bytecodeEnhancementEnabled = bytecodeEnhancementEnabled;
   }
 
+  /**
+   * Tells whether or not access plans that call bean accessors directly
+   * are generated
+   *
+   * @return true if accessor generation is enabled
+   */
+  public static boolean isAccessorGenerationEnabled() {
+    return accessorGenerationEnabled;
+  }
+
+  /**
+   * Turns on or off the generation of access plans that call bean accessors
+   * directly.  Generated plans are preferred to the enhanced and reflective
+   * plans, which are still used for beans that cannot be generated for.
+   *
+   * @param accessorGenerationEnabled - the switch
+   */
+  public static void setAccessorGenerationEnabled(boolean accessorGenerationEnabled) {
+    AccessPlanFactory.accessorGenerationEnabled = accessorGenerationEnabled;
+  }
+
 }
@@ -0,0 +1,160 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.accessplan;
+
+import com.ibatis.sqlmap.engine.accessplan.ClassFileWriter.Code;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the class file of an AccessPlan that calls the getters and setters
+ * of one bean class directly.
+ * <p/>
+ * The generated class implements setProperties with a cast and a direct
+ * call per property (unwrapping primitives through Number, Boolean and
+ * Character) and getProperties with a direct call and, for primitives, a
+ * new wrapper per property.
+ */
+final class AccessorGenerator {
+
+  private static final Map WRAPPERS = new HashMap();
+
+  static {
+    WRAPPERS.put(Boolean.TYPE, new String[]{"java/lang/Boolean", "java/lang/Boolean", "booleanValue"});
+    WRAPPERS.put(Character.TYPE, new String[]{"java/lang/Character", "java/lang/Character", "charValue"});
+    WRAPPERS.put(Byte.TYPE, new String[]{"java/lang/Byte", "java/lang/Number", "byteValue"});
+    WRAPPERS.put(Short.TYPE, new String[]{"java/lang/Short", "java/lang/Number", "shortValue"});
+    WRAPPERS.put(Integer.TYPE, new String[]{"java/lang/Integer", "java/lang/Number", "intValue"});
+    WRAPPERS.put(Long.TYPE, new String[]{"java/lang/Long", "java/lang/Number", "longValue"});
+    WRAPPERS.put(Float.TYPE, new String[]{"java/lang/Float", "java/lang/Number", "floatValue"});
+    WRAPPERS.put(Double.TYPE, new String[]{"java/lang/Double", "java/lang/Number", "doubleValue"});
+  }
+
+  private AccessorGenerator() {
+  }
+
+  /**
+   * Tells if generated code may call a bean's accessors
+   *
+   * @param clazz   - the bean class
+   * @param getters - the getters to be called
+   * @param setters - the setters to be called
+   * @return true if the class, accessors and property types are all public
+   */
+  public static boolean isAccessible(Class clazz, Method[] getters, Method[] setters) {
+    if (!ClassFileWriter.isPublic(clazz) || clazz.isInterface()) {
+      return false;
+    }
+    for (int i = 0; i < getters.length; i++) {
+      if (!Modifier.isPublic(getters[i].getModifiers()) || Modifier.isStatic(getters[i].getModifiers())
+          || !ClassFileWriter.isPublic(getters[i].getReturnType())) {
+        return false;
+      }
+    }
+    for (int i = 0; i < setters.length; i++) {
+      if (!Modifier.isPublic(setters[i].getModifiers()) || Modifier.isStatic(setters[i].getModifiers())
+          || !ClassFileWriter.isPublic(setters[i].getParameterTypes()[0])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes the class file of an accessor
+   *
+   * @param className - the internal name of the class to be generated
+   * @param clazz     - the bean class
+   * @param getters   - the getters, in property order
+   * @param setters   - the setters, in property order
+   * @return the class file
+   */
+  public static byte[] generate(String className, Class clazz, Method[] getters, Method[] setters) {
+    ClassFileWriter writer = new ClassFileWriter(className, "java/lang/Object",
+        new String[]{ClassFileWriter.internalName(AccessPlan.class)});
+    writer.addDefaultConstructor("java/lang/Object");
+    writer.addMethod("setProperties", "(Ljava/lang/Object;[Ljava/lang/Object;)V", 4, 4,
+        writeSetProperties(writer, clazz, setters));
+    writer.addMethod("getProperties", "(Ljava/lang/Object;)[Ljava/lang/Object;", 6, 4,
+        writeGetProperties(writer, clazz, getters));
+    return writer.toByteArray();
+  }
+
+  private static Code writeSetProperties(ClassFileWriter writer, Class clazz, Method[] setters) {
+    Code code = new Code();
+    String owner = ClassFileWriter.internalName(clazz);
+    code.op(Code.ALOAD_1);
+    code.op(Code.CHECKCAST, writer.classRef(owner));
+    code.op(Code.ASTORE_3);
+    for (int i = 0; i < setters.length; i++) {
+      Class type = setters[i].getParameterTypes()[0];
+      code.op(Code.ALOAD_3);
+      code.op(Code.ALOAD_2);
+      code.pushInt(i);
+      code.op(Code.AALOAD);
+      if (type.isPrimitive()) {
+        String[] wrapper = (String[]) WRAPPERS.get(type);
+        code.op(Code.CHECKCAST, writer.classRef(wrapper[1]));
+        code.op(Code.INVOKEVIRTUAL, writer.methodRef(wrapper[1], wrapper[2], "()" + ClassFileWriter.descriptor(type)));
+      } else if (type != Object.class) {
+        code.op(Code.CHECKCAST, writer.classRef(ClassFileWriter.internalName(type)));
+      }
+      code.op(Code.INVOKEVIRTUAL, writer.methodRef(owner, setters[i].getName(), ClassFileWriter.descriptor(setters[i])));
+      Class returnType = setters[i].getReturnType();
+      if (returnType == Long.TYPE || returnType == Double.TYPE) {
+        code.op(Code.POP2);
+      } else if (returnType != Void.TYPE) {
+        code.op(Code.POP);
+      }
+    }
+    code.op(Code.RETURN);
+    return code;
+  }
+
+  private static Code writeGetProperties(ClassFileWriter writer, Class clazz, Method[] getters) {
+    Code code = new Code();
+    String owner = ClassFileWriter.internalName(clazz);
+    code.op(Code.ALOAD_1);
+    code.op(Code.CHECKCAST, writer.classRef(owner));
+    code.op(Code.ASTORE_2);
+    code.pushInt(getters.length);
+    code.op(Code.ANEWARRAY, writer.classRef("java/lang/Object"));
+    code.op(Code.ASTORE_3);
+    for (int i = 0; i < getters.length; i++) {
+      Class type = getters[i].getReturnType();
+      code.op(Code.ALOAD_3);
+      code.pushInt(i);
+      String[] wrapper = (String[]) WRAPPERS.get(type);
+      if (wrapper != null) {
+        code.op(Code.NEW, writer.classRef(wrapper[0]));
+        code.op(Code.DUP);
+      }
+      code.op(Code.ALOAD_2);
+      code.op(Code.INVOKEVIRTUAL, writer.methodRef(owner, getters[i].getName(), ClassFileWriter.descriptor(getters[i])));
+      if (wrapper != null) {
+        code.op(Code.INVOKESPECIAL, writer.methodRef(wrapper[0], "<init>", "(" + ClassFileWriter.descriptor(type) + ")V"));
+      }
+      code.op(Code.AASTORE);
+    }
+    code.op(Code.ALOAD_3);
+    code.op(Code.ARETURN);
+    return code;
+  }
+
+}
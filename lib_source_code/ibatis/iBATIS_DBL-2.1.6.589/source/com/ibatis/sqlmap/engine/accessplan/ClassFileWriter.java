@@ -0,0 +1,486 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.accessplan;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes small class files for the classes that iBATIS generates at runtime,
+ * and defines them.
+ * <p/>
+ * Classes are written in the Java 1.4 format, which needs no stack map
+ * frames, so generated code may branch freely.  Only the JDK is needed.
+ */
+public class ClassFileWriter {
+
+  private static final int CLASS_VERSION = 48;
+
+  private static final int ACC_PUBLIC = 0x0001;
+  private static final int ACC_FINAL = 0x0010;
+  private static final int ACC_SUPER = 0x0020;
+
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_METHODREF = 10;
+  private static final int CONSTANT_INTERFACE_METHODREF = 11;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+  private static int classCount;
+
+  private Code pool = new Code();
+  private Map poolIndex = new HashMap();
+  private int poolCount = 1;
+
+  private Code methods = new Code();
+  private int methodCount;
+
+  private int thisClass;
+  private int superClass;
+  private int[] interfaces;
+
+  /**
+   * Constructor for a public final class
+   *
+   * @param className  - the internal name of the class
+   * @param superName  - the internal name of its superclass
+   * @param interfaceNames - the internal names of the interfaces it implements
+   */
+  public ClassFileWriter(String className, String superName, String[] interfaceNames) {
+    thisClass = classRef(className);
+    superClass = classRef(superName);
+    interfaces = new int[interfaceNames.length];
+    for (int i = 0; i < interfaceNames.length; i++) {
+      interfaces[i] = classRef(interfaceNames[i]);
+    }
+  }
+
+  /**
+   * Adds a public method
+   *
+   * @param name       - the method name
+   * @param descriptor - the method descriptor
+   * @param maxStack   - the maximum depth of the operand stack
+   * @param maxLocals  - the number of local variable slots, including the parameters
+   * @param code       - the bytecode
+   */
+  public void addMethod(String name, String descriptor, int maxStack, int maxLocals, Code code) {
+    int nameIndex = utf8(name);
+    int descriptorIndex = utf8(descriptor);
+    int codeIndex = utf8("Code");
+    methods.u2(ACC_PUBLIC);
+    methods.u2(nameIndex);
+    methods.u2(descriptorIndex);
+    methods.u2(1);
+    methods.u2(codeIndex);
+    methods.u4(12 + code.length());
+    methods.u2(maxStack);
+    methods.u2(maxLocals);
+    methods.u4(code.length());
+    methods.append(code);
+    methods.u2(0);
+    methods.u2(0);
+    methodCount++;
+  }
+
+  /**
+   * Adds a public constructor that calls the no argument constructor of the
+   * superclass
+   *
+   * @param superName - the internal name of the superclass
+   */
+  public void addDefaultConstructor(String superName) {
+    Code code = new Code();
+    code.op(Code.ALOAD_0);
+    code.op(Code.INVOKESPECIAL, methodRef(superName, "<init>", "()V"));
+    code.op(Code.RETURN);
+    addMethod("<init>", "()V", 1, 1, code);
+  }
+
+  /**
+   * Gets the finished class file
+   *
+   * @return the class file
+   */
+  public byte[] toByteArray() {
+    Code out = new Code();
+    out.u4(0xCAFEBABE);
+    out.u2(0);
+    out.u2(CLASS_VERSION);
+    out.u2(poolCount);
+    out.append(pool);
+    out.u2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+    out.u2(thisClass);
+    out.u2(superClass);
+    out.u2(interfaces.length);
+    for (int i = 0; i < interfaces.length; i++) {
+      out.u2(interfaces[i]);
+    }
+    out.u2(0);
+    out.u2(methodCount);
+    out.append(methods);
+    out.u2(0);
+    return out.toByteArray();
+  }
+
+  /**
+   * Gets the constant pool index of a class
+   *
+   * @param internalName - the internal name of the class (or the descriptor of an array)
+   * @return the index
+   */
+  public int classRef(String internalName) {
+    String key = "C" + internalName;
+    Integer index = (Integer) poolIndex.get(key);
+    if (index == null) {
+      int name = utf8(internalName);
+      pool.u1(CONSTANT_CLASS);
+      pool.u2(name);
+      index = addEntry(key);
+    }
+    return index.intValue();
+  }
+
+  /**
+   * Gets the constant pool index of a method of a class
+   *
+   * @param owner      - the internal name of the class
+   * @param name       - the method name
+   * @param descriptor - the method descriptor
+   * @return the index
+   */
+  public int methodRef(String owner, String name, String descriptor) {
+    return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+  }
+
+  /**
+   * Gets the constant pool index of a method of an interface
+   *
+   * @param owner      - the internal name of the interface
+   * @param name       - the method name
+   * @param descriptor - the method descriptor
+   * @return the index
+   */
+  public int interfaceMethodRef(String owner, String name, String descriptor) {
+    return memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+  }
+
+  private int memberRef(int tag, String owner, String name, String descriptor) {
+    String key = tag + owner + "." + name + descriptor;
+    Integer index = (Integer) poolIndex.get(key);
+    if (index == null) {
+      int ownerClass = classRef(owner);
+      int nameAndType = nameAndType(name, descriptor);
+      pool.u1(tag);
+      pool.u2(ownerClass);
+      pool.u2(nameAndType);
+      index = addEntry(key);
+    }
+    return index.intValue();
+  }
+
+  private int nameAndType(String name, String descriptor) {
+    String key = "N" + name + descriptor;
+    Integer index = (Integer) poolIndex.get(key);
+    if (index == null) {
+      int nameIndex = utf8(name);
+      int descriptorIndex = utf8(descriptor);
+      pool.u1(CONSTANT_NAME_AND_TYPE);
+      pool.u2(nameIndex);
+      pool.u2(descriptorIndex);
+      index = addEntry(key);
+    }
+    return index.intValue();
+  }
+
+  private int utf8(String value) {
+    String key = "U" + value;
+    Integer index = (Integer) poolIndex.get(key);
+    if (index == null) {
+      Code bytes = new Code();
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c >= 0x0001 && c <= 0x007F) {
+          bytes.u1(c);
+        } else if (c <= 0x07FF) {
+          bytes.u1(0xC0 | (c >> 6));
+          bytes.u1(0x80 | (c & 0x3F));
+        } else {
+          bytes.u1(0xE0 | (c >> 12));
+          bytes.u1(0x80 | ((c >> 6) & 0x3F));
+          bytes.u1(0x80 | (c & 0x3F));
+        }
+      }
+      pool.u1(CONSTANT_UTF8);
+      pool.u2(bytes.length());
+      pool.append(bytes);
+      index = addEntry(key);
+    }
+    return index.intValue();
+  }
+
+  private Integer addEntry(String key) {
+    Integer index = new Integer(poolCount++);
+    poolIndex.put(key, index);
+    return index;
+  }
+
+  /**
+   * Gets a new name for a generated class
+   *
+   * @param prefix - the internal name of the class, without a number
+   * @return the internal name
+   */
+  public static synchronized String nextClassName(String prefix) {
+    return prefix + (++classCount);
+  }
+
+  /**
+   * Defines a generated class in a class loader of its own
+   *
+   * @param parent    - the class loader that can see the classes the generated class uses
+   * @param className - the internal name of the class
+   * @param classFile - the class file
+   * @param exported  - iBATIS classes the generated class uses, which the parent may not see
+   * @return the class
+   */
+  public static Class defineClass(ClassLoader parent, String className, byte[] classFile, Class[] exported) {
+    return new GeneratedClassLoader(parent, exported).define(className.replace('/', '.'), classFile);
+  }
+
+  /**
+   * Tells if a type may be used by a class in any package
+   *
+   * @param type - the type
+   * @return true if the type (and the classes it is nested in) are public
+   */
+  public static boolean isPublic(Class type) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    if (type.isPrimitive()) {
+      return true;
+    }
+    for (Class c = type; c != null; c = c.getDeclaringClass()) {
+      if (!Modifier.isPublic(c.getModifiers())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets the internal name of a class, as used by class references
+   *
+   * @param type - the class
+   * @return the internal name
+   */
+  public static String internalName(Class type) {
+    if (type.isArray()) {
+      return descriptor(type);
+    }
+    return type.getName().replace('.', '/');
+  }
+
+  /**
+   * Gets the descriptor of a method
+   *
+   * @param method - the method
+   * @return the descriptor
+   */
+  public static String descriptor(Method method) {
+    StringBuffer buffer = new StringBuffer("(");
+    Class[] parameterTypes = method.getParameterTypes();
+    for (int i = 0; i < parameterTypes.length; i++) {
+      buffer.append(descriptor(parameterTypes[i]));
+    }
+    buffer.append(')');
+    buffer.append(descriptor(method.getReturnType()));
+    return buffer.toString();
+  }
+
+  /**
+   * Gets the descriptor of a type
+   *
+   * @param type - the type
+   * @return the descriptor
+   */
+  public static String descriptor(Class type) {
+    if (type.isArray()) {
+      return "[" + descriptor(type.getComponentType());
+    } else if (type == Void.TYPE) {
+      return "V";
+    } else if (type == Boolean.TYPE) {
+      return "Z";
+    } else if (type == Character.TYPE) {
+      return "C";
+    } else if (type == Byte.TYPE) {
+      return "B";
+    } else if (type == Short.TYPE) {
+      return "S";
+    } else if (type == Integer.TYPE) {
+      return "I";
+    } else if (type == Long.TYPE) {
+      return "J";
+    } else if (type == Float.TYPE) {
+      return "F";
+    } else if (type == Double.TYPE) {
+      return "D";
+    } else {
+      return "L" + type.getName().replace('.', '/') + ";";
+    }
+  }
+
+  /**
+   * A growable block of bytecode (or of any class file bytes)
+   */
+  public static class Code {
+
+    public static final int ICONST_0 = 0x03;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int ILOAD = 0x15;
+    public static final int LLOAD = 0x16;
+    public static final int FLOAD = 0x17;
+    public static final int DLOAD = 0x18;
+    public static final int ALOAD = 0x19;
+    public static final int ALOAD_0 = 0x2a;
+    public static final int ALOAD_1 = 0x2b;
+    public static final int ALOAD_2 = 0x2c;
+    public static final int ALOAD_3 = 0x2d;
+    public static final int IALOAD = 0x2e;
+    public static final int AALOAD = 0x32;
+    public static final int ISTORE = 0x36;
+    public static final int LSTORE = 0x37;
+    public static final int FSTORE = 0x38;
+    public static final int DSTORE = 0x39;
+    public static final int ASTORE = 0x3a;
+    public static final int ASTORE_2 = 0x4d;
+    public static final int ASTORE_3 = 0x4e;
+    public static final int AASTORE = 0x53;
+    public static final int POP = 0x57;
+    public static final int POP2 = 0x58;
+    public static final int DUP = 0x59;
+    public static final int IFEQ = 0x99;
+    public static final int GOTO = 0xa7;
+    public static final int ARETURN = 0xb0;
+    public static final int RETURN = 0xb1;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int INVOKEINTERFACE = 0xb9;
+    public static final int NEW = 0xbb;
+    public static final int ANEWARRAY = 0xbd;
+    public static final int CHECKCAST = 0xc0;
+    public static final int IFNONNULL = 0xc7;
+
+    private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    /**
+     * Writes an instruction without operands
+     *
+     * @param opcode - the opcode
+     */
+    public void op(int opcode) {
+      u1(opcode);
+    }
+
+    /**
+     * Writes an instruction with a two byte operand
+     *
+     * @param opcode  - the opcode
+     * @param operand - the operand (e.g. a constant pool index or branch offset)
+     */
+    public void op(int opcode, int operand) {
+      u1(opcode);
+      u2(operand);
+    }
+
+    /**
+     * Writes an instruction that pushes an int constant
+     *
+     * @param value - the value (0 - 32767)
+     */
+    public void pushInt(int value) {
+      if (value <= 5) {
+        u1(ICONST_0 + value);
+      } else if (value <= Byte.MAX_VALUE) {
+        u1(BIPUSH);
+        u1(value);
+      } else {
+        u1(SIPUSH);
+        u2(value);
+      }
+    }
+
+    public void u1(int value) {
+      bytes.write(value);
+    }
+
+    public void u2(int value) {
+      bytes.write(value >>> 8);
+      bytes.write(value);
+    }
+
+    public void u4(int value) {
+      u2(value >>> 16);
+      u2(value);
+    }
+
+    public void append(Code code) {
+      byte[] other = code.toByteArray();
+      bytes.write(other, 0, other.length);
+    }
+
+    public int length() {
+      return bytes.size();
+    }
+
+    public byte[] toByteArray() {
+      return bytes.toByteArray();
+    }
+  }
+
+  /**
+   * Loads one generated class.  Other classes are found through the parent,
+   * except the exported iBATIS classes, which are always shared.
+   */
+  private static class GeneratedClassLoader extends ClassLoader {
+
+    private Class[] exported;
+
+    public GeneratedClassLoader(ClassLoader parent, Class[] exported) {
+      super(parent);
+      this.exported = exported;
+    }
+
+    public Class define(String name, byte[] classFile) {
+      return defineClass(name, classFile, 0, classFile.length);
+    }
+
+    protected synchronized Class loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      for (int i = 0; i < exported.length; i++) {
+        if (exported[i].getName().equals(name)) {
+          return exported[i];
+        }
+      }
+      return super.loadClass(name, resolve);
+    }
+  }
+
+}
@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.accessplan;
+
+import com.ibatis.common.exception.NestedRuntimeException;
+
+import java.lang.reflect.Method;
+
+/**
+ * Property access plan that uses a class generated for the bean class and
+ * property list, which calls the getters and setters directly instead of
+ * through reflection
+ */
+public class GeneratedAccessPlan extends BaseAccessPlan {
+
+  private static final String CLASS_NAME_PREFIX = "com/ibatis/sqlmap/engine/accessplan/GeneratedAccessor";
+
+  private AccessPlan accessor;
+
+  GeneratedAccessPlan(Class clazz, String[] propertyNames) {
+    super(clazz, propertyNames);
+    Method[] getters = getGetters(propertyNames);
+    Method[] setters = getSetters(propertyNames);
+    if (!AccessorGenerator.isAccessible(clazz, getters, setters)) {
+      throw new NestedRuntimeException("Cannot generate an accessor for '" + clazz.getName()
+          + "' because the class or some of its properties are not public.");
+    }
+    String className = ClassFileWriter.nextClassName(CLASS_NAME_PREFIX);
+    byte[] classFile = AccessorGenerator.generate(className, clazz, getters, setters);
+    try {
+      Class accessorClass = ClassFileWriter.defineClass(clazz.getClassLoader(), className, classFile, new Class[]{AccessPlan.class});
+      accessor = (AccessPlan) accessorClass.newInstance();
+    } catch (Exception e) {
+      throw new NestedRuntimeException("Error generating accessor for '" + clazz.getName() + "'.  Cause: " + e, e);
+    } catch (LinkageError e) {
+      throw new NestedRuntimeException("Error generating accessor for '" + clazz.getName() + "'.  Cause: " + e, e);
+    }
+  }
+
+  public void setProperties(Object object, Object[] values) {
+    try {
+      accessor.setProperties(object, values);
+    } catch (Throwable t) {
+      throw new NestedRuntimeException("Error setting properties of '" + object + "'.  Cause: " + t, t);
+    }
+  }
+
+  public Object[] getProperties(Object object) {
+    try {
+      return accessor.getProperties(object);
+    } catch (Throwable t) {
+      throw new NestedRuntimeException("Error getting properties of '" + object + "'.  Cause: " + t, t);
+    }
+  }
+
+}
@@ -11,12 +11,20 @@ import com.ibatis.sqlmap.client.extensions.TypeHandlerCallback;
 import com.ibatis.sqlmap.engine.accessplan.AccessPlanFactory;
 import com.ibatis.sqlmap.engine.cache.CacheModel;
 import com.ibatis.sqlmap.engine.cache.fifo.FifoCacheController;
-import com.ibatis.sqlmap.engine.cache.lru.LruCacheController;
+import com.ibatis.sqlmap.engine.cache.lru.SegmentedLruCacheController;
 import com.ibatis.sqlmap.engine.cache.memory.MemoryCacheController;
+import com.ibatis.sqlmap.engine.cache.offheap.OffHeapCacheController;
+import com.ibatis.sqlmap.engine.cache.tinylfu.TinyLfuCacheController;
 import com.ibatis.sqlmap.engine.datasource.DataSourceFactory;
 import com.ibatis.sqlmap.engine.datasource.DbcpDataSourceFactory;
 import com.ibatis.sqlmap.engine.datasource.JndiDataSourceFactory;
 import com.ibatis.sqlmap.engine.datasource.SimpleDataSourceFactory;
+import com.ibatis.sqlmap.engine.execution.Dialect;
+import com.ibatis.sqlmap.engine.execution.MySqlDialect;
+import com.ibatis.sqlmap.engine.execution.OracleDialect;
+import com.ibatis.sqlmap.engine.execution.PostgreSqlDialect;
+import com.ibatis.sqlmap.engine.execution.SqlServerDialect;
+import com.ibatis.sqlmap.engine.execution.StandardDialect;
 import com.ibatis.sqlmap.engine.impl.SqlMapClientImpl;
 import com.ibatis.sqlmap.engine.impl.SqlMapExecutorDelegate;
 import com.ibatis.sqlmap.engine.mapping.statement.MappedStatement;
@@ -181,7 +189,40 @@ public class SqlMapConfigParser extends BaseParser {
           vars.client.getDelegate().setMaxSessions(Integer.parseInt(maxSessions));
         }
 
+        String statementCacheSize = attributes.getProperty("statementCacheSize");
+        if (statementCacheSize != null && Integer.parseInt(statementCacheSize) > 0) {
+          vars.client.getDelegate().setStatementCacheSize(Integer.parseInt(statementCacheSize));
+        }
+
+        String nestedSelectBatchSize = attributes.getProperty("nestedSelectBatchSize");
+        if (nestedSelectBatchSize != null && Integer.parseInt(nestedSelectBatchSize) >= 0) {
+          vars.client.getDelegate().setNestedSelectBatchSize(Integer.parseInt(nestedSelectBatchSize));
+        }
+
+        String prefetchThreads = attributes.getProperty("prefetchThreads");
+        if (prefetchThreads != null && Integer.parseInt(prefetchThreads) > 0) {
+          vars.client.getDelegate().setPrefetchThreads(Integer.parseInt(prefetchThreads));
+        }
+
+        String dialect = attributes.getProperty("dialect");
+        if (dialect != null) {
+          dialect = vars.typeHandlerFactory.resolveAlias(dialect);
+          try {
+            vars.errorCtx.setMoreInfo("Check the dialect type or class.");
+            vars.client.getDelegate().setDialect((Dialect) Resources.instantiate(dialect));
+            vars.errorCtx.setMoreInfo(null);
+          } catch (Exception e) {
+            throw new SqlMapException("Error instantiating Dialect.  Cause: " + e, e);
+          }
+        }
+
         AccessPlanFactory.setBytecodeEnhancementEnabled(vars.client.getDelegate().isEnhancementEnabled());
+
+        String accessorGenerationEnabledAttr = attributes.getProperty("accessorGenerationEnabled");
+        AccessPlanFactory.setAccessorGenerationEnabled("true".equals(accessorGenerationEnabledAttr));
+
+        String rowMapperGenerationEnabledAttr = attributes.getProperty("rowMapperGenerationEnabled");
+        vars.client.getDelegate().setRowMapperGenerationEnabled("true".equals(rowMapperGenerationEnabledAttr));
       }
     });
   }
@@ -362,11 +403,20 @@ public class SqlMapConfigParser extends BaseParser {
 
     // CACHE ALIASES
     vars.typeHandlerFactory.putTypeAlias("FIFO", FifoCacheController.class.getName());
-    vars.typeHandlerFactory.putTypeAlias("LRU", LruCacheController.class.getName());
+    vars.typeHandlerFactory.putTypeAlias("LRU", SegmentedLruCacheController.class.getName());
     vars.typeHandlerFactory.putTypeAlias("MEMORY", MemoryCacheController.class.getName());
+    vars.typeHandlerFactory.putTypeAlias("TINYLFU", TinyLfuCacheController.class.getName());
+    vars.typeHandlerFactory.putTypeAlias("OFFHEAP", OffHeapCacheController.class.getName());
     // -- use a string for OSCache to avoid uneccessary loading of properties upon init
     vars.typeHandlerFactory.putTypeAlias("OSCACHE", "com.ibatis.sqlmap.engine.cache.oscache.OSCacheController");
 
+    // DIALECT ALIASES
+    vars.typeHandlerFactory.putTypeAlias("MYSQL", MySqlDialect.class.getName());
+    vars.typeHandlerFactory.putTypeAlias("ORACLE", OracleDialect.class.getName());
+    vars.typeHandlerFactory.putTypeAlias("POSTGRESQL", PostgreSqlDialect.class.getName());
+    vars.typeHandlerFactory.putTypeAlias("SQLSERVER", SqlServerDialect.class.getName());
+    vars.typeHandlerFactory.putTypeAlias("STANDARD", StandardDialect.class.getName());
+
     // TYPE ALIASEs
     vars.typeHandlerFactory.putTypeAlias("dom", DomTypeMarker.class.getName());
     vars.typeHandlerFactory.putTypeAlias("domCollection", DomCollectionTypeMarker.class.getName());
@@ -159,7 +159,7 @@ public class SqlMapParser extends BaseParser {
       public void process(Node node) throws Exception {
         vars.errorCtx.setMoreInfo("Check the cache model flush on statement elements.");
         Properties childAttributes = NodeletUtils.parseAttributes(node, vars.properties);
-        vars.currentCacheModel.addFlushTriggerStatement(childAttributes.getProperty("statement"));
+        vars.currentCacheModel.addFlushTriggerStatement(childAttributes.getProperty("statement"), childAttributes.getProperty("key"));
       }
     });
     parser.addNodelet("/sqlMap/cacheModel/flushInterval", new Nodelet() {
@@ -178,6 +178,15 @@ public class SqlMapParser extends BaseParser {
           if (hours != null) t += Integer.parseInt(hours) * 60 * 60 * 1000;
           if (t < 1) throw new NestedRuntimeException("A flush interval must specify one or more of milliseconds, seconds, minutes or hours.");
           vars.currentCacheModel.setFlushInterval(t);
+
+          String perEntry = childAttributes.getProperty("perEntry");
+          vars.currentCacheModel.setFlushPerEntry("true".equals(perEntry));
+          String jitter = childAttributes.getProperty("jitter");
+          if (jitter != null) {
+            vars.currentCacheModel.setFlushJitter(Integer.parseInt(jitter));
+          }
+          String serveStale = childAttributes.getProperty("serveStale");
+          vars.currentCacheModel.setServeStale("true".equals(serveStale));
         } catch (NumberFormatException e) {
           throw new NestedRuntimeException("Error building cache '" + vars.currentCacheModel.getId() + "' in '" + "resourceNAME" + "'.  Flush interval milliseconds must be a valid long integer value.  Cause: " + e, e);
         }
@@ -315,6 +324,7 @@ public class SqlMapParser extends BaseParser {
         String extended = applyNamespace(attributes.getProperty("extends"));
         String xmlName = attributes.getProperty("xmlName");
         String groupBy = attributes.getProperty("groupBy");
+        String groupByOrdered = attributes.getProperty("groupByOrdered");
         resultClassName = vars.typeHandlerFactory.resolveAlias(resultClassName);
 
         vars.errorCtx.setObjectId(id + " result map");
@@ -329,6 +339,7 @@ public class SqlMapParser extends BaseParser {
             vars.currentResultMap.addGroupByProperty(parser.nextToken());
           }
         }
+        vars.currentResultMap.setGroupByOrdered("true".equals(groupByOrdered));
 
         Class resultClass = null;
         try {
@@ -356,6 +367,9 @@ public class SqlMapParser extends BaseParser {
               while (i.hasNext()) {
                 vars.currentResultMap.addGroupByProperty((String) i.next());
               }
+              if (groupByOrdered == null) {
+                vars.currentResultMap.setGroupByOrdered(extendedResultMap.isGroupByOrdered());
+              }
             }
           }
         }
@@ -375,6 +389,8 @@ public class SqlMapParser extends BaseParser {
         String columnName = childAttributes.getProperty("column");
         String columnIndex = childAttributes.getProperty("columnIndex");
         String statementName = childAttributes.getProperty("select");
+        String batchStatementName = childAttributes.getProperty("batchSelect");
+        String batchKey = childAttributes.getProperty("batchKey");
         String resultMapName = childAttributes.getProperty("resultMap");
         String callback = childAttributes.getProperty("typeHandler");
 
@@ -413,6 +429,18 @@ public class SqlMapParser extends BaseParser {
         mapping.setStatementName(statementName);
         mapping.setNestedResultMapName(resultMapName);
 
+        if (batchStatementName != null && batchStatementName.length() > 0) {
+          vars.errorCtx.setMoreInfo("Check the result mapping batchSelect and batchKey attributes.");
+          if (statementName == null || statementName.length() == 0 || batchKey == null || batchKey.length() == 0) {
+            throw new NestedRuntimeException("A result mapping with a batchSelect must also have a select and a batchKey.");
+          }
+          if (columnName == null || columnName.indexOf('=') > -1 || columnName.indexOf(',') > -1) {
+            throw new NestedRuntimeException("A result mapping with a batchSelect must have a single column.");
+          }
+          mapping.setBatchStatementName(batchStatementName);
+          mapping.setBatchKeyProperty(batchKey);
+        }
+
         if (resultMapName != null && resultMapName.length() > 0) {
           vars.currentResultMap.addNestedResultMappings(mapping);
         }
@@ -67,6 +67,7 @@ public class SqlStatementParser extends BaseParser {
     String xmlResultName = attributes.getProperty("xmlResultName");
     String resultSetType = attributes.getProperty("resultSetType");
     String fetchSize = attributes.getProperty("fetchSize");
+    String pageKey = attributes.getProperty("pageKey");
     String allowRemapping = attributes.getProperty("remapResults");
 
     vars.errorCtx.setObjectId(id + " statement");
@@ -110,6 +111,10 @@ public class SqlStatementParser extends BaseParser {
       statement.setFetchSize(new Integer(fetchSize));
     }
 
+    if (pageKey != null && pageKey.length() > 0) {
+      statement.setPageKey(pageKey);
+    }
+
     // set parameter class either from attribute or from map (make sure to match)
     if (parameterMap == null) {
       try {
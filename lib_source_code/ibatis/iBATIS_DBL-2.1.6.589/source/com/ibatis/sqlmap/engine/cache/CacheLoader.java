@@ -0,0 +1,33 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.cache;
+
+import java.sql.SQLException;
+
+/**
+ * Loads the object for a cache key that was not found in the cache
+ */
+public interface CacheLoader {
+
+  /**
+   * Load the object to be cached
+   *
+   * @return the object (may be null)
+   * @throws SQLException - if the object cannot be loaded
+   */
+  public Object load() throws SQLException;
+
+}
@@ -15,12 +15,16 @@
  */
 package com.ibatis.sqlmap.engine.cache;
 
+import com.ibatis.common.beans.ClassInfo;
+import com.ibatis.common.beans.Probe;
+import com.ibatis.common.beans.ProbeFactory;
 import com.ibatis.common.exception.NestedRuntimeException;
 import com.ibatis.common.resources.Resources;
 import com.ibatis.sqlmap.engine.mapping.statement.ExecuteListener;
 import com.ibatis.sqlmap.engine.mapping.statement.MappedStatement;
 
-import java.io.*;
+import java.io.IOException;
+import java.sql.SQLException;
 import java.util.*;
 
 /**
@@ -28,13 +32,29 @@ import java.util.*;
  */
 public class CacheModel implements ExecuteListener {
 
-  private static final Map lockMap = new HashMap();
+  /**
+   * The number of lock stripes used to serialize access to controllers that
+   * are not concurrent.  Must be a power of two.
+   */
+  private static final int LOCK_STRIPES = 256;
+
+  /**
+   * The number of invalidation slots that flush tags are hashed onto.
+   * Must be a power of two.
+   */
+  private static final int TAG_SLOTS = 1024;
+
+  private static final Random JITTER = new Random();
+  private static final Probe PROBE = ProbeFactory.getProbe();
+
   /**
    * This is used to represent null objects that are returned from the cache so
    * that they can be cached, too.
    */
   public static final Object NULL_OBJECT = new Object();
   private final Object STATS_LOCK = new Object();
+  private final Object FLUSH_LOCK = new Object();
+  private final Object[] keyLocks;
   private int requests = 0;
   private int hits = 0;
 
@@ -48,12 +68,26 @@ public class CacheModel implements ExecuteListener {
   private boolean readOnly;
   private boolean serialize;
 
-  private long lastFlush;
+  private volatile long lastFlush;
   private long flushInterval;
   private long flushIntervalSeconds;
   private Set flushTriggerStatements;
+  private Map flushTriggerKeys;
+  private String[] tagKeys;
 
   private CacheController controller;
+  private boolean concurrentController;
+  private CacheWeigher weigher;
+  private CacheSerializer serializer;
+
+  private boolean flushPerEntry;
+  private int flushJitter;
+  private boolean serveStale;
+  private final Map pendingLoads = new HashMap();
+
+  private final Object TAG_LOCK = new Object();
+  private long[] tagInvalidations;
+  private long tagClock;
 
   private String resource;
 
@@ -65,6 +99,14 @@ public class CacheModel implements ExecuteListener {
     this.flushIntervalSeconds = NO_FLUSH_INTERVAL;
     this.lastFlush = System.currentTimeMillis();
     this.flushTriggerStatements = new HashSet();
+    this.flushTriggerKeys = new HashMap();
+    this.tagKeys = new String[0];
+    this.weigher = new DefaultCacheWeigher();
+    this.serializer = new JavaCacheSerializer();
+    this.keyLocks = new Object[LOCK_STRIPES];
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      keyLocks[i] = new Object();
+    }
   }
 
   /**
@@ -151,6 +193,43 @@ public class CacheModel implements ExecuteListener {
       throws ClassNotFoundException, InstantiationException, IllegalAccessException {
     Class clazz = Resources.classForName(implementation);
     controller = (CacheController) Resources.instantiate(clazz);
+    concurrentController = controller instanceof ConcurrentCacheController;
+  }
+
+  /**
+   * Getter for the weigher used to estimate the size of cache entries
+   *
+   * @return the weigher
+   */
+  public CacheWeigher getWeigher() {
+    return weigher;
+  }
+
+  /**
+   * Setter for the weigher used to estimate the size of cache entries
+   *
+   * @param weigher - the new weigher
+   */
+  public void setWeigher(CacheWeigher weigher) {
+    this.weigher = weigher;
+  }
+
+  /**
+   * Getter for the serializer used by serializing cache models
+   *
+   * @return the serializer
+   */
+  public CacheSerializer getSerializer() {
+    return serializer;
+  }
+
+  /**
+   * Setter for the serializer used by serializing cache models
+   *
+   * @param serializer - the new serializer
+   */
+  public void setSerializer(CacheSerializer serializer) {
+    this.serializer = serializer;
   }
 
   /**
@@ -181,6 +260,67 @@ public class CacheModel implements ExecuteListener {
     this.flushIntervalSeconds = flushInterval / 1000;
   }
 
+  /**
+   * Getter to tell if entries are flushed individually
+   *
+   * @return true if each entry expires on its own after the flushInterval
+   */
+  public boolean isFlushPerEntry() {
+    return flushPerEntry;
+  }
+
+  /**
+   * Setter to flush entries individually instead of the whole cache.  This
+   * also makes concurrent misses for a key wait for a single load.
+   *
+   * @param flushPerEntry - if entries expire on their own after the flushInterval
+   */
+  public void setFlushPerEntry(boolean flushPerEntry) {
+    this.flushPerEntry = flushPerEntry;
+  }
+
+  /**
+   * Getter for the flush jitter
+   *
+   * @return the maximum percentage an entry's lifetime is shortened by
+   */
+  public int getFlushJitter() {
+    return flushJitter;
+  }
+
+  /**
+   * Setter for the flush jitter.  Each entry's lifetime is shortened by a
+   * random amount of up to this percentage of the flushInterval, so that
+   * entries cached together do not all expire at once.
+   *
+   * @param flushJitter - the percentage (0 - 100)
+   */
+  public void setFlushJitter(int flushJitter) {
+    if (flushJitter < 0 || flushJitter > 100) {
+      throw new NestedRuntimeException("The flush jitter of cache model '" + id + "' must be a percentage from 0 to 100, not " + flushJitter + ".");
+    }
+    this.flushJitter = flushJitter;
+  }
+
+  /**
+   * Getter to tell if expired entries are served while they are reloaded
+   *
+   * @return true if stale entries are served
+   */
+  public boolean isServeStale() {
+    return serveStale;
+  }
+
+  /**
+   * Setter to serve expired entries, for up to one more flushInterval,
+   * while a single caller reloads them
+   *
+   * @param serveStale - if stale entries are served
+   */
+  public void setServeStale(boolean serveStale) {
+    this.serveStale = serveStale;
+  }
+
   /**
    * Adds a flushTriggerStatment. When a flushTriggerStatment is executed, the
    * cache is flushed (cleared).
@@ -188,7 +328,44 @@ public class CacheModel implements ExecuteListener {
    * @param statementName The statement to add.
    */
   public void addFlushTriggerStatement(String statementName) {
+    addFlushTriggerStatement(statementName, null);
+  }
+
+  /**
+   * Adds a flushTriggerStatment that only removes the entries cached for a
+   * parameter property value.  When the statement is executed, entries for
+   * which the key property of the query parameter equals the key property
+   * of the statement parameter are removed, along with entries whose query
+   * parameter has no such property.  If the statement parameter has no
+   * value for the key, the whole cache is flushed.
+   * <p/>
+   * A simple query parameter (a String, Integer, etc.) is not bound to any
+   * key, so its entries are removed whenever the key is flushed.  A simple
+   * statement parameter is taken as the value of the key only when it is the
+   * one key declared for the statement.
+   *
+   * @param statementName The statement to add.
+   * @param key           The parameter property (or null to flush the whole cache)
+   */
+  public void addFlushTriggerStatement(String statementName, String key) {
     flushTriggerStatements.add(statementName);
+    Set keys = (Set) flushTriggerKeys.get(statementName);
+    if (keys == null) {
+      keys = new HashSet();
+      flushTriggerKeys.put(statementName, keys);
+    }
+    keys.add(key);
+    if (key != null && !Arrays.asList(tagKeys).contains(key)) {
+      String[] newKeys = new String[tagKeys.length + 1];
+      System.arraycopy(tagKeys, 0, newKeys, 0, tagKeys.length);
+      newKeys[tagKeys.length] = key;
+      synchronized (TAG_LOCK) {
+        if (tagInvalidations == null) {
+          tagInvalidations = new long[TAG_SLOTS];
+        }
+      }
+      tagKeys = newKeys;
+    }
   }
 
   /**
@@ -208,10 +385,39 @@ public class CacheModel implements ExecuteListener {
    * cache whenever a certain statement is executed.
    * (i.e. the flushOnExecute cache policy)
    *
-   * @param statement The statement to execute
+   * @param statement       The statement to execute
+   * @param parameterObject The parameter object of the statement
    */
-  public void onExecuteStatement(MappedStatement statement) {
-    flush();
+  public void onExecuteStatement(MappedStatement statement, Object parameterObject) {
+    Set keys = (Set) flushTriggerKeys.get(statement.getId());
+    if (keys == null || keys.contains(null)) {
+      flush();
+      return;
+    }
+    boolean simple = parameterObject != null && ClassInfo.isKnownType(parameterObject.getClass());
+    if (simple && keys.size() > 1) {
+      // there is no telling which key a simple parameter is the value of
+      flush();
+      return;
+    }
+    int[] slots = new int[keys.size() * 2];
+    Iterator i = keys.iterator();
+    for (int n = 0; i.hasNext(); n += 2) {
+      String key = (String) i.next();
+      Object value = simple ? parameterObject : getTagValue(parameterObject, key);
+      if (value == null) {
+        flush();
+        return;
+      }
+      slots[n] = tagSlot(key + "=" + value);
+      slots[n + 1] = tagSlot(key);
+    }
+    synchronized (TAG_LOCK) {
+      tagClock++;
+      for (int n = 0; n < slots.length; n++) {
+        tagInvalidations[slots[n]] = tagClock;
+      }
+    }
   }
 
 
@@ -224,12 +430,58 @@ public class CacheModel implements ExecuteListener {
     return (double) hits / (double) requests;
   }
 
+  /**
+   * Returns the estimated size of the cached entries.
+   *
+   * @return the weight in bytes, or 0 if the controller is not bounded by weight
+   */
+  public long getWeight() {
+    if (controller instanceof WeightedCacheController) {
+      return ((WeightedCacheController) controller).getWeight();
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the number of entries evicted to respect the size limits.
+   *
+   * @return the eviction count, or 0 if the controller does not track evictions
+   */
+  public long getEvictionCount() {
+    if (controller instanceof WeightedCacheController) {
+      return ((WeightedCacheController) controller).getEvictionCount();
+    }
+    return 0;
+  }
+
   /**
    * Configures the cache
    *
-   * @param props
+   * @param props Optionally can contain properties [weigher=class name,
+   *              serializer=COMPACT|JAVA|class name], all properties are
+   *              passed on to the controller
    */
   public void configure(Properties props) {
+    String weigherClass = props.getProperty("weigher");
+    if (weigherClass != null) {
+      try {
+        weigher = (CacheWeigher) Resources.instantiate(weigherClass);
+      } catch (Exception e) {
+        throw new NestedRuntimeException("Error instantiating cache weigher '" + weigherClass + "'.  Cause: " + e, e);
+      }
+    }
+    String serializerClass = props.getProperty("serializer");
+    if ("COMPACT".equalsIgnoreCase(serializerClass)) {
+      serializer = new CompactCacheSerializer();
+    } else if ("JAVA".equalsIgnoreCase(serializerClass)) {
+      serializer = new JavaCacheSerializer();
+    } else if (serializerClass != null) {
+      try {
+        serializer = (CacheSerializer) Resources.instantiate(serializerClass);
+      } catch (Exception e) {
+        throw new NestedRuntimeException("Error instantiating cache serializer '" + serializerClass + "'.  Cause: " + e, e);
+      }
+    }
     controller.configure(props);
   }
 
@@ -238,10 +490,7 @@ public class CacheModel implements ExecuteListener {
    */
   public void flush() {
     lastFlush = System.currentTimeMillis();
-    // use the controller's key
-    CacheKey key = new CacheKey();
-    key.update(controller);
-    synchronized (getLock(key)) {
+    synchronized (FLUSH_LOCK) {
       controller.flush(this);
     }
   }
@@ -255,39 +504,96 @@ public class CacheModel implements ExecuteListener {
    * @return The cached object (or null)
    */
   public Object getObject(CacheKey key) {
-    synchronized (this) {
-      if (flushInterval != NO_FLUSH_INTERVAL
-          && System.currentTimeMillis() - lastFlush > flushInterval) {
-        flush();
-      }
-    }
+    checkFlushInterval();
 
     Object value = null;
-    synchronized (getLock(key)) {
-      value = controller.getObject(this, key);
+    Entry entry = getEntry(key);
+    if (entry != null && System.currentTimeMillis() < entry.expires) {
+      value = deserialize(entry.value);
     }
 
-    if (serialize && !readOnly && (value != NULL_OBJECT && value != null)) {
-      try {
-        ByteArrayInputStream bis = new ByteArrayInputStream((byte[]) value);
-        ObjectInputStream ois = new ObjectInputStream(bis);
-        value = ois.readObject();
-        ois.close();
-      } catch (Exception e) {
-        throw new NestedRuntimeException("Error caching serializable object.  Be sure you're not attempting to use " +
-            "a serialized cache for an object that may be taking advantage of lazy loading.  Cause: " + e, e);
+    recordRequest(value != null);
+    return value;
+
+  }
+
+  /**
+   * Get an object out of the cache, loading it on a miss.
+   * <p/>
+   * Concurrent misses for a key wait for a single load instead of running
+   * their own, without holding any lock while the object is loaded.  If
+   * entries are flushed individually and serving stale entries is enabled,
+   * an expired entry is still returned for up to one more flush interval
+   * while a single caller refreshes it.
+   *
+   * @param key             - the key of the object
+   * @param parameterObject - the parameter the object is loaded for, used to tag the entry
+   * @param loader          - loads the object if it is not cached
+   * @return the object (null if null was cached)
+   * @throws SQLException - if the loader fails
+   */
+  public Object getObject(CacheKey key, Object parameterObject, CacheLoader loader) throws SQLException {
+    checkFlushInterval();
+
+    long now = System.currentTimeMillis();
+    Entry entry = getEntry(key);
+    if (entry != null && now < entry.expires) {
+      recordRequest(true);
+      return valueOf(entry.value);
+    }
+    boolean stale = entry != null && flushPerEntry && serveStale && now - entry.expires < flushInterval;
+
+    PendingLoad pending;
+    boolean loading = false;
+    synchronized (pendingLoads) {
+      pending = (PendingLoad) pendingLoads.get(key);
+      if (pending == null) {
+        pending = new PendingLoad();
+        pendingLoads.put(key, pending);
+        loading = true;
       }
     }
 
-    synchronized (STATS_LOCK) {
-      requests++;
-      if (value != null) {
-        hits++;
+    if (!loading) {
+      if (stale) {
+        recordRequest(true);
+        return valueOf(entry.value);
+      }
+      Object stored = pending.await();
+      if (stored != PendingLoad.FAILED) {
+        recordRequest(true);
+        return valueOf(stored);
       }
+      // the other load failed or this thread is loading it already
+      recordRequest(false);
+      return loader.load();
     }
 
-    return value;
+    recordRequest(false);
+    Object stored = PendingLoad.FAILED;
+    try {
+      long stamp = getTagStamp();
+      Object value = loader.load();
+      stored = putObject(key, parameterObject, value, stamp);
+      return value;
+    } finally {
+      synchronized (pendingLoads) {
+        pendingLoads.remove(key);
+      }
+      pending.complete(stored);
+    }
+  }
 
+  private void checkFlushInterval() {
+    if (!flushPerEntry && flushInterval != NO_FLUSH_INTERVAL
+        && System.currentTimeMillis() - lastFlush > flushInterval) {
+      synchronized (this) {
+        // another thread may have flushed while this one waited
+        if (System.currentTimeMillis() - lastFlush > flushInterval) {
+          flush();
+        }
+      }
+    }
   }
 
   /**
@@ -297,39 +603,292 @@ public class CacheModel implements ExecuteListener {
    * @param value The object to be cached
    */
   public void putObject(CacheKey key, Object value) {
+    putObject(key, null, value, getTagStamp());
+  }
+
+  private Object putObject(CacheKey key, Object parameterObject, Object value, long stamp) {
+    Object stored = serialize(value);
+    Object entry = stored;
+    if (flushPerEntry || tagKeys.length > 0) {
+      entry = encode(stored, nextExpiry(), stamp, getTagSlots(parameterObject));
+    }
+    if (concurrentController) {
+      controller.putObject(this, key, entry);
+    } else {
+      synchronized (getLock(key)) {
+        controller.putObject(this, key, entry);
+      }
+    }
+    return stored;
+  }
+
+  /**
+   * Get the lock that guards a cache key.  Keys are mapped onto a fixed
+   * array of lock stripes owned by this model.  The lock is only held while
+   * a controller that is not concurrent reads or writes the key, never while
+   * the object is loaded.
+   *
+   * @param key - the cache key
+   * @return the lock object for the key
+   */
+  public final Object getLock(CacheKey key) {
+    int h = key.hashCode();
+    h ^= (h >>> 20) ^ (h >>> 12);
+    h ^= (h >>> 7) ^ (h >>> 4);
+    return keyLocks[h & (LOCK_STRIPES - 1)];
+  }
+
+  private void recordRequest(boolean hit) {
+    synchronized (STATS_LOCK) {
+      requests++;
+      if (hit) {
+        hits++;
+      }
+    }
+  }
+
+  private Object serialize(Object value) {
     if (null == value) value = NULL_OBJECT;
     if (serialize && !readOnly && value != NULL_OBJECT) {
       try {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(bos);
-        oos.writeObject(value);
-        oos.flush();
-        oos.close();
-        value = bos.toByteArray();
+        value = serializer.serialize(value);
       } catch (IOException e) {
         throw new NestedRuntimeException("Error caching serializable object.  Cause: " + e, e);
       }
     }
-    synchronized (getLock(key)) {
-      controller.putObject(this, key, value);
+    return value;
+  }
+
+  private Object deserialize(Object value) {
+    if (serialize && !readOnly && (value != NULL_OBJECT && value != null)) {
+      try {
+        value = serializer.deserialize((byte[]) value);
+      } catch (Exception e) {
+        throw new NestedRuntimeException("Error caching serializable object.  Be sure you're not attempting to use " +
+            "a serialized cache for an object that may be taking advantage of lazy loading.  Cause: " + e, e);
+      }
+    }
+    return value;
+  }
+
+  private Object valueOf(Object stored) {
+    Object value = deserialize(stored);
+    return value == NULL_OBJECT ? null : value;
+  }
+
+  private long nextExpiry() {
+    if (!flushPerEntry || flushInterval == NO_FLUSH_INTERVAL) {
+      return Long.MAX_VALUE;
+    }
+    long ttl = flushInterval;
+    if (flushJitter > 0) {
+      ttl -= (long) (ttl * flushJitter / 100.0 * JITTER.nextDouble());
+    }
+    return System.currentTimeMillis() + ttl;
+  }
+
+  private Object getTagValue(Object parameterObject, String key) {
+    if (parameterObject == null) {
+      return null;
+    } else if (parameterObject instanceof Map) {
+      return ((Map) parameterObject).get(key);
+    } else if (ClassInfo.isKnownType(parameterObject.getClass())) {
+      // a simple parameter is not bound to any key
+      return null;
+    } else if (PROBE.hasReadableProperty(parameterObject, key)) {
+      return PROBE.getObject(parameterObject, key);
+    }
+    return null;
+  }
+
+  private int[] getTagSlots(Object parameterObject) {
+    String[] keys = tagKeys;
+    if (keys.length == 0) {
+      return null;
+    }
+    int[] slots = new int[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      Object value = getTagValue(parameterObject, keys[i]);
+      // without a value the entry depends on every value of the key
+      slots[i] = tagSlot(value == null ? keys[i] : keys[i] + "=" + value);
+    }
+    return slots;
+  }
+
+  private static int tagSlot(String tag) {
+    int h = tag.hashCode();
+    h ^= (h >>> 20) ^ (h >>> 12);
+    h ^= (h >>> 7) ^ (h >>> 4);
+    return h & (TAG_SLOTS - 1);
+  }
+
+  private long getTagStamp() {
+    synchronized (TAG_LOCK) {
+      return tagClock;
+    }
+  }
+
+  private boolean isCurrent(Entry entry) {
+    if (entry.slots == null) {
+      return true;
+    }
+    synchronized (TAG_LOCK) {
+      for (int i = 0; i < entry.slots.length; i++) {
+        if (tagInvalidations[entry.slots[i]] > entry.stamp) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private Entry getEntry(CacheKey key) {
+    Object stored;
+    if (concurrentController) {
+      stored = controller.getObject(this, key);
+    } else {
+      synchronized (getLock(key)) {
+        stored = controller.getObject(this, key);
+      }
+    }
+    if (stored == null) {
+      return null;
+    }
+    if (!flushPerEntry && tagKeys.length == 0) {
+      return new Entry(stored, Long.MAX_VALUE, 0, null);
+    }
+    Entry entry;
+    if (stored instanceof Entry) {
+      entry = (Entry) stored;
+    } else {
+      entry = decode((byte[]) stored);
+    }
+    if (!isCurrent(entry)) {
+      if (concurrentController) {
+        controller.removeObject(this, key);
+      } else {
+        synchronized (getLock(key)) {
+          controller.removeObject(this, key);
+        }
+      }
+      return null;
+    }
+    return entry;
+  }
+
+  private Object encode(Object stored, long expires, long stamp, int[] slots) {
+    if (!serialize || readOnly) {
+      return new Entry(stored, expires, stamp, slots);
+    }
+    // serialized entries are prefixed with the expiry time, the tag stamp and the tag slots
+    int count = slots == null ? 0 : slots.length;
+    int header = 20 + 4 * count;
+    int length = stored == NULL_OBJECT ? 0 : ((byte[]) stored).length;
+    byte[] bytes = new byte[header + length];
+    writeLong(bytes, 0, expires);
+    writeLong(bytes, 8, stamp);
+    writeInt(bytes, 16, count);
+    for (int i = 0; i < count; i++) {
+      writeInt(bytes, 20 + 4 * i, slots[i]);
+    }
+    if (length > 0) {
+      System.arraycopy(stored, 0, bytes, header, length);
+    }
+    return bytes;
+  }
+
+  private static Entry decode(byte[] bytes) {
+    long expires = readLong(bytes, 0);
+    long stamp = readLong(bytes, 8);
+    int[] slots = null;
+    int count = (int) readInt(bytes, 16);
+    if (count > 0) {
+      slots = new int[count];
+      for (int i = 0; i < count; i++) {
+        slots[i] = (int) readInt(bytes, 20 + 4 * i);
+      }
+    }
+    int header = 20 + 4 * count;
+    Object value = NULL_OBJECT;
+    if (bytes.length > header) {
+      byte[] payload = new byte[bytes.length - header];
+      System.arraycopy(bytes, header, payload, 0, payload.length);
+      value = payload;
+    }
+    return new Entry(value, expires, stamp, slots);
+  }
+
+  private static void writeLong(byte[] bytes, int offset, long v) {
+    writeInt(bytes, offset, (int) (v >>> 32));
+    writeInt(bytes, offset + 4, (int) v);
+  }
+
+  private static void writeInt(byte[] bytes, int offset, int v) {
+    for (int i = 0; i < 4; i++) {
+      bytes[offset + i] = (byte) (v >>> (24 - 8 * i));
+    }
+  }
+
+  private static long readLong(byte[] bytes, int offset) {
+    return (readInt(bytes, offset) << 32) | readInt(bytes, offset + 4);
+  }
+
+  private static long readInt(byte[] bytes, int offset) {
+    long v = 0;
+    for (int i = 0; i < 4; i++) {
+      v = (v << 8) | (bytes[offset + i] & 0xff);
+    }
+    return v;
+  }
+
+  /**
+   * A cached object with the time it expires and the flush tags it was
+   * loaded for, for models that flush entries individually
+   */
+  private static class Entry {
+    private Object value;
+    private long expires;
+    private long stamp;
+    private int[] slots;
+
+    public Entry(Object value, long expires, long stamp, int[] slots) {
+      this.value = value;
+      this.expires = expires;
+      this.stamp = stamp;
+      this.slots = slots;
     }
   }
 
   /**
-   * OK, honestly, i have no idea what this does.
-   * @param key
-   * @return
+   * A load in progress that other threads can wait for
    */
-  public synchronized final Object getLock(CacheKey key) {
-    int controllerId = System.identityHashCode(controller);
-    int keyHash = key.hashCode();
-    Integer lockKey = new Integer(29 * controllerId + keyHash);
-    Object lock = lockMap.get(lockKey);
-    if (lock == null) {
-      lock = lockKey; //might as well use the same object
-      lockMap.put(lockKey, lock);
+  private static class PendingLoad {
+    private static final Object FAILED = new Object();
+
+    private Thread owner = Thread.currentThread();
+    private boolean done;
+    private Object stored;
+
+    public synchronized void complete(Object stored) {
+      this.stored = stored;
+      this.done = true;
+      notifyAll();
+    }
+
+    public synchronized Object await() {
+      if (owner == Thread.currentThread()) {
+        return FAILED;
+      }
+      while (!done) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return FAILED;
+        }
+      }
+      return stored;
     }
-    return lock;
   }
 
 }
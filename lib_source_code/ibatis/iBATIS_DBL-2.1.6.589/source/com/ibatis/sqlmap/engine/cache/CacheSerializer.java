@@ -0,0 +1,45 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.cache;
+
+import java.io.IOException;
+
+/**
+ * Converts cached objects to and from bytes for cache models that serialize
+ * (serialize="true" readOnly="false")
+ */
+public interface CacheSerializer {
+
+  /**
+   * Convert an object to bytes
+   *
+   * @param value - the object to be cached
+   * @return the serialized object
+   * @throws IOException - if the object cannot be serialized
+   */
+  public byte[] serialize(Object value) throws IOException;
+
+  /**
+   * Rebuild an object from bytes
+   *
+   * @param bytes - bytes produced by serialize()
+   * @return a new copy of the object
+   * @throws IOException            - if the bytes cannot be read
+   * @throws ClassNotFoundException - if a class of the object cannot be found
+   */
+  public Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException;
+
+}
@@ -0,0 +1,32 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.cache;
+
+/**
+ * Estimates the memory used by a cache entry
+ */
+public interface CacheWeigher {
+
+  /**
+   * Estimate the size of a cache entry
+   *
+   * @param key   - the key to the object
+   * @param value - the cached object (possibly a serialized byte[])
+   * @return the estimated size in bytes
+   */
+  public long weigh(Object key, Object value);
+
+}
@@ -0,0 +1,578 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.cache;
+
+import com.ibatis.common.beans.ClassInfo;
+import com.ibatis.common.exception.NestedRuntimeException;
+import com.ibatis.common.resources.Resources;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * CacheSerializer with a compact format for the objects iBATIS builds
+ * itself: HashMap rows, ArrayList results, JavaBeans and the simple JDK
+ * types.
+ * <p/>
+ * Values are preceded by a one byte tag instead of a class descriptor.
+ * Strings and bean classes are written once per cached object and referred
+ * to by number afterwards.  Beans are copied through the properties that
+ * ClassInfo finds both readable and writeable, just as iBATIS populates
+ * them from a result set.  A class is only treated as a bean when those
+ * properties cover all of its non-transient fields and it is not itself a
+ * collection or map; otherwise state would be lost, so it is written with
+ * standard Java serialization like any other value.  Shared references and
+ * cycles between maps, lists and beans are preserved.
+ */
+public class CompactCacheSerializer implements CacheSerializer {
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte STRING_REF = 2;
+  private static final byte INTEGER = 3;
+  private static final byte LONG = 4;
+  private static final byte SHORT = 5;
+  private static final byte BYTE = 6;
+  private static final byte FLOAT = 7;
+  private static final byte DOUBLE = 8;
+  private static final byte TRUE = 9;
+  private static final byte FALSE = 10;
+  private static final byte CHARACTER = 11;
+  private static final byte BIG_DECIMAL = 12;
+  private static final byte BIG_INTEGER = 13;
+  private static final byte DATE = 14;
+  private static final byte SQL_DATE = 15;
+  private static final byte SQL_TIME = 16;
+  private static final byte SQL_TIMESTAMP = 17;
+  private static final byte BYTES = 18;
+  private static final byte HASH_MAP = 19;
+  private static final byte ARRAY_LIST = 20;
+  private static final byte BEAN_CLASS = 21;
+  private static final byte BEAN = 22;
+  private static final byte OBJECT_REF = 23;
+  private static final byte SERIALIZED = 24;
+
+  private static final Object NOT_A_BEAN = new Object();
+  private static final Map BEAN_INFO_CACHE = Collections.synchronizedMap(new HashMap());
+
+  private static final CacheSerializer FALLBACK = new JavaCacheSerializer();
+
+  public byte[] serialize(Object value) throws IOException {
+    Writer writer = new Writer();
+    writer.writeObject(value);
+    return writer.toByteArray();
+  }
+
+  public Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+    Reader reader = new Reader(bytes);
+    return reader.readObject();
+  }
+
+  private static BeanInfo getBeanInfo(Class type) {
+    Object info = BEAN_INFO_CACHE.get(type);
+    if (info == null) {
+      info = createBeanInfo(type);
+      BEAN_INFO_CACHE.put(type, info);
+    }
+    return info == NOT_A_BEAN ? null : (BeanInfo) info;
+  }
+
+  private static Object createBeanInfo(Class type) {
+    String className = type.getName();
+    if (ClassInfo.isKnownType(type) || type.isArray() || Proxy.isProxyClass(type)
+        || className.startsWith("java.") || className.startsWith("javax.") || className.indexOf("$$") > -1
+        || !Modifier.isPublic(type.getModifiers()) || Modifier.isAbstract(type.getModifiers())
+        || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) {
+      return NOT_A_BEAN;
+    }
+    try {
+      type.getConstructor(new Class[0]);
+    } catch (NoSuchMethodException e) {
+      return NOT_A_BEAN;
+    }
+    ClassInfo classInfo = ClassInfo.getInstance(type);
+    String[] readable = classInfo.getReadablePropertyNames();
+    List names = new ArrayList();
+    for (int i = 0; i < readable.length; i++) {
+      if (classInfo.hasWritableProperty(readable[i])
+          && classInfo.getGetterType(readable[i]).equals(classInfo.getSetterType(readable[i]))) {
+        names.add(readable[i]);
+      }
+    }
+    if (!coversFields(type, names)) {
+      return NOT_A_BEAN;
+    }
+    BeanInfo info = new BeanInfo();
+    info.names = (String[]) names.toArray(new String[names.size()]);
+    info.getters = new Method[info.names.length];
+    for (int i = 0; i < info.names.length; i++) {
+      info.getters[i] = classInfo.getGetter(info.names[i]);
+    }
+    return info;
+  }
+
+  /**
+   * Checks that every non-static, non-transient field of the class and its
+   * superclasses is one of the copied properties
+   *
+   * @param type  - the bean class
+   * @param names - the copied property names
+   * @return true if no field would be lost by copying the properties
+   */
+  private static boolean coversFields(Class type, List names) {
+    Set properties = new HashSet();
+    for (int i = 0; i < names.size(); i++) {
+      properties.add(((String) names.get(i)).toUpperCase(Locale.ENGLISH));
+    }
+    try {
+      for (Class c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+        Field[] fields = c.getDeclaredFields();
+        for (int i = 0; i < fields.length; i++) {
+          int modifiers = fields[i].getModifiers();
+          if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)
+              && !properties.contains(fields[i].getName().toUpperCase(Locale.ENGLISH))) {
+            return false;
+          }
+        }
+      }
+    } catch (SecurityException e) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * The properties of a bean class that are copied
+   */
+  private static class BeanInfo {
+    private String[] names;
+    private Method[] getters;
+  }
+
+  /**
+   * Writes one object graph, remembering the strings, classes and objects
+   * already written
+   */
+  private static class Writer {
+    private byte[] buffer = new byte[256];
+    private int count;
+    private Map strings = new HashMap();
+    private Map classes = new HashMap();
+    private Map objects = new IdentityHashMap();
+
+    public byte[] toByteArray() {
+      byte[] bytes = new byte[count];
+      System.arraycopy(buffer, 0, bytes, 0, count);
+      return bytes;
+    }
+
+    public void writeObject(Object value) throws IOException {
+      if (value == null) {
+        writeByte(NULL);
+        return;
+      }
+      Class type = value.getClass();
+      if (type == String.class) {
+        writeString((String) value);
+      } else if (type == Integer.class) {
+        writeByte(INTEGER);
+        writeInt(((Integer) value).intValue());
+      } else if (type == Long.class) {
+        writeByte(LONG);
+        writeLong(((Long) value).longValue());
+      } else if (type == Short.class) {
+        writeByte(SHORT);
+        writeInt(((Short) value).shortValue());
+      } else if (type == Byte.class) {
+        writeByte(BYTE);
+        writeByte(((Byte) value).byteValue());
+      } else if (type == Float.class) {
+        writeByte(FLOAT);
+        writeInt(Float.floatToIntBits(((Float) value).floatValue()));
+      } else if (type == Double.class) {
+        writeByte(DOUBLE);
+        writeLong(Double.doubleToLongBits(((Double) value).doubleValue()));
+      } else if (type == Boolean.class) {
+        writeByte(((Boolean) value).booleanValue() ? TRUE : FALSE);
+      } else if (type == Character.class) {
+        writeByte(CHARACTER);
+        writeSize(((Character) value).charValue());
+      } else if (type == BigDecimal.class) {
+        writeByte(BIG_DECIMAL);
+        writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+        writeInt(((BigDecimal) value).scale());
+      } else if (type == BigInteger.class) {
+        writeByte(BIG_INTEGER);
+        writeBytes(((BigInteger) value).toByteArray());
+      } else if (type == java.util.Date.class) {
+        writeByte(DATE);
+        writeLong(((java.util.Date) value).getTime());
+      } else if (type == java.sql.Date.class) {
+        writeByte(SQL_DATE);
+        writeLong(((java.util.Date) value).getTime());
+      } else if (type == java.sql.Time.class) {
+        writeByte(SQL_TIME);
+        writeLong(((java.util.Date) value).getTime());
+      } else if (type == java.sql.Timestamp.class) {
+        writeByte(SQL_TIMESTAMP);
+        writeLong(((java.util.Date) value).getTime());
+        writeInt(((java.sql.Timestamp) value).getNanos());
+      } else if (type == byte[].class) {
+        writeByte(BYTES);
+        writeBytes((byte[]) value);
+      } else if (objects.containsKey(value)) {
+        writeByte(OBJECT_REF);
+        writeSize(((Integer) objects.get(value)).intValue());
+      } else if (type == HashMap.class) {
+        writeMap((HashMap) value);
+      } else if (type == ArrayList.class) {
+        writeList((ArrayList) value);
+      } else {
+        BeanInfo info = getBeanInfo(type);
+        if (info != null) {
+          writeBean(value, info);
+        } else {
+          writeByte(SERIALIZED);
+          writeBytes(FALLBACK.serialize(value));
+        }
+      }
+    }
+
+    private void writeMap(HashMap map) throws IOException {
+      objects.put(map, new Integer(objects.size()));
+      writeByte(HASH_MAP);
+      writeSize(map.size());
+      Iterator i = map.entrySet().iterator();
+      while (i.hasNext()) {
+        Map.Entry entry = (Map.Entry) i.next();
+        writeObject(entry.getKey());
+        writeObject(entry.getValue());
+      }
+    }
+
+    private void writeList(ArrayList list) throws IOException {
+      objects.put(list, new Integer(objects.size()));
+      writeByte(ARRAY_LIST);
+      int size = list.size();
+      writeSize(size);
+      for (int i = 0; i < size; i++) {
+        writeObject(list.get(i));
+      }
+    }
+
+    private void writeBean(Object bean, BeanInfo info) throws IOException {
+      objects.put(bean, new Integer(objects.size()));
+      Class type = bean.getClass();
+      Integer classIndex = (Integer) classes.get(type);
+      if (classIndex != null) {
+        writeByte(BEAN);
+        writeSize(classIndex.intValue());
+      } else {
+        classes.put(type, new Integer(classes.size()));
+        writeByte(BEAN_CLASS);
+        writeChars(type.getName());
+        writeSize(info.names.length);
+        for (int i = 0; i < info.names.length; i++) {
+          writeChars(info.names[i]);
+        }
+      }
+      for (int i = 0; i < info.getters.length; i++) {
+        Object value;
+        try {
+          value = info.getters[i].invoke(bean, null);
+        } catch (Exception e) {
+          throw new NestedRuntimeException("Error getting property '" + info.names[i] + "' of " + type.getName()
+              + " for the cache.  Cause: " + ClassInfo.unwrapThrowable(e), e);
+        }
+        writeObject(value);
+      }
+    }
+
+    private void writeString(String value) {
+      Integer index = (Integer) strings.get(value);
+      if (index != null) {
+        writeByte(STRING_REF);
+        writeSize(index.intValue());
+      } else {
+        strings.put(value, new Integer(strings.size()));
+        writeByte(STRING);
+        writeChars(value);
+      }
+    }
+
+    private void writeChars(String value) {
+      int length = value.length();
+      writeSize(length);
+      for (int i = 0; i < length; i++) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          writeByte(c);
+        } else {
+          writeSize(c);
+        }
+      }
+    }
+
+    private void writeBytes(byte[] bytes) {
+      writeSize(bytes.length);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, count, bytes.length);
+      count += bytes.length;
+    }
+
+    /**
+     * Write a non-negative int in as few bytes as possible, 7 bits at a time
+     */
+    private void writeSize(int size) {
+      while ((size & ~0x7f) != 0) {
+        writeByte((size & 0x7f) | 0x80);
+        size >>>= 7;
+      }
+      writeByte(size);
+    }
+
+    private void writeByte(int b) {
+      if (count == buffer.length) {
+        ensureCapacity(1);
+      }
+      buffer[count++] = (byte) b;
+    }
+
+    private void writeInt(int v) {
+      ensureCapacity(4);
+      buffer[count++] = (byte) (v >>> 24);
+      buffer[count++] = (byte) (v >>> 16);
+      buffer[count++] = (byte) (v >>> 8);
+      buffer[count++] = (byte) v;
+    }
+
+    private void writeLong(long v) {
+      writeInt((int) (v >>> 32));
+      writeInt((int) v);
+    }
+
+    private void ensureCapacity(int length) {
+      if (count + length > buffer.length) {
+        byte[] newBuffer = new byte[Math.max(buffer.length * 2, count + length)];
+        System.arraycopy(buffer, 0, newBuffer, 0, count);
+        buffer = newBuffer;
+      }
+    }
+  }
+
+  /**
+   * Reads one object graph written by a Writer
+   */
+  private static class Reader {
+    private byte[] buffer;
+    private int position;
+    private List strings = new ArrayList();
+    private List classes = new ArrayList();
+    private List objects = new ArrayList();
+
+    public Reader(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    public Object readObject() throws IOException, ClassNotFoundException {
+      byte tag = readByte();
+      switch (tag) {
+        case NULL:
+          return null;
+        case STRING:
+          String value = readChars();
+          strings.add(value);
+          return value;
+        case STRING_REF:
+          return strings.get(readSize());
+        case INTEGER:
+          return new Integer(readInt());
+        case LONG:
+          return new Long(readLong());
+        case SHORT:
+          return new Short((short) readInt());
+        case BYTE:
+          return new Byte(readByte());
+        case FLOAT:
+          return new Float(Float.intBitsToFloat(readInt()));
+        case DOUBLE:
+          return new Double(Double.longBitsToDouble(readLong()));
+        case TRUE:
+          return Boolean.TRUE;
+        case FALSE:
+          return Boolean.FALSE;
+        case CHARACTER:
+          return new Character((char) readSize());
+        case BIG_DECIMAL:
+          BigInteger unscaled = new BigInteger(readBytes());
+          return new BigDecimal(unscaled, readInt());
+        case BIG_INTEGER:
+          return new BigInteger(readBytes());
+        case DATE:
+          return new java.util.Date(readLong());
+        case SQL_DATE:
+          return new java.sql.Date(readLong());
+        case SQL_TIME:
+          return new java.sql.Time(readLong());
+        case SQL_TIMESTAMP:
+          java.sql.Timestamp timestamp = new java.sql.Timestamp(readLong());
+          timestamp.setNanos(readInt());
+          return timestamp;
+        case BYTES:
+          return readBytes();
+        case HASH_MAP:
+          return readMap();
+        case ARRAY_LIST:
+          return readList();
+        case BEAN_CLASS:
+          return readBean(readClass());
+        case BEAN:
+          return readBean((ReadInfo) classes.get(readSize()));
+        case OBJECT_REF:
+          return objects.get(readSize());
+        case SERIALIZED:
+          return FALLBACK.deserialize(readBytes());
+        default:
+          throw new StreamCorruptedException("Unknown cache serializer tag " + tag + ".");
+      }
+    }
+
+    private Object readMap() throws IOException, ClassNotFoundException {
+      int size = readSize();
+      HashMap map = new HashMap((int) (size / 0.75f) + 1);
+      objects.add(map);
+      for (int i = 0; i < size; i++) {
+        Object key = readObject();
+        map.put(key, readObject());
+      }
+      return map;
+    }
+
+    private Object readList() throws IOException, ClassNotFoundException {
+      int size = readSize();
+      ArrayList list = new ArrayList(size);
+      objects.add(list);
+      for (int i = 0; i < size; i++) {
+        list.add(readObject());
+      }
+      return list;
+    }
+
+    private ReadInfo readClass() throws IOException, ClassNotFoundException {
+      ReadInfo info = new ReadInfo();
+      info.type = Resources.classForName(readChars());
+      ClassInfo classInfo = ClassInfo.getInstance(info.type);
+      info.setters = new Method[readSize()];
+      for (int i = 0; i < info.setters.length; i++) {
+        String name = readChars();
+        if (classInfo.hasWritableProperty(name)) {
+          info.setters[i] = classInfo.getSetter(name);
+        }
+      }
+      classes.add(info);
+      return info;
+    }
+
+    private Object readBean(ReadInfo info) throws IOException, ClassNotFoundException {
+      Object bean;
+      try {
+        bean = Resources.instantiate(info.type);
+      } catch (Exception e) {
+        throw new NestedRuntimeException("Error instantiating " + info.type.getName() + " from the cache.  Cause: " + e, e);
+      }
+      objects.add(bean);
+      for (int i = 0; i < info.setters.length; i++) {
+        Object value = readObject();
+        if (info.setters[i] != null) {
+          try {
+            info.setters[i].invoke(bean, new Object[]{value});
+          } catch (Exception e) {
+            throw new NestedRuntimeException("Error setting property '" + info.setters[i].getName() + "' of "
+                + info.type.getName() + " from the cache.  Cause: " + ClassInfo.unwrapThrowable(e), e);
+          }
+        }
+      }
+      return bean;
+    }
+
+    private String readChars() throws IOException {
+      char[] chars = new char[readSize()];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = (char) readSize();
+      }
+      return new String(chars);
+    }
+
+    private byte[] readBytes() throws IOException {
+      byte[] bytes = new byte[readSize()];
+      require(bytes.length);
+      System.arraycopy(buffer, position, bytes, 0, bytes.length);
+      position += bytes.length;
+      return bytes;
+    }
+
+    private int readSize() throws IOException {
+      int size = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = readByte();
+        size |= (b & 0x7f) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return size;
+    }
+
+    private byte readByte() throws IOException {
+      require(1);
+      return buffer[position++];
+    }
+
+    private int readInt() throws IOException {
+      require(4);
+      int v = ((buffer[position] & 0xff) << 24) | ((buffer[position + 1] & 0xff) << 16)
+          | ((buffer[position + 2] & 0xff) << 8) | (buffer[position + 3] & 0xff);
+      position += 4;
+      return v;
+    }
+
+    private long readLong() throws IOException {
+      long high = readInt();
+      return (high << 32) | (readInt() & 0xffffffffL);
+    }
+
+    private void require(int length) throws IOException {
+      if (position + length > buffer.length) {
+        throw new EOFException("Unexpected end of cached object.");
+      }
+    }
+  }
+
+  /**
+   * The setters of a bean class, in the order its properties were written
+   */
+  private static class ReadInfo {
+    private Class type;
+    private Method[] setters;
+  }
+
+}
@@ -0,0 +1,181 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.cache;
+
+import com.ibatis.common.beans.ClassInfo;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Default CacheWeigher that estimates the heap used by the objects iBATIS
+ * caches: serialized byte arrays, lists and maps of results, simple JDK
+ * types and JavaBeans.
+ * <p/>
+ * Large collections are weighed from a sample of their elements, and object
+ * graphs are only followed a few levels deep, so the estimate stays cheap
+ * for big query results.  Beans are weighed by their fields rather than
+ * their getters so that lazy loaded properties are never triggered.
+ */
+public class DefaultCacheWeigher implements CacheWeigher {
+
+  private static final int OBJECT_HEADER = 16;
+  private static final int REFERENCE = 8;
+  private static final int ARRAY_HEADER = 24;
+  private static final int ENTRY_OVERHEAD = 32;
+  private static final int SAMPLE_SIZE = 32;
+  private static final int MAX_DEPTH = 4;
+
+  private static final Map FIELD_CACHE = Collections.synchronizedMap(new HashMap());
+
+  public long weigh(Object key, Object value) {
+    return ENTRY_OVERHEAD + weigh(key, 0) + weigh(value, 0);
+  }
+
+  private long weigh(Object value, int depth) {
+    if (value == null || value == CacheModel.NULL_OBJECT) {
+      return 0;
+    }
+    if (value instanceof byte[]) {
+      return ARRAY_HEADER + ((byte[]) value).length;
+    }
+    if (value instanceof String) {
+      return OBJECT_HEADER + 24 + ARRAY_HEADER + 2L * ((String) value).length();
+    }
+    if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+      if (value instanceof BigDecimal || value instanceof BigInteger) {
+        return OBJECT_HEADER + 40 + value.toString().length() / 2;
+      }
+      return OBJECT_HEADER + 8;
+    }
+    if (value instanceof Date) {
+      return OBJECT_HEADER + 16;
+    }
+    if (depth >= MAX_DEPTH) {
+      return OBJECT_HEADER + REFERENCE;
+    }
+    if (value instanceof Collection) {
+      return weighCollection((Collection) value, depth);
+    }
+    if (value instanceof Map) {
+      return weighMap((Map) value, depth);
+    }
+    if (value instanceof CacheKey) {
+      return OBJECT_HEADER + 32 + ARRAY_HEADER + REFERENCE * 8;
+    }
+    if (value.getClass().isArray()) {
+      return weighArray(value, depth);
+    }
+    return weighBean(value, depth);
+  }
+
+  private long weighCollection(Collection collection, int depth) {
+    int size = collection.size();
+    long weight = OBJECT_HEADER + ARRAY_HEADER + (long) REFERENCE * size;
+    long sampled = 0;
+    int count = 0;
+    Iterator i = collection.iterator();
+    while (count < SAMPLE_SIZE && i.hasNext()) {
+      sampled += weigh(i.next(), depth + 1);
+      count++;
+    }
+    if (count > 0) {
+      weight += sampled * size / count;
+    }
+    return weight;
+  }
+
+  private long weighMap(Map map, int depth) {
+    int size = map.size();
+    long weight = OBJECT_HEADER + ARRAY_HEADER + (long) ENTRY_OVERHEAD * size;
+    long sampled = 0;
+    int count = 0;
+    Iterator i = map.entrySet().iterator();
+    while (count < SAMPLE_SIZE && i.hasNext()) {
+      Map.Entry entry = (Map.Entry) i.next();
+      sampled += weigh(entry.getKey(), depth + 1) + weigh(entry.getValue(), depth + 1);
+      count++;
+    }
+    if (count > 0) {
+      weight += sampled * size / count;
+    }
+    return weight;
+  }
+
+  private long weighArray(Object array, int depth) {
+    int length = java.lang.reflect.Array.getLength(array);
+    Class componentType = array.getClass().getComponentType();
+    if (componentType.isPrimitive()) {
+      return ARRAY_HEADER + 8L * length;
+    }
+    return weighCollection(Arrays.asList((Object[]) array), depth) - OBJECT_HEADER;
+  }
+
+  private long weighBean(Object bean, int depth) {
+    Class type = bean.getClass();
+    if (Proxy.isProxyClass(type)) {
+      return OBJECT_HEADER + REFERENCE;
+    }
+    Field[] fields = getFields(type);
+    if (fields == null) {
+      return OBJECT_HEADER + (long) (REFERENCE + 24) * ClassInfo.getInstance(type).getReadablePropertyNames().length;
+    }
+    long weight = OBJECT_HEADER;
+    for (int i = 0; i < fields.length; i++) {
+      if (fields[i].getType().isPrimitive()) {
+        weight += 8;
+      } else {
+        weight += REFERENCE;
+        try {
+          weight += weigh(fields[i].get(bean), depth + 1);
+        } catch (IllegalAccessException e) {
+          // count the reference only
+        }
+      }
+    }
+    return weight;
+  }
+
+  private static Field[] getFields(Class type) {
+    if (FIELD_CACHE.containsKey(type)) {
+      return (Field[]) FIELD_CACHE.get(type);
+    }
+    Field[] fields;
+    try {
+      List list = new ArrayList();
+      for (Class c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+        Field[] declared = c.getDeclaredFields();
+        for (int i = 0; i < declared.length; i++) {
+          if (!Modifier.isStatic(declared[i].getModifiers())) {
+            declared[i].setAccessible(true);
+            list.add(declared[i]);
+          }
+        }
+      }
+      fields = (Field[]) list.toArray(new Field[list.size()]);
+    } catch (RuntimeException e) {
+      // e.g. a SecurityException; fall back to the readable properties
+      fields = null;
+    }
+    FIELD_CACHE.put(type, fields);
+    return fields;
+  }
+
+}
@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.cache;
+
+import java.io.*;
+
+/**
+ * CacheSerializer that uses standard Java serialization.  Cached objects
+ * must implement java.io.Serializable.
+ */
+public class JavaCacheSerializer implements CacheSerializer {
+
+  public byte[] serialize(Object value) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(bos);
+    oos.writeObject(value);
+    oos.flush();
+    oos.close();
+    return bos.toByteArray();
+  }
+
+  public Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+    ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+    Object value = ois.readObject();
+    ois.close();
+    return value;
+  }
+
+}
@@ -0,0 +1,39 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.cache;
+
+/**
+ * Cache controller that bounds its entries by estimated weight and keeps
+ * eviction statistics.  Entries are weighed with the cache model's
+ * CacheWeigher when they are added.
+ */
+public interface WeightedCacheController extends CacheController {
+
+  /**
+   * Get the total estimated weight of the cached entries
+   *
+   * @return the weight in bytes
+   */
+  public long getWeight();
+
+  /**
+   * Get the number of entries evicted to respect the size or weight limits
+   *
+   * @return the eviction count
+   */
+  public long getEvictionCount();
+
+}
@@ -0,0 +1,248 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.cache.lru;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+
+import com.ibatis.sqlmap.engine.cache.CacheModel;
+import com.ibatis.sqlmap.engine.cache.ConcurrentCacheController;
+import com.ibatis.sqlmap.engine.cache.WeightedCacheController;
+
+/**
+ * LRU (least recently used) cache controller implementation with constant
+ * time hits, puts and evictions.
+ * <p/>
+ * Keys are spread over independently locked segments, each an access ordered
+ * LinkedHashMap holding its share of the cache size, so threads working on
+ * different keys rarely contend.  Eviction is least recently used within a
+ * segment, which approximates a global LRU for all but very small caches.
+ * <p/>
+ * When max-bytes is configured, entries are also weighed with the cache
+ * model's CacheWeigher and evicted until their total estimated weight fits.
+ * Each segment holds its share of max-bytes; an entry heavier than that
+ * share is not cached at all, rather than emptying its segment.
+ */
+public class SegmentedLruCacheController implements WeightedCacheController, ConcurrentCacheController {
+
+  private static final int MAX_SEGMENTS = 16;
+  private static final int MIN_SEGMENT_SIZE = 32;
+
+  private static final long NO_MAXIMUM_BYTES = 0;
+
+  private int cacheSize;
+  private long maxBytes;
+  private Segment[] segments;
+  private int mask;
+
+  /**
+   * Default constructor
+   */
+  public SegmentedLruCacheController() {
+    this.cacheSize = 100;
+    this.maxBytes = NO_MAXIMUM_BYTES;
+    createSegments();
+  }
+
+  /**
+   * Configures the cache
+   *
+   * @param props Optionally can contain properties [cache-size=n, max-bytes=n]
+   */
+  public void configure(Properties props) {
+    String size = props.getProperty("cache-size");
+    if (size == null) {
+      size = props.getProperty("size");
+    }
+    String bytes = props.getProperty("max-bytes");
+    if (bytes != null) {
+      maxBytes = Long.parseLong(bytes);
+      if (size == null) {
+        // bounded by weight only
+        cacheSize = Integer.MAX_VALUE;
+      }
+    }
+    if (size != null) {
+      cacheSize = Integer.parseInt(size);
+    }
+    createSegments();
+  }
+
+  /**
+   * Add an object to the cache
+   *
+   * @param cacheModel The cacheModel
+   * @param key        The key of the object to be cached
+   * @param value      The object to be cached
+   */
+  public void putObject(CacheModel cacheModel, Object key, Object value) {
+    long weight = 0;
+    if (maxBytes > NO_MAXIMUM_BYTES) {
+      weight = cacheModel.getWeigher().weigh(key, value);
+    }
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      segment.put(key, value, weight);
+    }
+  }
+
+  /**
+   * Get an object out of the cache.
+   *
+   * @param cacheModel The cache model
+   * @param key        The key of the object to be returned
+   * @return The cached object (or null)
+   */
+  public Object getObject(CacheModel cacheModel, Object key) {
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      return segment.get(key);
+    }
+  }
+
+  public Object removeObject(CacheModel cacheModel, Object key) {
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      return segment.remove(key);
+    }
+  }
+
+  /**
+   * Flushes the cache.
+   *
+   * @param cacheModel The cache model
+   */
+  public void flush(CacheModel cacheModel) {
+    for (int i = 0; i < segments.length; i++) {
+      synchronized (segments[i]) {
+        segments[i].clear();
+      }
+    }
+  }
+
+  public long getWeight() {
+    long weight = 0;
+    for (int i = 0; i < segments.length; i++) {
+      synchronized (segments[i]) {
+        weight += segments[i].weight;
+      }
+    }
+    return weight;
+  }
+
+  public long getEvictionCount() {
+    long evictions = 0;
+    for (int i = 0; i < segments.length; i++) {
+      synchronized (segments[i]) {
+        evictions += segments[i].evictions;
+      }
+    }
+    return evictions;
+  }
+
+  private void createSegments() {
+    int segmentCount = 1;
+    while (segmentCount < MAX_SEGMENTS && segmentCount * 2 * MIN_SEGMENT_SIZE <= cacheSize) {
+      segmentCount *= 2;
+    }
+    Segment[] newSegments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      int capacity = cacheSize / segmentCount;
+      if (i < cacheSize % segmentCount) {
+        capacity++;
+      }
+      newSegments[i] = new Segment(capacity, maxBytes / segmentCount);
+    }
+    this.mask = segmentCount - 1;
+    this.segments = newSegments;
+  }
+
+  private Segment segmentFor(Object key) {
+    int h = key.hashCode();
+    h ^= (h >>> 20) ^ (h >>> 12);
+    h ^= (h >>> 7) ^ (h >>> 4);
+    return segments[h & mask];
+  }
+
+  /**
+   * An access ordered map of weighed entries that drops its eldest entries
+   * when full
+   */
+  private static class Segment {
+    private LinkedHashMap entries;
+    private int capacity;
+    private long maxBytes;
+    private long weight;
+    private long evictions;
+
+    public Segment(int capacity, long maxBytes) {
+      this.entries = new LinkedHashMap(16, 0.75f, true);
+      this.capacity = capacity;
+      this.maxBytes = maxBytes;
+    }
+
+    public Object get(Object key) {
+      Entry entry = (Entry) entries.get(key);
+      return entry == null ? null : entry.value;
+    }
+
+    public void put(Object key, Object value, long entryWeight) {
+      if (maxBytes > NO_MAXIMUM_BYTES && entryWeight > maxBytes) {
+        // It could only be kept by evicting everything else, and then itself
+        remove(key);
+        return;
+      }
+      Entry previous = (Entry) entries.put(key, new Entry(value, entryWeight));
+      if (previous != null) {
+        weight -= previous.weight;
+      }
+      weight += entryWeight;
+      Iterator i = entries.values().iterator();
+      while (i.hasNext() && (entries.size() > capacity || (maxBytes > NO_MAXIMUM_BYTES && weight > maxBytes))) {
+        Entry eldest = (Entry) i.next();
+        i.remove();
+        weight -= eldest.weight;
+        evictions++;
+      }
+    }
+
+    public Object remove(Object key) {
+      Entry entry = (Entry) entries.remove(key);
+      if (entry == null) {
+        return null;
+      }
+      weight -= entry.weight;
+      return entry.value;
+    }
+
+    public void clear() {
+      entries.clear();
+      weight = 0;
+    }
+  }
+
+  private static class Entry {
+    private Object value;
+    private long weight;
+
+    public Entry(Object value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+
+}
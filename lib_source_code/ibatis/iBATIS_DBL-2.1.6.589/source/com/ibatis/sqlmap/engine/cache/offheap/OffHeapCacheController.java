@@ -0,0 +1,310 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.cache.offheap;
+
+import com.ibatis.common.exception.NestedRuntimeException;
+import com.ibatis.sqlmap.engine.cache.CacheModel;
+import com.ibatis.sqlmap.engine.cache.ConcurrentCacheController;
+import com.ibatis.sqlmap.engine.cache.WeightedCacheController;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Cache controller that keeps serialized cache entries outside of the Java
+ * heap, for cache models configured with serialize="true" readOnly="false".
+ * <p/>
+ * Payloads are appended to fixed size slabs of direct memory, and only a
+ * small index of slab positions stays on the heap.  When every slab is in
+ * use, least recently used entries are evicted until the slab with the least
+ * live data can be compacted: its surviving entries are copied into a spare
+ * slab, which becomes the slab being written, and the emptied slab becomes
+ * the new spare.
+ */
+public class OffHeapCacheController implements WeightedCacheController, ConcurrentCacheController {
+
+  private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+  private static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+
+  private long maxBytes;
+  private int slabSize;
+
+  private LinkedHashMap index;
+  private List slabs;
+  private LinkedList freeSlabs;
+  private Slab activeSlab;
+  private Slab spareSlab;
+  private int slabLimit;
+
+  private long liveBytes;
+  private long evictions;
+
+  /**
+   * Default constructor
+   */
+  public OffHeapCacheController() {
+    this.maxBytes = DEFAULT_MAX_BYTES;
+    this.slabSize = DEFAULT_SLAB_SIZE;
+    createSlabs();
+  }
+
+  /**
+   * Configures the cache
+   *
+   * @param props Optionally can contain properties [max-bytes=n, slab-size=n]
+   */
+  public synchronized void configure(Properties props) {
+    String bytes = props.getProperty("max-bytes");
+    if (bytes != null) {
+      maxBytes = Long.parseLong(bytes);
+    }
+    String size = props.getProperty("slab-size");
+    if (size != null) {
+      slabSize = Integer.parseInt(size);
+    }
+    if (slabSize * 2L > maxBytes) {
+      slabSize = (int) Math.max(1, maxBytes / 2);
+    }
+    createSlabs();
+  }
+
+  /**
+   * Add an object to the cache
+   *
+   * @param cacheModel The cacheModel
+   * @param key        The key of the object to be cached
+   * @param value      The object to be cached (a serialized byte[])
+   */
+  public synchronized void putObject(CacheModel cacheModel, Object key, Object value) {
+    Location previous = (Location) index.remove(key);
+    if (previous != null && previous.slab != null) {
+      release(previous);
+    }
+    if (value == CacheModel.NULL_OBJECT) {
+      index.put(key, new Location(null, 0, 0));
+      return;
+    }
+    if (!(value instanceof byte[])) {
+      throw new NestedRuntimeException("The off-heap cache controller for cache model '" + cacheModel.getId()
+          + "' can only store serialized values.  Set serialize=\"true\" and readOnly=\"false\" on the cache model.");
+    }
+    byte[] bytes = (byte[]) value;
+    if (bytes.length > slabSize) {
+      // too large to ever fit in a slab, so it is not cached at all
+      evictions++;
+      return;
+    }
+    ensureSpace(bytes.length);
+    index.put(key, activeSlab.append(bytes));
+    liveBytes += bytes.length;
+  }
+
+  /**
+   * Get an object out of the cache.
+   *
+   * @param cacheModel The cache model
+   * @param key        The key of the object to be returned
+   * @return The cached object (or null)
+   */
+  public synchronized Object getObject(CacheModel cacheModel, Object key) {
+    Location location = (Location) index.get(key);
+    if (location == null) {
+      return null;
+    }
+    if (location.slab == null) {
+      return CacheModel.NULL_OBJECT;
+    }
+    return location.slab.read(location);
+  }
+
+  public synchronized Object removeObject(CacheModel cacheModel, Object key) {
+    Location location = (Location) index.remove(key);
+    if (location == null) {
+      return null;
+    }
+    if (location.slab == null) {
+      return CacheModel.NULL_OBJECT;
+    }
+    byte[] value = location.slab.read(location);
+    release(location);
+    return value;
+  }
+
+  /**
+   * Flushes the cache.
+   *
+   * @param cacheModel The cache model
+   */
+  public synchronized void flush(CacheModel cacheModel) {
+    index.clear();
+    freeSlabs.clear();
+    for (int i = 0; i < slabs.size(); i++) {
+      Slab slab = (Slab) slabs.get(i);
+      slab.reset();
+      if (slab != spareSlab) {
+        freeSlabs.add(slab);
+      }
+    }
+    activeSlab = null;
+    liveBytes = 0;
+  }
+
+  public synchronized long getWeight() {
+    return liveBytes;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  private void createSlabs() {
+    this.index = new LinkedHashMap(16, 0.75f, true);
+    this.slabs = new ArrayList();
+    this.freeSlabs = new LinkedList();
+    this.activeSlab = null;
+    this.spareSlab = null;
+    this.slabLimit = (int) Math.max(1, maxBytes / slabSize - 1);
+    this.liveBytes = 0;
+  }
+
+  private void ensureSpace(int length) {
+    while (activeSlab == null || activeSlab.remaining() < length) {
+      if (!freeSlabs.isEmpty()) {
+        activeSlab = (Slab) freeSlabs.removeFirst();
+      } else if (slabs.size() < slabLimit) {
+        activeSlab = newSlab();
+      } else {
+        compact(length);
+      }
+    }
+  }
+
+  private void compact(int length) {
+    Slab victim = leastLiveSlab();
+    while (victim.live > slabSize - length && !index.isEmpty()) {
+      evictEldest();
+      victim = leastLiveSlab();
+    }
+    if (spareSlab == null) {
+      spareSlab = newSlab();
+    }
+    Slab target = spareSlab;
+    Iterator i = victim.locations.iterator();
+    while (i.hasNext()) {
+      target.relocate((Location) i.next());
+    }
+    victim.reset();
+    spareSlab = victim;
+    activeSlab = target;
+  }
+
+  private Slab leastLiveSlab() {
+    Slab least = null;
+    for (int i = 0; i < slabs.size(); i++) {
+      Slab slab = (Slab) slabs.get(i);
+      if (slab != spareSlab && (least == null || slab.live < least.live)) {
+        least = slab;
+      }
+    }
+    return least;
+  }
+
+  private void evictEldest() {
+    Iterator i = index.values().iterator();
+    Location location = (Location) i.next();
+    i.remove();
+    if (location.slab != null) {
+      release(location);
+    }
+    evictions++;
+  }
+
+  private void release(Location location) {
+    location.slab.locations.remove(location);
+    location.slab.live -= location.length;
+    liveBytes -= location.length;
+  }
+
+  private Slab newSlab() {
+    Slab slab = new Slab(ByteBuffer.allocateDirect(slabSize));
+    slabs.add(slab);
+    return slab;
+  }
+
+  /**
+   * A block of direct memory that entries are appended to
+   */
+  private static class Slab {
+    private ByteBuffer buffer;
+    private Set locations = new HashSet();
+    private int live;
+
+    public Slab(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    public int remaining() {
+      return buffer.capacity() - buffer.position();
+    }
+
+    public Location append(byte[] bytes) {
+      Location location = new Location(this, buffer.position(), bytes.length);
+      buffer.put(bytes);
+      locations.add(location);
+      live += bytes.length;
+      return location;
+    }
+
+    public void relocate(Location location) {
+      byte[] bytes = location.slab.read(location);
+      location.slab = this;
+      location.offset = buffer.position();
+      buffer.put(bytes);
+      locations.add(location);
+      live += bytes.length;
+    }
+
+    public byte[] read(Location location) {
+      byte[] bytes = new byte[location.length];
+      ByteBuffer view = buffer.duplicate();
+      view.position(location.offset);
+      view.get(bytes);
+      return bytes;
+    }
+
+    public void reset() {
+      buffer.clear();
+      locations.clear();
+      live = 0;
+    }
+  }
+
+  /**
+   * The on-heap index entry for a cached value
+   */
+  private static class Location {
+    private Slab slab;
+    private int offset;
+    private int length;
+
+    public Location(Slab slab, int offset, int length) {
+      this.slab = slab;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.cache.tinylfu;
+
+/**
+ * A count-min sketch of 4-bit counters used to estimate how often a key has
+ * been requested recently.
+ * <p/>
+ * Sixteen counters are packed into each long, and every key is counted in
+ * four of them.  Once the number of recorded requests reaches ten times the
+ * expected number of entries, all counters are halved so that the estimates
+ * follow changes in popularity.  Not thread safe; callers must synchronize.
+ */
+class FrequencySketch {
+
+  private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final int MAX_COUNT = 15;
+
+  private long[] table;
+  private int counterMask;
+  private int sampleSize;
+  private int size;
+
+  /**
+   * Create a sketch sized for a number of cache entries
+   *
+   * @param maximumSize - the expected number of entries in the cache
+   */
+  public FrequencySketch(int maximumSize) {
+    int counters = 16;
+    while (counters < maximumSize * 4 && counters < (1 << 30)) {
+      counters <<= 1;
+    }
+    this.table = new long[counters >>> 4];
+    this.counterMask = counters - 1;
+    this.sampleSize = Math.max(10 * maximumSize, 10);
+  }
+
+  /**
+   * Record a request for a key
+   *
+   * @param key - the key
+   */
+  public void increment(Object key) {
+    int hash = spread(key.hashCode());
+    boolean added = false;
+    for (int i = 0; i < SEEDS.length; i++) {
+      int counter = indexOf(hash, i);
+      int slot = counter >>> 4;
+      int shift = (counter & 15) << 2;
+      if (((table[slot] >>> shift) & 0xfL) < MAX_COUNT) {
+        table[slot] += (1L << shift);
+        added = true;
+      }
+    }
+    if (added && ++size >= sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * Estimate how often a key has been requested
+   *
+   * @param key - the key
+   * @return the estimated frequency (0 - 15)
+   */
+  public int frequency(Object key) {
+    int hash = spread(key.hashCode());
+    int frequency = MAX_COUNT;
+    for (int i = 0; i < SEEDS.length; i++) {
+      int counter = indexOf(hash, i);
+      int count = (int) ((table[counter >>> 4] >>> ((counter & 15) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * Forget all recorded requests
+   */
+  public void clear() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = 0L;
+    }
+    size = 0;
+  }
+
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = size / 2;
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += (h >>> 32);
+    return ((int) h) & counterMask;
+  }
+
+  private static int spread(int h) {
+    h ^= (h >>> 20) ^ (h >>> 12);
+    return h ^ (h >>> 7) ^ (h >>> 4);
+  }
+
+}
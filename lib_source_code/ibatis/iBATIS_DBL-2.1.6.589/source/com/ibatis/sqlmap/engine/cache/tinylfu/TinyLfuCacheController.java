@@ -0,0 +1,221 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.cache.tinylfu;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import com.ibatis.sqlmap.engine.cache.CacheModel;
+import com.ibatis.sqlmap.engine.cache.ConcurrentCacheController;
+
+/**
+ * Frequency aware (TinyLFU) cache controller implementation.
+ * <p/>
+ * New entries go into a small LRU window.  When the window overflows, its
+ * least recently used entry only replaces the least recently used entry of
+ * the main LRU area if a frequency sketch says it has been requested more
+ * often.  One-off scans therefore pass through the window without flushing
+ * the hot working set.  Keys are spread over independently locked segments,
+ * so the controller does not depend on the cache model's key locks.
+ */
+public class TinyLfuCacheController implements ConcurrentCacheController {
+
+  private static final int MAX_SEGMENTS = 16;
+  private static final int MIN_SEGMENT_SIZE = 256;
+
+  private int cacheSize;
+  private int windowPercent;
+  private Segment[] segments;
+  private int mask;
+
+  /**
+   * Default constructor
+   */
+  public TinyLfuCacheController() {
+    this.cacheSize = 100;
+    this.windowPercent = 1;
+    createSegments();
+  }
+
+  /**
+   * Configures the cache
+   *
+   * @param props Optionally can contain properties [cache-size=n, window-percent=1..100]
+   */
+  public void configure(Properties props) {
+    String size = props.getProperty("cache-size");
+    if (size == null) {
+      size = props.getProperty("size");
+    }
+    if (size != null) {
+      cacheSize = Integer.parseInt(size);
+    }
+    String window = props.getProperty("window-percent");
+    if (window != null) {
+      windowPercent = Math.max(1, Math.min(100, Integer.parseInt(window)));
+    }
+    createSegments();
+  }
+
+  /**
+   * Add an object to the cache
+   *
+   * @param cacheModel The cacheModel
+   * @param key        The key of the object to be cached
+   * @param value      The object to be cached
+   */
+  public void putObject(CacheModel cacheModel, Object key, Object value) {
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      segment.put(key, value);
+    }
+  }
+
+  /**
+   * Get an object out of the cache.
+   *
+   * @param cacheModel The cache model
+   * @param key        The key of the object to be returned
+   * @return The cached object (or null)
+   */
+  public Object getObject(CacheModel cacheModel, Object key) {
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      return segment.get(key);
+    }
+  }
+
+  public Object removeObject(CacheModel cacheModel, Object key) {
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      return segment.remove(key);
+    }
+  }
+
+  /**
+   * Flushes the cache.
+   *
+   * @param cacheModel The cache model
+   */
+  public void flush(CacheModel cacheModel) {
+    for (int i = 0; i < segments.length; i++) {
+      synchronized (segments[i]) {
+        segments[i].clear();
+      }
+    }
+  }
+
+  private void createSegments() {
+    int segmentCount = 1;
+    while (segmentCount < MAX_SEGMENTS && segmentCount * 2 * MIN_SEGMENT_SIZE <= cacheSize) {
+      segmentCount *= 2;
+    }
+    Segment[] newSegments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      int capacity = cacheSize / segmentCount;
+      if (i < cacheSize % segmentCount) {
+        capacity++;
+      }
+      newSegments[i] = new Segment(capacity, windowPercent);
+    }
+    this.mask = segmentCount - 1;
+    this.segments = newSegments;
+  }
+
+  private Segment segmentFor(Object key) {
+    int h = key.hashCode();
+    h ^= (h >>> 20) ^ (h >>> 12);
+    h ^= (h >>> 7) ^ (h >>> 4);
+    return segments[h & mask];
+  }
+
+  /**
+   * A window LRU and a main LRU sharing one frequency sketch
+   */
+  private static class Segment {
+    private LinkedHashMap window;
+    private LinkedHashMap main;
+    private FrequencySketch sketch;
+    private int windowCapacity;
+    private int mainCapacity;
+
+    public Segment(int capacity, int windowPercent) {
+      this.windowCapacity = Math.max(1, capacity * windowPercent / 100);
+      this.mainCapacity = Math.max(0, capacity - windowCapacity);
+      this.window = new LinkedHashMap(16, 0.75f, true);
+      this.main = new LinkedHashMap(16, 0.75f, true);
+      this.sketch = new FrequencySketch(Math.max(1, capacity));
+    }
+
+    public Object get(Object key) {
+      sketch.increment(key);
+      Object value = window.get(key);
+      if (value == null) {
+        value = main.get(key);
+      }
+      return value;
+    }
+
+    public void put(Object key, Object value) {
+      if (main.containsKey(key)) {
+        main.put(key, value);
+        return;
+      }
+      window.put(key, value);
+      if (window.size() > windowCapacity) {
+        Map.Entry candidate = eldest(window);
+        Object candidateKey = candidate.getKey();
+        Object candidateValue = candidate.getValue();
+        window.remove(candidateKey);
+        admit(candidateKey, candidateValue);
+      }
+    }
+
+    public Object remove(Object key) {
+      Object value = window.remove(key);
+      if (value == null) {
+        value = main.remove(key);
+      }
+      return value;
+    }
+
+    public void clear() {
+      window.clear();
+      main.clear();
+      sketch.clear();
+    }
+
+    private void admit(Object key, Object value) {
+      if (main.size() < mainCapacity) {
+        main.put(key, value);
+      } else if (mainCapacity > 0) {
+        Object victimKey = eldest(main).getKey();
+        if (sketch.frequency(key) > sketch.frequency(victimKey)) {
+          main.remove(victimKey);
+          main.put(key, value);
+        }
+      }
+    }
+
+    private static Map.Entry eldest(Map map) {
+      Iterator i = map.entrySet().iterator();
+      return (Map.Entry) i.next();
+    }
+  }
+
+}
@@ -0,0 +1,56 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.execution;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Database specific SQL used by the SqlExecutor.
+ * <p/>
+ * A dialect lets the database apply the skipped and maximum results of a query
+ * (e.g. with LIMIT and OFFSET), instead of the SqlExecutor reading and
+ * discarding the rows it does not need.  Queries a dialect cannot rewrite are
+ * limited with Statement.setMaxRows() instead.
+ * <p/>
+ * The limits are bound as parameters after the parameters of the query itself,
+ * so that every page of a query shares the same prepared statement.
+ */
+public interface Dialect {
+
+  /**
+   * Rewrites a query to return only some of its results
+   *
+   * @param sql         - the query
+   * @param skipResults - the number of results to skip (0 for none)
+   * @param maxResults  - the maximum number of results (or SqlExecutor.NO_MAXIMUM_RESULTS)
+   * @return - the rewritten query (or null if the dialect cannot rewrite it)
+   */
+  public String getLimitedSql(String sql, int skipResults, int maxResults);
+
+  /**
+   * Sets the parameters added to a query by getLimitedSql()
+   *
+   * @param ps          - the statement of the rewritten query
+   * @param offset      - the number of parameters of the query itself
+   * @param skipResults - the number of results to skip (0 for none)
+   * @param maxResults  - the maximum number of results (or SqlExecutor.NO_MAXIMUM_RESULTS)
+   * @throws SQLException - if a parameter cannot be set
+   */
+  public void setLimitParameters(PreparedStatement ps, int offset, int skipResults, int maxResults)
+      throws SQLException;
+
+}
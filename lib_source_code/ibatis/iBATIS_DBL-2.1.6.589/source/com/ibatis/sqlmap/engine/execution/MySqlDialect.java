@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.execution;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Dialect for MySQL, using LIMIT [offset,] count.  Queries that already end
+ * with LIMIT, FOR UPDATE or a comment are left to Statement.setMaxRows().
+ */
+public class MySqlDialect implements Dialect {
+
+  // The largest row count MySQL accepts, used for an offset without a limit
+  private static final String ALL_ROWS = "18446744073709551615";
+
+  public String getLimitedSql(String sql, int skipResults, int maxResults) {
+    if (!SqlScanner.canAppendClause(sql)) {
+      return null;
+    }
+    if (skipResults > 0) {
+      if (maxResults == SqlExecutor.NO_MAXIMUM_RESULTS) {
+        return sql + " LIMIT ?, " + ALL_ROWS;
+      }
+      return sql + " LIMIT ?, ?";
+    }
+    return sql + " LIMIT ?";
+  }
+
+  public void setLimitParameters(PreparedStatement ps, int offset, int skipResults, int maxResults)
+      throws SQLException {
+    int index = offset + 1;
+    if (skipResults > 0) {
+      ps.setInt(index++, skipResults);
+    }
+    if (maxResults != SqlExecutor.NO_MAXIMUM_RESULTS) {
+      ps.setInt(index, maxResults);
+    }
+  }
+
+}
@@ -0,0 +1,60 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.execution;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Dialect for Oracle, using ROWNUM.
+ * <p/>
+ * Skipping results needs the row number of each result, so the results of a
+ * query with skipped results have an extra ROWNUM_ column.
+ */
+public class OracleDialect implements Dialect {
+
+  public String getLimitedSql(String sql, int skipResults, int maxResults) {
+    // FOR UPDATE cannot be wrapped, and a trailing comment would swallow the wrapper
+    if (!SqlScanner.canAppendClause(sql)) {
+      return null;
+    }
+    StringBuffer buffer = new StringBuffer(sql.length() + 100);
+    if (skipResults > 0) {
+      buffer.append("SELECT * FROM (SELECT ROW_.*, ROWNUM ROWNUM_ FROM (").append(sql).append(") ROW_");
+      if (maxResults != SqlExecutor.NO_MAXIMUM_RESULTS) {
+        buffer.append(" WHERE ROWNUM <= ?");
+      }
+      buffer.append(") WHERE ROWNUM_ > ?");
+    } else {
+      buffer.append("SELECT * FROM (").append(sql).append(") WHERE ROWNUM <= ?");
+    }
+    return buffer.toString();
+  }
+
+  public void setLimitParameters(PreparedStatement ps, int offset, int skipResults, int maxResults)
+      throws SQLException {
+    int index = offset + 1;
+    if (maxResults != SqlExecutor.NO_MAXIMUM_RESULTS) {
+      // The last row number, which cannot go past the largest int
+      long lastRow = (long) skipResults + maxResults;
+      ps.setInt(index++, lastRow > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) lastRow);
+    }
+    if (skipResults > 0) {
+      ps.setInt(index, skipResults);
+    }
+  }
+
+}
@@ -0,0 +1,163 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.execution;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The sort key of the last result of a page, used to query the results that
+ * follow it (keyset pagination).
+ * <p/>
+ * The query is wrapped so that it only returns the rows whose key columns are
+ * greater than the key, in key order:
+ * <pre>
+ * SELECT * FROM (query) PAGE_ WHERE (A > ?) OR (A = ? AND B > ?) ORDER BY A, B
+ * </pre>
+ * The ORDER BY that ends the query is left out of the wrapped query, where
+ * databases such as SQL Server do not allow it; the key order replaces it.
+ * Its first items are taken to be the key columns, so a key column sorted
+ * DESC there is compared with &lt; and sorted DESC in the wrapped query.
+ * Key values cannot be null, since a null key matches no following rows.
+ */
+public class PageKey {
+
+  private String[] columns;
+  private Object[] values;
+
+  /**
+   * Constructor
+   *
+   * @param columns - the key columns, in sort order
+   * @param values  - the key values of the last result of the page
+   */
+  public PageKey(String[] columns, Object[] values) {
+    if (columns.length != values.length) {
+      throw new IllegalArgumentException("A page key needs one value for each of its " + columns.length + " columns.");
+    }
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null) {
+        throw new IllegalArgumentException("The page key column " + columns[i] + " has a null value.  Keyset pagination needs non-null key columns.");
+      }
+    }
+    this.columns = columns;
+    this.values = values;
+  }
+
+  public String[] getColumns() {
+    return columns;
+  }
+
+  public Object[] getValues() {
+    return values;
+  }
+
+  /**
+   * Wraps a query to return the rows that follow the key
+   *
+   * @param sql - the query
+   * @return - the wrapped query
+   */
+  public String getSql(String sql) {
+    int orderBy = SqlScanner.getOrderByIndex(sql);
+    boolean[] descending = new boolean[columns.length];
+    if (orderBy >= 0) {
+      descending = SqlScanner.getDescending(sql, orderBy, columns.length);
+      if (orderBy == SqlScanner.getTrailingOrderByIndex(sql)) {
+        sql = sql.substring(0, orderBy);
+      }
+    }
+    StringBuffer buffer = new StringBuffer(sql.length() + 64);
+    buffer.append("SELECT * FROM (").append(sql).append(") PAGE_ WHERE ");
+    for (int i = 0; i < columns.length; i++) {
+      if (i > 0) {
+        buffer.append(" OR ");
+      }
+      buffer.append('(');
+      for (int j = 0; j < i; j++) {
+        buffer.append("PAGE_.").append(columns[j]).append(" = ? AND ");
+      }
+      buffer.append("PAGE_.").append(columns[i]).append(descending[i] ? " < ?)" : " > ?)");
+    }
+    buffer.append(" ORDER BY ");
+    for (int i = 0; i < columns.length; i++) {
+      if (i > 0) {
+        buffer.append(", ");
+      }
+      buffer.append("PAGE_.").append(columns[i]);
+      if (descending[i]) {
+        buffer.append(" DESC");
+      }
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * Gets the number of parameters added to the wrapped query
+   *
+   * @return - the number of parameters
+   */
+  public int getParameterCount() {
+    return columns.length * (columns.length + 1) / 2;
+  }
+
+  /**
+   * Sets the parameters of the wrapped query
+   *
+   * @param ps     - the statement of the wrapped query
+   * @param offset - the number of parameters of the query itself
+   * @throws SQLException - if a parameter cannot be set
+   */
+  public void setParameters(PreparedStatement ps, int offset) throws SQLException {
+    int index = offset + 1;
+    for (int i = 0; i < columns.length; i++) {
+      for (int j = 0; j <= i; j++) {
+        ps.setObject(index++, values[j]);
+      }
+    }
+  }
+
+  public boolean equals(Object object) {
+    if (this == object) return true;
+    if (!(object instanceof PageKey)) return false;
+
+    final PageKey key = (PageKey) object;
+    if (columns.length != key.columns.length) return false;
+    for (int i = 0; i < columns.length; i++) {
+      if (!columns[i].equals(key.columns[i])) return false;
+      if (values[i] == null ? key.values[i] != null : !values[i].equals(key.values[i])) return false;
+    }
+    return true;
+  }
+
+  public int hashCode() {
+    int hash = 17;
+    for (int i = 0; i < columns.length; i++) {
+      hash = 37 * hash + columns[i].hashCode();
+      hash = 37 * hash + (values[i] == null ? 0 : values[i].hashCode());
+    }
+    return hash;
+  }
+
+  public String toString() {
+    StringBuffer buffer = new StringBuffer();
+    for (int i = 0; i < columns.length; i++) {
+      buffer.append(i == 0 ? "" : ", ").append(columns[i]).append('=').append(values[i]);
+    }
+    return buffer.toString();
+  }
+
+}
@@ -0,0 +1,53 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.execution;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Dialect for PostgreSQL, using LIMIT and OFFSET.  Queries that already end
+ * with LIMIT, OFFSET, FOR UPDATE or a comment are left to
+ * Statement.setMaxRows().
+ */
+public class PostgreSqlDialect implements Dialect {
+
+  public String getLimitedSql(String sql, int skipResults, int maxResults) {
+    if (!SqlScanner.canAppendClause(sql)) {
+      return null;
+    }
+    StringBuffer buffer = new StringBuffer(sql.length() + 20).append(sql);
+    if (maxResults != SqlExecutor.NO_MAXIMUM_RESULTS) {
+      buffer.append(" LIMIT ?");
+    }
+    if (skipResults > 0) {
+      buffer.append(" OFFSET ?");
+    }
+    return buffer.toString();
+  }
+
+  public void setLimitParameters(PreparedStatement ps, int offset, int skipResults, int maxResults)
+      throws SQLException {
+    int index = offset + 1;
+    if (maxResults != SqlExecutor.NO_MAXIMUM_RESULTS) {
+      ps.setInt(index++, maxResults);
+    }
+    if (skipResults > 0) {
+      ps.setInt(index, skipResults);
+    }
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.execution;
+
+import com.ibatis.common.jdbc.exception.NestedSQLException;
+import com.ibatis.sqlmap.engine.cache.CacheKey;
+import com.ibatis.sqlmap.engine.mapping.result.ResultMap;
+import com.ibatis.sqlmap.engine.mapping.statement.RowHandlerCallback;
+import com.ibatis.sqlmap.engine.scope.ErrorContext;
+import com.ibatis.sqlmap.engine.scope.RequestScope;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The open results of a query, mapped a row at a time by a RowHandlerCallback.
+ * The statement is released to the session when the cursor is closed.
+ */
+public class ResultSetCursor {
+
+  private SqlExecutor executor;
+  private RequestScope request;
+  private CacheKey statementKey;
+  private PreparedStatement ps;
+  private ResultSet rs;
+  private RowHandlerCallback callback;
+
+  private boolean closed;
+
+  ResultSetCursor(SqlExecutor executor, RequestScope request, CacheKey statementKey, PreparedStatement ps,
+                  ResultSet rs, RowHandlerCallback callback) {
+    this.executor = executor;
+    this.request = request;
+    this.statementKey = statementKey;
+    this.ps = ps;
+    this.rs = rs;
+    this.callback = callback;
+  }
+
+  /**
+   * Reads the next row and passes it to the row handler.  A row that only adds
+   * to an earlier result object (see groupBy) is not passed on.
+   *
+   * @return - false if there are no more rows
+   * @throws SQLException - if the row cannot be read or mapped
+   */
+  public boolean next() throws SQLException {
+    ResultMap resultMap = request.getResultMap();
+    if (closed || rs == null || resultMap == null) {
+      return false;
+    }
+
+    ErrorContext errorContext = request.getErrorContext();
+    errorContext.setActivity("reading the results of a cursor");
+    errorContext.setObjectId(request.getStatement().getId());
+    errorContext.setMoreInfo("Check the results (failed to retrieve results).");
+
+    try {
+      if (!rs.next()) {
+        callback.handlePendingObject(request);
+        errorContext.reset();
+        close();
+        return false;
+      }
+      executor.handleRow(request, rs, resultMap, callback);
+      errorContext.reset();
+      return true;
+    } catch (SQLException e) {
+      errorContext.setCause(e);
+      throw new NestedSQLException(errorContext.toString(), e.getSQLState(), e.getErrorCode(), e);
+    } catch (Exception e) {
+      errorContext.setCause(e);
+      throw new NestedSQLException(errorContext.toString(), e);
+    }
+  }
+
+  /**
+   * Closes the result set and releases the statement
+   */
+  public void close() {
+    if (!closed) {
+      closed = true;
+      request.setResultSet(null);
+      try {
+        SqlExecutor.closeResultSet(rs);
+      } finally {
+        executor.releaseStatement(request.getSession(), statementKey, ps);
+      }
+    }
+  }
+
+}
@@ -15,9 +15,11 @@
  */
 package com.ibatis.sqlmap.engine.execution;
 
+import com.ibatis.sqlmap.engine.cache.CacheKey;
 import com.ibatis.sqlmap.engine.mapping.parameter.BasicParameterMapping;
 import com.ibatis.sqlmap.engine.mapping.parameter.ParameterMap;
 import com.ibatis.sqlmap.engine.mapping.parameter.ParameterMapping;
+import com.ibatis.sqlmap.engine.mapping.result.BasicResultMap;
 import com.ibatis.sqlmap.engine.mapping.result.ResultMap;
 import com.ibatis.sqlmap.engine.mapping.statement.RowHandlerCallback;
 import com.ibatis.sqlmap.engine.scope.ErrorContext;
@@ -26,7 +28,10 @@ import com.ibatis.sqlmap.engine.scope.SessionScope;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class responsible for executing the SQL
@@ -47,10 +52,57 @@ public class SqlExecutor {
    */
   public static final int NO_MAXIMUM_RESULTS = -999999;
 
+  /**
+   * Constant to let us know not to cache prepared statements
+   */
+  public static final int NO_STATEMENT_CACHE = 0;
+
+  private int statementCacheSize = NO_STATEMENT_CACHE;
+
+  private Dialect dialect;
+
   //
   // Public Methods
   //
 
+  /**
+   * Getter for the maximum number of prepared statements cached per session
+   *
+   * @return - the statement cache size
+   */
+  public int getStatementCacheSize() {
+    return statementCacheSize;
+  }
+
+  /**
+   * Setter for the maximum number of prepared statements cached per session.
+   * Cached statements are reused by later requests on the same connection and
+   * closed when the transaction ends or when they are evicted.
+   *
+   * @param statementCacheSize - the statement cache size (NO_STATEMENT_CACHE to disable)
+   */
+  public void setStatementCacheSize(int statementCacheSize) {
+    this.statementCacheSize = statementCacheSize;
+  }
+
+  /**
+   * Getter for the dialect used to limit the results of queries
+   *
+   * @return - the dialect (or null if no query is rewritten)
+   */
+  public Dialect getDialect() {
+    return dialect;
+  }
+
+  /**
+   * Setter for the dialect used to limit the results of queries
+   *
+   * @param dialect - the dialect (or null to rewrite no query)
+   */
+  public void setDialect(Dialect dialect) {
+    this.dialect = dialect;
+  }
+
   /**
    * Execute an update
    *
@@ -69,12 +121,13 @@ public class SqlExecutor {
     errorContext.setActivity("executing update");
     errorContext.setObjectId(sql);
 
+    CacheKey statementKey = getStatementKey(sql, null, null, false);
     PreparedStatement ps = null;
     int rows = 0;
 
     try {
       errorContext.setMoreInfo("Check the SQL Statement (preparation failed).");
-      ps = conn.prepareStatement(sql);
+      ps = prepareStatement(request.getSession(), conn, sql, null, false, statementKey);
 
       errorContext.setMoreInfo("Check the parameters (set parameters failed).");
       request.getParameterMap().setParameters(request, ps, parameters);
@@ -85,7 +138,7 @@ public class SqlExecutor {
       rows = ps.getUpdateCount();
     }
     finally {
-      closeStatement(ps);
+      releaseStatement(request.getSession(), statementKey, ps);
     }
 
     return rows;
@@ -154,26 +207,59 @@ public class SqlExecutor {
     errorContext.setActivity("executing query");
     errorContext.setObjectId(sql);
 
+    PageKey pageKey = request.getPageKey();
+    if (pageKey != null) {
+      sql = pageKey.getSql(sql);
+    }
+
+    // Let the database apply the limits if the dialect can rewrite the query
+    int limitSkip = NO_SKIPPED_RESULTS;
+    int limitMax = NO_MAXIMUM_RESULTS;
+    if (dialect != null && (skipResults > NO_SKIPPED_RESULTS || maxResults != NO_MAXIMUM_RESULTS)) {
+      String limitedSql = dialect.getLimitedSql(sql, skipResults, maxResults);
+      if (limitedSql != null) {
+        sql = limitedSql;
+        limitSkip = skipResults;
+        limitMax = maxResults;
+        skipResults = NO_SKIPPED_RESULTS;
+        maxResults = NO_MAXIMUM_RESULTS;
+      }
+    }
+
+    Integer rsType = request.getStatement().getResultSetType();
+    Integer fetchSize = request.getStatement().getFetchSize();
+    CacheKey statementKey = getStatementKey(sql, rsType, fetchSize, false);
     PreparedStatement ps = null;
     ResultSet rs = null;
 
     try {
       errorContext.setMoreInfo("Check the SQL Statement (preparation failed).");
+      ps = prepareStatement(request.getSession(), conn, sql, rsType, false, statementKey);
 
-      Integer rsType = request.getStatement().getResultSetType();
-      if (rsType != null) {
-        ps = conn.prepareStatement(sql, rsType.intValue(), ResultSet.CONCUR_READ_ONLY);
-      } else {
-        ps = conn.prepareStatement(sql);
-      }
-
-      Integer fetchSize = request.getStatement().getFetchSize();
       if (fetchSize != null) {
         ps.setFetchSize(fetchSize.intValue());
       }
 
+      // Otherwise stop the driver after the last row needed (a cached statement may have an old limit)
+      int maxRows = 0;
+      if (maxResults != NO_MAXIMUM_RESULTS && skipResults + maxResults > 0) {
+        maxRows = skipResults + maxResults;
+      }
+      if (maxRows > 0 || statementKey != null) {
+        ps.setMaxRows(maxRows);
+      }
+
       errorContext.setMoreInfo("Check the parameters (set parameters failed).");
       request.getParameterMap().setParameters(request, ps, parameters);
+      ParameterMapping[] mappings = request.getParameterMap().getParameterMappings();
+      int parameterCount = mappings == null ? 0 : mappings.length;
+      if (pageKey != null) {
+        pageKey.setParameters(ps, parameterCount);
+        parameterCount += pageKey.getParameterCount();
+      }
+      if (limitSkip > NO_SKIPPED_RESULTS || limitMax != NO_MAXIMUM_RESULTS) {
+        dialect.setLimitParameters(ps, parameterCount, limitSkip, limitMax);
+      }
 
       errorContext.setMoreInfo("Check the statement (query failed).");
 
@@ -190,12 +276,75 @@ public class SqlExecutor {
       try {
         closeResultSet(rs);
       } finally {
-        closeStatement(ps);
+        releaseStatement(request.getSession(), statementKey, ps);
       }
     }
 
   }
 
+  /**
+   * Execute a query and leave its results open, to be mapped a row at a time
+   *
+   * @param request - the request scope
+   * @param conn - the database connection
+   * @param sql - the SQL statement to execute
+   * @param parameters - the parameters for the statement
+   * @param callback - the row handler for the query
+   *
+   * @return - a cursor over the results, which must be closed
+   *
+   * @throws SQLException - if the query fails
+   */
+  public ResultSetCursor executeQueryForCursor(RequestScope request, Connection conn, String sql, Object[] parameters,
+                                               RowHandlerCallback callback)
+      throws SQLException {
+    ErrorContext errorContext = request.getErrorContext();
+    errorContext.setActivity("executing query");
+    errorContext.setObjectId(sql);
+
+    Integer rsType = request.getStatement().getResultSetType();
+    Integer fetchSize = request.getStatement().getFetchSize();
+    CacheKey statementKey = getStatementKey(sql, rsType, fetchSize, false);
+    PreparedStatement ps = null;
+    ResultSet rs = null;
+    ResultSetCursor cursor = null;
+
+    try {
+      errorContext.setMoreInfo("Check the SQL Statement (preparation failed).");
+      ps = prepareStatement(request.getSession(), conn, sql, rsType, false, statementKey);
+
+      if (fetchSize != null) {
+        ps.setFetchSize(fetchSize.intValue());
+      }
+
+      // A cached statement may still have the limit of an earlier query
+      if (statementKey != null) {
+        ps.setMaxRows(0);
+      }
+
+      errorContext.setMoreInfo("Check the parameters (set parameters failed).");
+      request.getParameterMap().setParameters(request, ps, parameters);
+
+      errorContext.setMoreInfo("Check the statement (query failed).");
+
+      ps.execute();
+      rs = getFirstResultSet(ps);
+
+      request.setResultSet(rs);
+      cursor = new ResultSetCursor(this, request, statementKey, ps, rs, callback);
+
+    } finally {
+      if (cursor == null) {
+        try {
+          closeResultSet(rs);
+        } finally {
+          releaseStatement(request.getSession(), statementKey, ps);
+        }
+      }
+    }
+    return cursor;
+  }
+
   /**
    * Execute a stored procedure that updates data
    *
@@ -214,12 +363,13 @@ public class SqlExecutor {
     errorContext.setActivity("executing update procedure");
     errorContext.setObjectId(sql);
 
+    CacheKey statementKey = getStatementKey(sql, null, null, true);
     CallableStatement cs = null;
     int rows = 0;
 
     try {
       errorContext.setMoreInfo("Check the SQL Statement (preparation failed).");
-      cs = conn.prepareCall(sql);
+      cs = (CallableStatement) prepareStatement(request.getSession(), conn, sql, null, true, statementKey);
 
       ParameterMap parameterMap = request.getParameterMap();
 
@@ -239,7 +389,7 @@ public class SqlExecutor {
       errorContext.setMoreInfo("Check the output parameters (retrieval of output parameters failed).");
       retrieveOutputParameters(cs, mappings, parameters);
     } finally {
-      closeStatement(cs);
+      releaseStatement(request.getSession(), statementKey, cs);
     }
 
     return rows;
@@ -265,12 +415,13 @@ public class SqlExecutor {
     errorContext.setActivity("executing query procedure");
     errorContext.setObjectId(sql);
 
+    CacheKey statementKey = getStatementKey(sql, null, null, true);
     CallableStatement cs = null;
     ResultSet rs = null;
 
     try {
       errorContext.setMoreInfo("Check the SQL Statement (preparation failed).");
-      cs = conn.prepareCall(sql);
+      cs = (CallableStatement) prepareStatement(request.getSession(), conn, sql, null, true, statementKey);
 
       ParameterMap parameterMap = request.getParameterMap();
 
@@ -300,7 +451,7 @@ public class SqlExecutor {
       try {
         closeResultSet(rs);
       } finally {
-        closeStatement(cs);
+        releaseStatement(request.getSession(), statementKey, cs);
       }
     }
 
@@ -327,7 +478,7 @@ public class SqlExecutor {
   }
 
   /**
-   * Clean up any batches on the session
+   * Clean up any batches and cached statements on the session
    *
    * @param session - the session to clean up
    */
@@ -337,12 +488,62 @@ public class SqlExecutor {
       batch.cleanupBatch();
       session.setBatch(null);
     }
+    StatementCache statementCache = (StatementCache) session.getStatementCache();
+    if (statementCache != null) {
+      statementCache.cleanupStatements();
+      session.setStatementCache(null);
+    }
   }
 
   //
   // Private Methods
   //
 
+  private CacheKey getStatementKey(String sql, Integer rsType, Integer fetchSize, boolean callable) {
+    CacheKey key = null;
+    if (statementCacheSize > NO_STATEMENT_CACHE) {
+      key = new CacheKey();
+      key.update(sql);
+      key.update(rsType == null ? -1 : rsType.intValue());
+      key.update(fetchSize == null ? -1 : fetchSize.intValue());
+      key.update(callable ? 1 : 0);
+    }
+    return key;
+  }
+
+  private PreparedStatement prepareStatement(SessionScope session, Connection conn, String sql, Integer rsType,
+                                             boolean callable, CacheKey statementKey)
+      throws SQLException {
+    PreparedStatement ps = null;
+    if (statementKey != null) {
+      StatementCache statementCache = (StatementCache) session.getStatementCache();
+      if (statementCache == null) {
+        statementCache = new StatementCache(statementCacheSize);
+        session.setStatementCache(statementCache);
+      }
+      ps = statementCache.checkOut(conn, statementKey);
+    }
+    if (ps == null) {
+      if (callable) {
+        ps = conn.prepareCall(sql);
+      } else if (rsType != null) {
+        ps = conn.prepareStatement(sql, rsType.intValue(), ResultSet.CONCUR_READ_ONLY);
+      } else {
+        ps = conn.prepareStatement(sql);
+      }
+    }
+    return ps;
+  }
+
+  void releaseStatement(SessionScope session, CacheKey statementKey, PreparedStatement ps) {
+    StatementCache statementCache = (StatementCache) session.getStatementCache();
+    if (statementKey != null && statementCache != null && ps != null) {
+      statementCache.checkIn(statementKey, ps);
+    } else {
+      closeStatement(ps);
+    }
+  }
+
   private void retrieveOutputParameters(CallableStatement cs, ParameterMapping[] mappings, Object[] parameters) throws SQLException {
     for (int i = 0; i < mappings.length; i++) {
       BasicParameterMapping mapping = ((BasicParameterMapping) mappings[i]);
@@ -387,16 +588,30 @@ public class SqlExecutor {
         // Get Results
         int resultsFetched = 0;
         while ((maxResults == SqlExecutor.NO_MAXIMUM_RESULTS || resultsFetched < maxResults) && rs.next()) {
-          Object[] columnValues = resultMap.resolveSubMap(request, rs).getResults(request, rs);
-          callback.handleResultObject(request, columnValues, rs);
+          handleRow(request, rs, resultMap, callback);
           resultsFetched++;
         }
+        callback.handlePendingObject(request);
       }
     } finally {
       request.setResultSet(null);
     }
   }
 
+  void handleRow(RequestScope request, ResultSet rs, ResultMap resultMap, RowHandlerCallback callback) throws SQLException {
+    ResultMap rowMap = resultMap.resolveSubMap(request, rs);
+    Object object = ResultMap.NO_VALUE;
+    if (rowMap instanceof BasicResultMap) {
+      object = ((BasicResultMap) rowMap).getCompiledResultObject(request, rs, callback.getResultObject());
+    }
+    if (object != ResultMap.NO_VALUE) {
+      callback.handleMappedObject(request, object);
+    } else {
+      Object[] columnValues = rowMap.getResults(request, rs);
+      callback.handleResultObject(request, columnValues, rs);
+    }
+  }
+
   /**
    * @param ps
    */
@@ -413,7 +628,7 @@ public class SqlExecutor {
   /**
    * @param rs
    */
-  private static void closeResultSet(ResultSet rs) {
+  static void closeResultSet(ResultSet rs) {
     if (rs != null) {
       try {
         rs.close();
@@ -427,6 +642,74 @@ public class SqlExecutor {
   // Inner Classes
   //
 
+  /**
+   * A bounded LRU cache of prepared statements for a single connection.
+   * Statements are removed from the cache while in use, so nested or recursive
+   * queries on the same SQL never share an open statement.
+   */
+  private static class StatementCache {
+    private Connection connection;
+    private Map statements;
+
+    /**
+     * Create a new statement cache
+     *
+     * @param size - the maximum number of idle statements to keep open
+     */
+    public StatementCache(final int size) {
+      statements = new LinkedHashMap(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+          if (size() > size) {
+            closeStatement((PreparedStatement) eldest.getValue());
+            return true;
+          }
+          return false;
+        }
+      };
+    }
+
+    /**
+     * Take a cached statement for exclusive use
+     *
+     * @param conn - the connection the statement must belong to
+     * @param key - the statement key
+     *
+     * @return - the cached statement, or null if none is available
+     */
+    public PreparedStatement checkOut(Connection conn, CacheKey key) {
+      if (conn != connection) {
+        cleanupStatements();
+        connection = conn;
+      }
+      return (PreparedStatement) statements.remove(key);
+    }
+
+    /**
+     * Return a statement to the cache once it is no longer in use
+     *
+     * @param key - the statement key
+     * @param ps - the statement
+     */
+    public void checkIn(CacheKey key, PreparedStatement ps) {
+      PreparedStatement previous = (PreparedStatement) statements.put(key, ps);
+      if (previous != null && previous != ps) {
+        closeStatement(previous);
+      }
+    }
+
+    /**
+     * Close all the cached statements and clear the cache
+     */
+    public void cleanupStatements() {
+      Iterator i = statements.values().iterator();
+      while (i.hasNext()) {
+        closeStatement((PreparedStatement) i.next());
+      }
+      statements.clear();
+      connection = null;
+    }
+  }
+
   private static class Batch {
     private String currentSql;
     private List statementList = new ArrayList();
@@ -0,0 +1,226 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.execution;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the clauses of a query itself, ignoring anything inside parentheses
+ * (subqueries, OVER (ORDER BY ...), function calls), string literals, quoted
+ * identifiers and comments.
+ */
+final class SqlScanner {
+
+  private static final String[] AFTER_ORDER_BY = {"LIMIT", "OFFSET", "FETCH", "FOR", "UNION", "INTERSECT", "EXCEPT"};
+
+  // Clauses that must stay at the end of a query, so none can be appended after them
+  private static final String[] LAST_CLAUSES = {"LIMIT", "OFFSET", "FETCH", "FOR"};
+
+  private SqlScanner() {
+  }
+
+  /**
+   * Finds the ORDER BY clause of a query, if it ends the query
+   *
+   * @param sql - the query
+   * @return - the index of ORDER BY (or -1 if the query itself has no ORDER BY,
+   *         or if other clauses follow it)
+   */
+  static int getTrailingOrderByIndex(String sql) {
+    return getOrderByIndex(sql, true);
+  }
+
+  /**
+   * Finds the last ORDER BY clause of a query itself, whatever follows it
+   *
+   * @param sql - the query
+   * @return - the index of ORDER BY (or -1 if the query itself has no ORDER BY)
+   */
+  static int getOrderByIndex(String sql) {
+    return getOrderByIndex(sql, false);
+  }
+
+  private static int getOrderByIndex(String sql, boolean trailing) {
+    List words = getWords(sql);
+    int orderBy = -1;
+    for (int w = 0; w < words.size(); w++) {
+      int index = ((Integer) words.get(w)).intValue();
+      if (isWord(sql, index, "ORDER")) {
+        if (w + 1 < words.size() && ((Integer) words.get(w + 1)).intValue() == skipWhitespace(sql, index + 5)
+            && isWord(sql, skipWhitespace(sql, index + 5), "BY")) {
+          orderBy = index;
+        }
+      } else if (trailing && orderBy >= 0 && isAnyWord(sql, index, AFTER_ORDER_BY)) {
+        return -1;
+      }
+    }
+    return orderBy;
+  }
+
+  /**
+   * Finds the direction of the first items of an ORDER BY clause
+   *
+   * @param sql     - the query
+   * @param orderBy - the index of its ORDER BY
+   * @param count   - the number of items
+   * @return - true for each item sorted DESC (items past the end of the clause are ascending)
+   */
+  static boolean[] getDescending(String sql, int orderBy, int count) {
+    boolean[] descending = new boolean[count];
+    int item = 0;
+    int depth = 0;
+    for (int i = skipWhitespace(sql, orderBy + 5) + 2; i < sql.length() && item < count; i++) {
+      int end = skipQuoted(sql, i);
+      if (end != i) {
+        i = end;
+        continue;
+      }
+      char c = sql.charAt(i);
+      if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (depth == 0 && c == ',') {
+        item++;
+      } else if (depth == 0 && Character.isLetter(c) && !isIdentifierPart(sql.charAt(i - 1))) {
+        if (isAnyWord(sql, i, AFTER_ORDER_BY)) {
+          // the end of the ORDER BY clause
+          break;
+        } else if (isWord(sql, i, "DESC")) {
+          descending[item] = true;
+        }
+      }
+    }
+    return descending;
+  }
+
+  /**
+   * Tells if a clause such as LIMIT can be appended to a query: the query must
+   * not already end with a clause that has to come last (LIMIT, OFFSET, FETCH,
+   * FOR UPDATE), nor end inside a -- comment
+   *
+   * @param sql - the query
+   * @return - true if a clause can be appended
+   */
+  static boolean canAppendClause(String sql) {
+    for (int i = 0; i < sql.length(); i++) {
+      if (sql.startsWith("--", i) && sql.indexOf('\n', i) < 0) {
+        return false;
+      }
+      i = skipQuoted(sql, i);
+    }
+    List words = getWords(sql);
+    for (int w = 0; w < words.size(); w++) {
+      if (isAnyWord(sql, ((Integer) words.get(w)).intValue(), LAST_CLAUSES)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Skips whitespace
+   *
+   * @param sql   - the query
+   * @param index - the index to start at
+   * @return - the index of the next character that is not whitespace
+   */
+  static int skipWhitespace(String sql, int index) {
+    while (index < sql.length() && Character.isWhitespace(sql.charAt(index))) {
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * Tells if a keyword is at an index, as a whole word
+   *
+   * @param sql   - the query
+   * @param index - the index
+   * @param word  - the keyword, in upper case
+   * @return - true if the word is at the index
+   */
+  static boolean isWord(String sql, int index, String word) {
+    int end = index + word.length();
+    return sql.regionMatches(true, index, word, 0, word.length())
+        && (end == sql.length() || !isIdentifierPart(sql.charAt(end)));
+  }
+
+  private static boolean isAnyWord(String sql, int index, String[] words) {
+    for (int i = 0; i < words.length; i++) {
+      if (isWord(sql, index, words[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Lists where the words of the query itself start, outside of parentheses,
+   * literals, quoted identifiers and comments
+   */
+  private static List getWords(String sql) {
+    List words = new ArrayList();
+    int depth = 0;
+    for (int i = 0; i < sql.length(); i++) {
+      int end = skipQuoted(sql, i);
+      if (end != i) {
+        i = end;
+        continue;
+      }
+      char c = sql.charAt(i);
+      if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (depth == 0 && Character.isLetter(c) && (i == 0 || !isIdentifierPart(sql.charAt(i - 1)))) {
+        words.add(new Integer(i));
+      }
+    }
+    return words;
+  }
+
+  /**
+   * Skips a literal, quoted identifier or comment starting at an index
+   *
+   * @return - the index of its last character (or the index itself if none starts there)
+   */
+  private static int skipQuoted(String sql, int index) {
+    char c = sql.charAt(index);
+    if (c == '\'' || c == '"' || c == '`') {
+      return skipTo(sql, index + 1, c);
+    } else if (c == '[') {
+      return skipTo(sql, index + 1, ']');
+    } else if (c == '-' && sql.startsWith("--", index)) {
+      return skipTo(sql, index + 2, '\n');
+    } else if (c == '/' && sql.startsWith("/*", index)) {
+      int end = sql.indexOf("*/", index + 2);
+      return end < 0 ? sql.length() : end + 1;
+    }
+    return index;
+  }
+
+  private static boolean isIdentifierPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#' || c == '.';
+  }
+
+  private static int skipTo(String sql, int index, char end) {
+    int found = sql.indexOf(end, index);
+    return found < 0 ? sql.length() : found;
+  }
+
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.execution;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Dialect for Microsoft SQL Server.
+ * <p/>
+ * A query without skipped results is limited with TOP.  Skipping results uses
+ * OFFSET and FETCH (SQL Server 2012 and later), which needs the query itself
+ * to end with an ORDER BY clause (one in a subquery or an OVER clause does not
+ * count).  Queries that already use TOP, and other queries that cannot be
+ * rewritten, are left to Statement.setMaxRows().
+ */
+public class SqlServerDialect implements Dialect {
+
+  public String getLimitedSql(String sql, int skipResults, int maxResults) {
+    int index = getTopIndex(sql);
+    // A query that already has TOP keeps its own limit
+    if (index >= 0 && SqlScanner.isWord(sql, SqlScanner.skipWhitespace(sql, index), "TOP")) {
+      return null;
+    }
+    if (skipResults > 0) {
+      if (SqlScanner.getTrailingOrderByIndex(sql) < 0 || !SqlScanner.canAppendClause(sql)) {
+        return null;
+      }
+      StringBuffer buffer = new StringBuffer(sql.length() + 40).append(sql);
+      buffer.append(" OFFSET ? ROWS");
+      if (maxResults != SqlExecutor.NO_MAXIMUM_RESULTS) {
+        buffer.append(" FETCH NEXT ? ROWS ONLY");
+      }
+      return buffer.toString();
+    }
+    if (index < 0) {
+      return null;
+    }
+    // TOP comes before the parameters of the query, so it cannot be bound
+    return new StringBuffer(sql.length() + 20)
+        .append(sql.substring(0, index))
+        .append(" TOP ").append(maxResults)
+        .append(sql.substring(index))
+        .toString();
+  }
+
+  public void setLimitParameters(PreparedStatement ps, int offset, int skipResults, int maxResults)
+      throws SQLException {
+    if (skipResults > 0) {
+      int index = offset + 1;
+      ps.setInt(index++, skipResults);
+      if (maxResults != SqlExecutor.NO_MAXIMUM_RESULTS) {
+        ps.setInt(index, maxResults);
+      }
+    }
+  }
+
+  /**
+   * Finds where TOP goes in a query: after SELECT and after DISTINCT or ALL, if any
+   *
+   * @return - the index (or -1 if the query does not start with SELECT)
+   */
+  private int getTopIndex(String sql) {
+    int start = SqlScanner.skipWhitespace(sql, 0);
+    if (!SqlScanner.isWord(sql, start, "SELECT")) {
+      return -1;
+    }
+    int index = start + 6;
+    int next = SqlScanner.skipWhitespace(sql, index);
+    if (SqlScanner.isWord(sql, next, "DISTINCT")) {
+      index = next + 8;
+    } else if (SqlScanner.isWord(sql, next, "ALL")) {
+      index = next + 3;
+    }
+    return index;
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.execution;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Dialect for databases that support the SQL:2008 OFFSET and FETCH clauses
+ * (e.g. DB2, Derby, H2, HSQLDB and Oracle 12c).  Queries that already end
+ * with OFFSET, FETCH, FOR UPDATE or a comment are left to
+ * Statement.setMaxRows().
+ */
+public class StandardDialect implements Dialect {
+
+  public String getLimitedSql(String sql, int skipResults, int maxResults) {
+    if (!SqlScanner.canAppendClause(sql)) {
+      return null;
+    }
+    StringBuffer buffer = new StringBuffer(sql.length() + 40).append(sql);
+    if (skipResults > 0) {
+      buffer.append(" OFFSET ? ROWS");
+    }
+    if (maxResults != SqlExecutor.NO_MAXIMUM_RESULTS) {
+      buffer.append(" FETCH FIRST ? ROWS ONLY");
+    }
+    return buffer.toString();
+  }
+
+  public void setLimitParameters(PreparedStatement ps, int offset, int skipResults, int maxResults)
+      throws SQLException {
+    int index = offset + 1;
+    if (skipResults > 0) {
+      ps.setInt(index++, skipResults);
+    }
+    if (maxResults != SqlExecutor.NO_MAXIMUM_RESULTS) {
+      ps.setInt(index, maxResults);
+    }
+  }
+
+}
@@ -22,7 +22,7 @@ import com.ibatis.sqlmap.engine.mapping.statement.MappedStatement;
 /**
  * A more advanced SQL map client interface
  */
-public interface ExtendedSqlMapClient extends SqlMapClient {
+public interface ExtendedSqlMapClient extends SqlMapClient, ExtendedSqlMapExecutor {
 
   /**
    * Get the SQL delegate
@@ -0,0 +1,44 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.impl;
+
+import com.ibatis.sqlmap.client.SqlMapExecutor;
+import com.ibatis.sqlmap.engine.execution.PageKey;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * A more advanced SQL map executor interface, implemented by both the client
+ * and its sessions
+ */
+public interface ExtendedSqlMapExecutor extends SqlMapExecutor {
+
+  /**
+   * Execute a query for one page of a keyset paginated list
+   * 
+   * @param id - the statement ID
+   * @param paramObject - the parameter object
+   * @param pageKey - the key of the last row of the previous page, or null for the first page
+   * @param max - the maximum number of rows to return
+   * 
+   * @return - the data list
+   * 
+   * @throws SQLException - if the query fails
+   */
+  public List queryForPage(String id, Object paramObject, PageKey pageKey, int max) throws SQLException;
+
+}
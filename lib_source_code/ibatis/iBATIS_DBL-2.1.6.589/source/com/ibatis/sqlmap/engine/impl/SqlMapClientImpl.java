@@ -18,9 +18,11 @@ package com.ibatis.sqlmap.engine.impl;
 import com.ibatis.common.util.PaginatedList;
 import com.ibatis.common.logging.Log;
 import com.ibatis.common.logging.LogFactory;
+import com.ibatis.sqlmap.client.SqlMapCursor;
 import com.ibatis.sqlmap.client.SqlMapException;
 import com.ibatis.sqlmap.client.SqlMapSession;
 import com.ibatis.sqlmap.client.event.RowHandler;
+import com.ibatis.sqlmap.engine.execution.PageKey;
 import com.ibatis.sqlmap.engine.execution.SqlExecutor;
 import com.ibatis.sqlmap.engine.mapping.statement.MappedStatement;
 import com.ibatis.sqlmap.engine.binding.MapperProxy;
@@ -82,10 +84,18 @@ public class SqlMapClientImpl implements ExtendedSqlMapClient {
     return getLocalSqlMapSession().queryForList(id, paramObject, skip, max);
   }
 
+  public List queryForPage(String id, Object paramObject, PageKey pageKey, int max) throws SQLException {
+    return getLocalSqlMapSession().queryForPage(id, paramObject, pageKey, max);
+  }
+
   public PaginatedList queryForPaginatedList(String id, Object paramObject, int pageSize) throws SQLException {
     return getLocalSqlMapSession().queryForPaginatedList(id, paramObject, pageSize);
   }
 
+  public PaginatedList queryForPaginatedList(String id, Object paramObject, int pageSize, int prefetchDepth) throws SQLException {
+    return getLocalSqlMapSession().queryForPaginatedList(id, paramObject, pageSize, prefetchDepth);
+  }
+
   public Map queryForMap(String id, Object paramObject, String keyProp) throws SQLException {
     return getLocalSqlMapSession().queryForMap(id, paramObject, keyProp);
   }
@@ -98,6 +108,10 @@ public class SqlMapClientImpl implements ExtendedSqlMapClient {
     getLocalSqlMapSession().queryWithRowHandler(id, paramObject, rowHandler);
   }
 
+  public SqlMapCursor queryForCursor(String id, Object paramObject) throws SQLException {
+    return getLocalSqlMapSession().queryForCursor(id, paramObject);
+  }
+
   public void startTransaction() throws SQLException {
     getLocalSqlMapSession().startTransaction();
   }
@@ -204,6 +218,10 @@ public class SqlMapClientImpl implements ExtendedSqlMapClient {
     delegate.flushDataCache(cacheId);
   }
 
+  public void shutdown() {
+    delegate.shutdown();
+  }
+
   public Object getMapper(Class c) {
     return MapperProxy.newMapperProxy(this, c);
   }
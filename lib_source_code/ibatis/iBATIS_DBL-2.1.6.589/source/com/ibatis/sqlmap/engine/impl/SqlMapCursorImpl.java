@@ -0,0 +1,148 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.impl;
+
+import com.ibatis.common.exception.NestedRuntimeException;
+import com.ibatis.sqlmap.client.SqlMapCursor;
+import com.ibatis.sqlmap.client.event.RowHandler;
+import com.ibatis.sqlmap.engine.execution.ResultSetCursor;
+import com.ibatis.sqlmap.engine.scope.RequestScope;
+import com.ibatis.sqlmap.engine.scope.SessionScope;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Implementation of SqlMapCursor.
+ * <p/>
+ * Rows are mapped a window at a time, so that batched nested selects (see
+ * nestedSelectBatchSize) can still load the properties of a whole window with
+ * one query before its objects are returned.
+ */
+public class SqlMapCursorImpl implements SqlMapCursor, RowHandler {
+
+  private SqlMapExecutorDelegate delegate;
+  private SessionScope session;
+  private RequestScope request;
+  private boolean autoStart;
+  private int windowSize;
+
+  private ResultSetCursor cursor;
+  private List window = new ArrayList();
+  private int position;
+  private boolean exhausted;
+  private boolean closed;
+
+  /**
+   * Constructor for a cursor on a request that has not been executed yet
+   *
+   * @param delegate   - the delegate that started the request
+   * @param session    - the session scope
+   * @param request    - the request scope
+   * @param autoStart  - true if the cursor started the transaction
+   * @param windowSize - the number of result objects to map ahead
+   */
+  public SqlMapCursorImpl(SqlMapExecutorDelegate delegate, SessionScope session, RequestScope request,
+                          boolean autoStart, int windowSize) {
+    this.delegate = delegate;
+    this.session = session;
+    this.request = request;
+    this.autoStart = autoStart;
+    this.windowSize = windowSize > 0 ? windowSize : 1;
+  }
+
+  /**
+   * Sets the results the cursor reads
+   *
+   * @param cursor - the open results of the query
+   */
+  public void setResultSetCursor(ResultSetCursor cursor) {
+    this.cursor = cursor;
+  }
+
+  public void handleRow(Object valueObject) {
+    window.add(valueObject);
+  }
+
+  public boolean hasNext() {
+    if (position < window.size()) {
+      return true;
+    }
+    if (exhausted || closed) {
+      return false;
+    }
+    window.clear();
+    position = 0;
+    try {
+      boolean more = true;
+      while (more && window.size() < windowSize) {
+        more = cursor.next();
+      }
+      request.loadResultBatches();
+      if (!more) {
+        exhausted = true;
+        close(true);
+      }
+    } catch (SQLException e) {
+      abort();
+      throw new NestedRuntimeException("Error reading the results of the cursor.  Cause: " + e, e);
+    }
+    return position < window.size();
+  }
+
+  public Object next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException("The cursor has no more results.");
+    }
+    Object object = window.get(position);
+    window.set(position++, null);
+    return object;
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException("A cursor cannot remove results.");
+  }
+
+  public void close() throws SQLException {
+    window.clear();
+    position = 0;
+    close(true);
+  }
+
+  private void abort() {
+    try {
+      close(false);
+    } catch (SQLException e) {
+      // the original failure is reported instead
+    }
+  }
+
+  private void close(boolean commit) throws SQLException {
+    if (!closed) {
+      closed = true;
+      try {
+        if (cursor != null) {
+          cursor.close();
+        }
+      } finally {
+        delegate.endCursor(session, request, autoStart, commit);
+      }
+    }
+  }
+
+}
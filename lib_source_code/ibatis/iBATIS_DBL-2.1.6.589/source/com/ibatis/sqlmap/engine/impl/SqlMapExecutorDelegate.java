@@ -18,19 +18,25 @@ package com.ibatis.sqlmap.engine.impl;
 import com.ibatis.common.beans.Probe;
 import com.ibatis.common.beans.ProbeFactory;
 import com.ibatis.common.jdbc.exception.NestedSQLException;
+import com.ibatis.common.util.BoundedExecutor;
 import com.ibatis.common.util.PaginatedList;
-import com.ibatis.common.util.ThrottledPool;
+import com.ibatis.common.util.StripedPool;
+import com.ibatis.sqlmap.client.SqlMapCursor;
 import com.ibatis.sqlmap.client.SqlMapException;
 import com.ibatis.sqlmap.client.event.RowHandler;
 import com.ibatis.sqlmap.engine.cache.CacheKey;
 import com.ibatis.sqlmap.engine.cache.CacheModel;
 import com.ibatis.sqlmap.engine.exchange.DataExchangeFactory;
+import com.ibatis.sqlmap.engine.execution.Dialect;
+import com.ibatis.sqlmap.engine.execution.PageKey;
 import com.ibatis.sqlmap.engine.execution.SqlExecutor;
 import com.ibatis.sqlmap.engine.mapping.parameter.ParameterMap;
 import com.ibatis.sqlmap.engine.mapping.result.ResultMap;
 import com.ibatis.sqlmap.engine.mapping.statement.InsertStatement;
+import com.ibatis.sqlmap.engine.mapping.statement.KeysetPaginatedList;
 import com.ibatis.sqlmap.engine.mapping.statement.MappedStatement;
 import com.ibatis.sqlmap.engine.mapping.statement.PaginatedDataList;
+import com.ibatis.sqlmap.engine.mapping.statement.PrefetchingPaginatedList;
 import com.ibatis.sqlmap.engine.mapping.statement.SelectKeyStatement;
 import com.ibatis.sqlmap.engine.scope.RequestScope;
 import com.ibatis.sqlmap.engine.scope.SessionScope;
@@ -68,14 +74,29 @@ public class SqlMapExecutorDelegate {
    * The default maximum number of transactions
    */
   public static final int DEFAULT_MAX_TRANSACTIONS = 32;
+  /**
+   * The default maximum number of parent rows loaded by one batched nested select
+   */
+  public static final int DEFAULT_NESTED_SELECT_BATCH_SIZE = 100;
+  /**
+   * The default number of threads loading pages ahead for prefetching paginated lists
+   */
+  public static final int DEFAULT_PREFETCH_THREADS = 2;
+  /**
+   * The number of pages that may wait for each prefetch thread
+   */
+  private static final int PREFETCH_QUEUE_SIZE_PER_THREAD = 16;
 
   private boolean lazyLoadingEnabled;
   private boolean cacheModelsEnabled;
   private boolean enhancementEnabled;
+  private boolean rowMapperGenerationEnabled;
 
   private int maxRequests = DEFAULT_MAX_REQUESTS;
   private int maxSessions = DEFAULT_MAX_SESSIONS;
   private int maxTransactions = DEFAULT_MAX_TRANSACTIONS;
+  private int nestedSelectBatchSize = DEFAULT_NESTED_SELECT_BATCH_SIZE;
+  private int prefetchThreads = DEFAULT_PREFETCH_THREADS;
 
   private TransactionManager txManager;
 
@@ -84,10 +105,11 @@ public class SqlMapExecutorDelegate {
   private HashMap resultMaps;
   private HashMap parameterMaps;
 
-  private ThrottledPool requestPool;
-  private ThrottledPool sessionPool;
+  private StripedPool requestPool;
+  private StripedPool sessionPool;
 
   private SqlExecutor sqlExecutor;
+  private BoundedExecutor prefetchExecutor;
   private TypeHandlerFactory typeHandlerFactory;
   private DataExchangeFactory dataExchangeFactory;
 
@@ -100,8 +122,8 @@ public class SqlMapExecutorDelegate {
     resultMaps = new HashMap();
     parameterMaps = new HashMap();
 
-    requestPool = new ThrottledPool(RequestScope.class, DEFAULT_MAX_REQUESTS);
-    sessionPool = new ThrottledPool(SessionScope.class, DEFAULT_MAX_SESSIONS);
+    requestPool = new StripedPool(RequestScope.class, DEFAULT_MAX_REQUESTS);
+    sessionPool = new StripedPool(SessionScope.class, DEFAULT_MAX_SESSIONS);
 
     sqlExecutor = new SqlExecutor();
     typeHandlerFactory = new TypeHandlerFactory();
@@ -196,7 +218,7 @@ public class SqlMapExecutorDelegate {
    */
   public void setMaxRequests(int maxRequests) {
     this.maxRequests = maxRequests;
-    requestPool = new ThrottledPool(RequestScope.class, maxRequests);
+    requestPool = new StripedPool(RequestScope.class, maxRequests);
   }
 
   /**
@@ -215,7 +237,7 @@ public class SqlMapExecutorDelegate {
    */
   public void setMaxSessions(int maxSessions) {
     this.maxSessions = maxSessions;
-    this.sessionPool = new ThrottledPool(SessionScope.class, maxSessions);
+    this.sessionPool = new StripedPool(SessionScope.class, maxSessions);
   }
 
   /**
@@ -236,6 +258,96 @@ public class SqlMapExecutorDelegate {
     this.maxTransactions = maxTransactions;
   }
 
+  /**
+   * Getter for the number of prepared statements cached per session
+   *
+   * @return - the statement cache size
+   */
+  public int getStatementCacheSize() {
+    return sqlExecutor.getStatementCacheSize();
+  }
+
+  /**
+   * Setter for the number of prepared statements cached per session
+   *
+   * @param statementCacheSize - the statement cache size
+   */
+  public void setStatementCacheSize(int statementCacheSize) {
+    sqlExecutor.setStatementCacheSize(statementCacheSize);
+  }
+
+  /**
+   * Getter for the dialect used to limit the results of queries
+   *
+   * @return - the dialect
+   */
+  public Dialect getDialect() {
+    return sqlExecutor.getDialect();
+  }
+
+  /**
+   * Setter for the dialect used to limit the results of queries
+   *
+   * @param dialect - the dialect
+   */
+  public void setDialect(Dialect dialect) {
+    sqlExecutor.setDialect(dialect);
+  }
+
+  /**
+   * Getter for the rowMapperGenerationEnabled setting
+   *
+   * @return - true if simple result maps are compiled into generated row mappers
+   */
+  public boolean isRowMapperGenerationEnabled() {
+    return rowMapperGenerationEnabled;
+  }
+
+  /**
+   * Setter for the rowMapperGenerationEnabled setting
+   *
+   * @param rowMapperGenerationEnabled - true to compile simple result maps into generated row mappers
+   */
+  public void setRowMapperGenerationEnabled(boolean rowMapperGenerationEnabled) {
+    this.rowMapperGenerationEnabled = rowMapperGenerationEnabled;
+  }
+
+  /**
+   * Getter for the maximum number of parent rows loaded by one batched nested select
+   *
+   * @return - the batch size (0 if nested selects are never batched)
+   */
+  public int getNestedSelectBatchSize() {
+    return nestedSelectBatchSize;
+  }
+
+  /**
+   * Setter for the maximum number of parent rows loaded by one batched nested select
+   *
+   * @param nestedSelectBatchSize - the batch size (0 to never batch nested selects)
+   */
+  public void setNestedSelectBatchSize(int nestedSelectBatchSize) {
+    this.nestedSelectBatchSize = nestedSelectBatchSize;
+  }
+
+  /**
+   * Getter for the number of threads loading pages ahead for prefetching paginated lists
+   *
+   * @return - the number of threads
+   */
+  public int getPrefetchThreads() {
+    return prefetchThreads;
+  }
+
+  /**
+   * Setter for the number of threads loading pages ahead for prefetching paginated lists
+   *
+   * @param prefetchThreads - the number of threads
+   */
+  public void setPrefetchThreads(int prefetchThreads) {
+    this.prefetchThreads = prefetchThreads;
+  }
+
   /**
    * Getter for the transaction manager
    *
@@ -596,6 +708,25 @@ public class SqlMapExecutorDelegate {
    * @throws SQLException - if the query fails
    */
   public List queryForList(SessionScope session, String id, Object paramObject, int skip, int max) throws SQLException {
+    return queryForList(session, id, paramObject, null, skip, max);
+  }
+
+  /**
+   * Execute a query for one page of a keyset paginated list
+   *
+   * @param session     - the session scope
+   * @param id          - the statement ID
+   * @param paramObject - the parameter object
+   * @param pageKey     - the key of the last row of the previous page, or null for the first page
+   * @param max         - the maximum number of rows to return
+   * @return - the data list
+   * @throws SQLException - if the query fails
+   */
+  public List queryForPage(SessionScope session, String id, Object paramObject, PageKey pageKey, int max) throws SQLException {
+    return queryForList(session, id, paramObject, pageKey, SqlExecutor.NO_SKIPPED_RESULTS, max);
+  }
+
+  private List queryForList(SessionScope session, String id, Object paramObject, PageKey pageKey, int skip, int max) throws SQLException {
     List list = null;
 
     MappedStatement ms = getMappedStatement(id);
@@ -607,6 +738,7 @@ public class SqlMapExecutorDelegate {
 
       RequestScope request = popRequest(session, ms);
       try {
+        request.setPageKey(pageKey);
         list = ms.executeQueryForList(request, trans, paramObject, skip, max);
       } finally {
         pushRequest(request);
@@ -653,6 +785,87 @@ public class SqlMapExecutorDelegate {
 
   }
 
+  /**
+   * Execute a query and return a cursor over its results.
+   * If the session has a transaction, the cursor reads within it.  Otherwise
+   * the cursor runs on a session of its own, starting a transaction there and
+   * ending it (and the session) when it is closed, so the caller's session is
+   * free for other statements while the cursor is open.
+   *
+   * @param session     - the session scope
+   * @param id          - the statement ID
+   * @param paramObject - the parameter object
+   * @return - the cursor, which must be closed
+   * @throws SQLException - if the query fails
+   */
+  public SqlMapCursor queryForCursor(SessionScope session, String id, Object paramObject) throws SQLException {
+    SqlMapCursorImpl cursor = null;
+
+    MappedStatement ms = getMappedStatement(id);
+    Transaction trans = getTransaction(session);
+    boolean autoStart = trans == null;
+    boolean opened = false;
+
+    SessionScope cursorSession = session;
+    if (autoStart) {
+      SqlMapSessionImpl sqlMapSession = new SqlMapSessionImpl((ExtendedSqlMapClient) session.getSqlMapClient());
+      sqlMapSession.open();
+      cursorSession = sqlMapSession.session;
+    }
+
+    try {
+      trans = autoStartTransaction(cursorSession, autoStart, trans);
+
+      RequestScope request = popRequest(cursorSession, ms);
+      try {
+        cursor = new SqlMapCursorImpl(this, cursorSession, request, autoStart, nestedSelectBatchSize);
+        cursor.setResultSetCursor(ms.executeQueryForCursor(request, trans, paramObject, cursor));
+        opened = true;
+      } finally {
+        if (!opened) {
+          pushRequest(request);
+        }
+      }
+    } finally {
+      if (!opened) {
+        endCursorSession(cursorSession, autoStart);
+      }
+    }
+
+    return cursor;
+  }
+
+  /**
+   * Release the request of a cursor, and end its transaction and session if
+   * it started them
+   *
+   * @param session   - the session scope
+   * @param request   - the request of the cursor
+   * @param autoStart - true if the cursor started the transaction
+   * @param commit    - false if the cursor failed
+   * @throws SQLException - if the transaction cannot be ended
+   */
+  void endCursor(SessionScope session, RequestScope request, boolean autoStart, boolean commit) throws SQLException {
+    try {
+      pushRequest(request);
+      if (commit) {
+        autoCommitTransaction(session, autoStart);
+      }
+    } finally {
+      endCursorSession(session, autoStart);
+    }
+  }
+
+  private void endCursorSession(SessionScope session, boolean autoStart) throws SQLException {
+    try {
+      autoEndTransaction(session, autoStart);
+    } finally {
+      if (autoStart) {
+        pushSession(session);
+      }
+    }
+  }
+
   /**
    * Execute a query and return a paginated list
    *
@@ -664,9 +877,45 @@ public class SqlMapExecutorDelegate {
    * @throws SQLException - if the query fails
    */
   public PaginatedList queryForPaginatedList(SessionScope session, String id, Object paramObject, int pageSize) throws SQLException {
+    if (getMappedStatement(id).getPageKey() != null) {
+      return new KeysetPaginatedList((ExtendedSqlMapExecutor) session.getSqlMapExecutor(), getMappedStatement(id), paramObject, pageSize);
+    }
     return new PaginatedDataList(session.getSqlMapExecutor(), id, paramObject, pageSize);
   }
 
+  /**
+   * Execute a query and return a paginated list that loads pages ahead
+   *
+   * @param session       - the session scope
+   * @param id            - the statement ID
+   * @param paramObject   - the parameter object
+   * @param pageSize      - the page size
+   * @param prefetchDepth - the number of pages to load ahead of the current page
+   * @return - the data list
+   * @throws SQLException - if the query fails
+   */
+  public PaginatedList queryForPaginatedList(SessionScope session, String id, Object paramObject, int pageSize, int prefetchDepth) throws SQLException {
+    return new PrefetchingPaginatedList(session.getSqlMapClient(), getPrefetchExecutor(), id, paramObject, pageSize, prefetchDepth);
+  }
+
+  /**
+   * Stop the threads that load the pages of prefetching paginated lists.
+   * Lists keep working, but load each page only when it is needed.
+   */
+  public synchronized void shutdown() {
+    if (prefetchExecutor == null) {
+      prefetchExecutor = new BoundedExecutor("iBATIS-prefetch", 0, 0);
+    }
+    prefetchExecutor.shutdown();
+  }
+
+  private synchronized BoundedExecutor getPrefetchExecutor() {
+    if (prefetchExecutor == null) {
+      prefetchExecutor = new BoundedExecutor("iBATIS-prefetch", prefetchThreads, prefetchThreads * PREFETCH_QUEUE_SIZE_PER_THREAD);
+    }
+    return prefetchExecutor;
+  }
+
   /**
    * Execute a query for a map.
    * The map has the table key as the key, and the results as the map data
@@ -808,6 +1057,7 @@ public class SqlMapExecutorDelegate {
    * @param userConnection - the user supplied connection
    */
   public void setUserProvidedTransaction(SessionScope session, Connection userConnection) {
+    sqlExecutor.cleanup(session);
     if (session.getTransactionState() == TransactionState.STATE_USER_PROVIDED) {
       session.recallTransactionState();
     }
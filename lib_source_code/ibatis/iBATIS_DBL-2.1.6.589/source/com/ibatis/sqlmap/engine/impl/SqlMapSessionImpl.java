@@ -17,8 +17,10 @@ package com.ibatis.sqlmap.engine.impl;
 
 import com.ibatis.common.jdbc.exception.NestedSQLException;
 import com.ibatis.common.util.PaginatedList;
+import com.ibatis.sqlmap.client.SqlMapCursor;
 import com.ibatis.sqlmap.client.SqlMapSession;
 import com.ibatis.sqlmap.client.event.RowHandler;
+import com.ibatis.sqlmap.engine.execution.PageKey;
 import com.ibatis.sqlmap.engine.execution.SqlExecutor;
 import com.ibatis.sqlmap.engine.mapping.statement.MappedStatement;
 import com.ibatis.sqlmap.engine.scope.SessionScope;
@@ -34,7 +36,7 @@ import java.util.Map;
 /**
  * Implementation of SqlMapSession
  */
-public class SqlMapSessionImpl implements SqlMapSession {
+public class SqlMapSessionImpl implements SqlMapSession, ExtendedSqlMapExecutor {
 
   protected SqlMapExecutorDelegate delegate;
   protected SessionScope session;
@@ -55,9 +57,11 @@ public class SqlMapSessionImpl implements SqlMapSession {
   }
 
   /**
-   * Start the session
+   * Start the session, so that transactions and paginated lists use it
+   * rather than the client
    */
   public void open() {
+    session.setSqlMapExecutor(this);
     session.setSqlMapTxMgr(this);
   }
 
@@ -105,10 +109,18 @@ public class SqlMapSessionImpl implements SqlMapSession {
     return delegate.queryForList(session, id, paramObject, skip, max);
   }
 
+  public List queryForPage(String id, Object paramObject, PageKey pageKey, int max) throws SQLException {
+    return delegate.queryForPage(session, id, paramObject, pageKey, max);
+  }
+
   public PaginatedList queryForPaginatedList(String id, Object paramObject, int pageSize) throws SQLException {
     return delegate.queryForPaginatedList(session, id, paramObject, pageSize);
   }
 
+  public PaginatedList queryForPaginatedList(String id, Object paramObject, int pageSize, int prefetchDepth) throws SQLException {
+    return delegate.queryForPaginatedList(session, id, paramObject, pageSize, prefetchDepth);
+  }
+
   public Map queryForMap(String id, Object paramObject, String keyProp) throws SQLException {
     return delegate.queryForMap(session, id, paramObject, keyProp);
   }
@@ -121,6 +133,10 @@ public class SqlMapSessionImpl implements SqlMapSession {
     delegate.queryWithRowHandler(session, id, paramObject, rowHandler);
   }
 
+  public SqlMapCursor queryForCursor(String id, Object paramObject) throws SQLException {
+    return delegate.queryForCursor(session, id, paramObject);
+  }
+
   public void startTransaction() throws SQLException {
     delegate.startTransaction(session);
   }
@@ -20,6 +20,7 @@ import com.ibatis.common.beans.Probe;
 import com.ibatis.common.beans.ProbeFactory;
 import com.ibatis.common.exception.NestedRuntimeException;
 import com.ibatis.sqlmap.client.SqlMapException;
+import com.ibatis.sqlmap.engine.exchange.DataExchange;
 import com.ibatis.sqlmap.engine.impl.SqlMapExecutorDelegate;
 import com.ibatis.sqlmap.engine.scope.RequestScope;
 import com.ibatis.sqlmap.engine.type.DomTypeMarker;
@@ -28,15 +29,28 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * An automatic result map for simple stuff
+ * An automatic result map for simple stuff.
+ * <p/>
+ * The mappings are built once for each shape of result set (the labels of its
+ * columns) into a plain BasicResultMap, which then maps every row of that
+ * result set.  Shapes are published through volatile fields, so threads share
+ * them without locking; only building a new shape is synchronized.
  */
 public class AutoResultMap extends BasicResultMap {
 
+  private static final int MAX_SHAPES = 64;
+
+  private boolean remapResults;
+
+  private volatile BasicResultMap shapeMap;
+  private volatile Map shapeMaps = Collections.EMPTY_MAP;
+
   /**
    * Constructor to pass in the SqlMapExecutorDelegate
    *
@@ -44,32 +58,120 @@ public class AutoResultMap extends BasicResultMap {
    */
   public AutoResultMap(SqlMapExecutorDelegate delegate, boolean allowRemapping) {
     super(delegate);
-    this.allowRemapping = allowRemapping;
+    this.remapResults = allowRemapping;
+  }
+
+  public ResultMap resolveSubMap(RequestScope request, ResultSet rs) throws SQLException {
+    ResultMap map = request.getResolvedResultMap(this);
+    if (map == null) {
+      map = getShapeMap(rs);
+      request.setResolvedResultMap(this, map);
+    }
+    return map;
   }
 
-  public synchronized Object[] getResults(RequestScope request, ResultSet rs)
+  public Object[] getResults(RequestScope request, ResultSet rs)
       throws SQLException {
-    if (allowRemapping || getResultMappings() == null) {
-      initialize(rs);
+    return resolveSubMap(request, rs).getResults(request, rs);
+  }
+
+  public Object setResultObjectValues(RequestScope request, Object resultObject, Object[] values) {
+    ResultMap map = request.getResolvedResultMap(this);
+    if (map == null) {
+      map = shapeMap;
+    }
+    if (map == null) {
+      throw new SqlMapException("The automatic ResultMap named " + this.getId() + " has not seen a result set yet.");
+    }
+    return map.setResultObjectValues(request, resultObject, values);
+  }
+
+  /**
+   * Getter for the mappings of the last result set shape seen
+   *
+   * @return - the mappings (or null if no result set has been seen)
+   */
+  public ResultMapping[] getResultMappings() {
+    BasicResultMap map = shapeMap;
+    return map == null ? null : map.getResultMappings();
+  }
+
+  public DataExchange getDataExchange() {
+    BasicResultMap map = shapeMap;
+    return map == null ? null : map.getDataExchange();
+  }
+
+  /**
+   * The mappings of an automatic result map are only known once it has seen
+   * a result set, so it is never compiled itself (the maps built for each
+   * result set shape may be)
+   *
+   * @return false
+   */
+  protected boolean isCompilable() {
+    return false;
+  }
+
+  private BasicResultMap getShapeMap(ResultSet rs) throws SQLException {
+    if (!remapResults) {
+      BasicResultMap map = shapeMap;
+      if (map == null) {
+        synchronized (this) {
+          map = shapeMap;
+          if (map == null) {
+            map = newShapeMap(rs);
+            shapeMap = map;
+          }
+        }
+      }
+      return map;
     }
-    return super.getResults(request, rs);
+
+    List labels = getColumnLabels(rs);
+    BasicResultMap map = labels == null ? null : (BasicResultMap) shapeMaps.get(labels);
+    if (map == null) {
+      synchronized (this) {
+        Map maps = shapeMaps;
+        map = labels == null ? null : (BasicResultMap) maps.get(labels);
+        if (map == null) {
+          map = newShapeMap(rs);
+          if (labels != null) {
+            maps = maps.size() < MAX_SHAPES ? new HashMap(maps) : new HashMap();
+            maps.put(labels, map);
+            shapeMaps = maps;
+          }
+        }
+      }
+    }
+    shapeMap = map;
+    return map;
+  }
+
+  private BasicResultMap newShapeMap(ResultSet rs) {
+    BasicResultMap map = new BasicResultMap(getDelegate());
+    map.setId(getId());
+    map.setResultClass(getResultClass());
+    map.setXmlName(getXmlName());
+    map.setResource(getResource());
+    map.setResultMappingList(getResultMappingList(rs));
+    return map;
   }
 
-  private void initialize(ResultSet rs) {
+  private List getResultMappingList(ResultSet rs) {
     if (getResultClass() == null) {
       throw new SqlMapException("The automatic ResultMap named " + this.getId() + " had a null result class (not allowed).");
     } else if (Map.class.isAssignableFrom(getResultClass())) {
-      initializeMapResults(rs);
+      return initializeMapResults(rs);
     } else if (getDelegate().getTypeHandlerFactory().getTypeHandler(getResultClass()) != null) {
-      initializePrimitiveResults(rs);
+      return initializePrimitiveResults(rs);
     } else if (DomTypeMarker.class.isAssignableFrom(getResultClass())) {
-      initializeXmlResults(rs);
+      return initializeXmlResults(rs);
     } else {
-      initializeBeanResults(rs);
+      return initializeBeanResults(rs);
     }
   }
 
-  private void initializeBeanResults(ResultSet rs) {
+  private List initializeBeanResults(ResultSet rs) {
     try {
       ClassInfo classInfo = ClassInfo.getInstance(getResultClass());
       String[] propertyNames = classInfo.getWriteablePropertyNames();
@@ -105,15 +207,13 @@ public class AutoResultMap extends BasicResultMap {
           resultMappingList.add(resultMapping);
         }
       }
-      setResultMappingList(resultMappingList);
-
+      return resultMappingList;
     } catch (SQLException e) {
       throw new NestedRuntimeException("Error automapping columns. Cause: " + e);
     }
-
   }
 
-  private void initializeXmlResults(ResultSet rs) {
+  private List initializeXmlResults(ResultSet rs) {
     try {
       List resultMappingList = new ArrayList();
       ResultSetMetaData rsmd = rs.getMetaData();
@@ -126,13 +226,13 @@ public class AutoResultMap extends BasicResultMap {
         resultMapping.setTypeHandler(getDelegate().getTypeHandlerFactory().getTypeHandler(String.class));
         resultMappingList.add(resultMapping);
       }
-      setResultMappingList(resultMappingList);
+      return resultMappingList;
     } catch (SQLException e) {
       throw new NestedRuntimeException("Error automapping columns. Cause: " + e);
     }
   }
 
-  private void initializeMapResults(ResultSet rs) {
+  private List initializeMapResults(ResultSet rs) {
     try {
       List resultMappingList = new ArrayList();
       ResultSetMetaData rsmd = rs.getMetaData();
@@ -146,14 +246,13 @@ public class AutoResultMap extends BasicResultMap {
         resultMappingList.add(resultMapping);
       }
 
-      setResultMappingList(resultMappingList);
-
+      return resultMappingList;
     } catch (SQLException e) {
       throw new NestedRuntimeException("Error automapping columns. Cause: " + e);
     }
   }
 
-  private void initializePrimitiveResults(ResultSet rs) {
+  private List initializePrimitiveResults(ResultSet rs) {
     try {
       ResultSetMetaData rsmd = rs.getMetaData();
       String columnName = rsmd.getColumnLabel(1);
@@ -166,8 +265,7 @@ public class AutoResultMap extends BasicResultMap {
       List resultMappingList = new ArrayList();
       resultMappingList.add(resultMapping);
 
-      setResultMappingList(resultMappingList);
-
+      return resultMappingList;
     } catch (SQLException e) {
       throw new NestedRuntimeException("Error automapping columns. Cause: " + e);
     }
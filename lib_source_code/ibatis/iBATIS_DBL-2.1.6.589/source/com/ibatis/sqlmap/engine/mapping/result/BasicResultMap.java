@@ -22,8 +22,10 @@ import com.ibatis.common.resources.Resources;
 import com.ibatis.common.exception.NestedRuntimeException;
 import com.ibatis.sqlmap.client.SqlMapException;
 import com.ibatis.sqlmap.engine.exchange.DataExchange;
+import com.ibatis.sqlmap.engine.exchange.JavaBeanDataExchange;
 import com.ibatis.sqlmap.engine.impl.ExtendedSqlMapClient;
 import com.ibatis.sqlmap.engine.impl.SqlMapExecutorDelegate;
+import com.ibatis.sqlmap.engine.mapping.result.loader.ResultBatch;
 import com.ibatis.sqlmap.engine.mapping.result.loader.ResultLoader;
 import com.ibatis.sqlmap.engine.mapping.sql.Sql;
 import com.ibatis.sqlmap.engine.mapping.statement.MappedStatement;
@@ -38,6 +40,7 @@ import org.w3c.dom.Document;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.*;
 
@@ -48,6 +51,8 @@ public class BasicResultMap implements ResultMap {
 
   private static final Probe PROBE = ProbeFactory.getProbe();
 
+  private static final int MAX_COLUMN_SHAPES = 16;
+
   private String id;
   private Class resultClass;
 
@@ -62,6 +67,7 @@ public class BasicResultMap implements ResultMap {
   private Discriminator discriminator;
 
   private Set groupByProps;
+  private boolean groupByOrdered;
 
   private String xmlName;
 
@@ -71,6 +77,11 @@ public class BasicResultMap implements ResultMap {
 
   protected boolean allowRemapping = false;
 
+  private RowMapper rowMapper;
+  private volatile boolean rowMapperResolved;
+
+  private Map columnIndexCache = newColumnIndexCache();
+
   /**
    * Constructor to pass a SqlMapExecutorDelegate in
    *
@@ -108,18 +119,18 @@ public class BasicResultMap implements ResultMap {
 
   public Object getUniqueKey(Object[] values) {
     if (groupByProps != null) {
-      StringBuffer keyBuffer = new StringBuffer();
-      for (int i = 0; i < getResultMappings().length; i++) {
-        String propertyName = getResultMappings()[i].getPropertyName();
+      ResultMapping[] mappings = getResultMappings();
+      List keyValues = new ArrayList(groupByProps.size());
+      for (int i = 0; i < mappings.length; i++) {
+        String propertyName = mappings[i].getPropertyName();
         if (groupByProps.contains(propertyName)) {
-          keyBuffer.append(values[i]);
-          keyBuffer.append('-');
+          keyValues.add(values[i]);
         }
       }
-      if (keyBuffer.length() < 1) {
+      if (keyValues.size() < 1) {
         return null;
       } else {
-        return keyBuffer.toString();
+        return new UniqueKey(keyValues.toArray());
       }
     } else {
       return null;
@@ -204,6 +215,30 @@ public class BasicResultMap implements ResultMap {
     return groupByProps.iterator();
   }
 
+  /**
+   * Getter for the ordered group by flag
+   *
+   * @return - true if the results are ordered by the group by properties
+   */
+  public boolean isGroupByOrdered() {
+    return groupByOrdered;
+  }
+
+  /**
+   * Setter for the ordered group by flag.
+   * <p/>
+   * When the results are ordered by the group by properties, only the current
+   * result object of the group is remembered, and a top level result object is
+   * passed on once its group is complete rather than when it is first seen.
+   * This keeps grouped queries of any size (e.g. with a RowHandler or a cursor)
+   * in bounded memory.
+   *
+   * @param groupByOrdered - true if the results are ordered by the group by properties
+   */
+  public void setGroupByOrdered(boolean groupByOrdered) {
+    this.groupByOrdered = groupByOrdered;
+  }
+
   public void addNestedResultMappings(ResultMapping mapping) {
     if (nestedResultMappings == null) {
       nestedResultMappings = new ArrayList();
@@ -262,6 +297,9 @@ public class BasicResultMap implements ResultMap {
     props.put("map", this);
     dataExchange = getDelegate().getDataExchangeFactory().getDataExchangeForClass(resultClass);
     dataExchange.initialize(props);
+
+    rowMapperResolved = false;
+    columnIndexCache = newColumnIndexCache();
   }
 
   /**
@@ -286,6 +324,10 @@ public class BasicResultMap implements ResultMap {
     errorContext.setResource(this.getResource());
     errorContext.setMoreInfo("Check the result map.");
 
+    request.bindBatchTargets(null);
+
+    int[] columns = getColumnIndexes(request, rs);
+
     boolean foundData = false;
     Object[] columnValues = new Object[getResultMappings().length];
     for (int i = 0; i < getResultMappings().length; i++) {
@@ -308,7 +350,7 @@ public class BasicResultMap implements ResultMap {
           columnValues[i] = getNestedSelectMappingValue(request, rs, mapping, type);
         }
       } else if (mapping.getNestedResultMapName() == null) {
-        columnValues[i] = getPrimitiveResultMappingValue(rs, mapping);
+        columnValues[i] = getPrimitiveResultMappingValue(rs, mapping, columns[i]);
       }
       foundData = foundData || columnValues[i] != null;
     }
@@ -318,6 +360,161 @@ public class BasicResultMap implements ResultMap {
     return columnValues;
   }
 
+  /**
+   * Maps the current row straight into a result object, if the result map
+   * can be compiled into a RowMapper
+   *
+   * @param request      - the request scope
+   * @param rs           - the result set
+   * @param resultObject - the object to map into (or null to create a new one)
+   * @return the result object, or NO_VALUE if the row must be mapped with getResults
+   */
+  public Object getCompiledResultObject(RequestScope request, ResultSet rs, Object resultObject) {
+    RowMapper mapper = getRowMapper();
+    if (mapper == null) {
+      return NO_VALUE;
+    }
+    try {
+      int[] columns = getColumnIndexes(request, rs);
+      for (int i = 0; i < columns.length; i++) {
+        if (columns[i] < 1) {
+          // the column could only be found by name
+          return NO_VALUE;
+        }
+      }
+      return mapper.mapRow(rs, columns, resultObject);
+    } catch (SQLException e) {
+      // mapped again by getResults, which reports the failing column
+      return NO_VALUE;
+    } catch (RuntimeException e) {
+      // mapped again by getResults, which reports the failing property
+      return NO_VALUE;
+    }
+  }
+
+  /**
+   * Gets the column index of each result mapping in the current result set.
+   * <p/>
+   * Many drivers find a column by name with a linear, case insensitive
+   * search, so names are resolved once per result set shape instead of once
+   * per column per row.  The shape is identified by the column labels of
+   * the result set metadata, and the indexes are cached on the result map.
+   *
+   * @param request - the request scope
+   * @param rs      - the result set
+   * @return the column index of each result mapping, or 0 if the column
+   *         must be read by name
+   */
+  protected int[] getColumnIndexes(RequestScope request, ResultSet rs) {
+    int[] columns = request.getColumnIndexes(this);
+    if (columns == null || columns.length != getResultMappings().length) {
+      List labels = getColumnLabels(rs);
+      if (labels == null) {
+        columns = resolveColumnIndexes(rs, Collections.EMPTY_LIST);
+      } else {
+        Map cache = columnIndexCache;
+        columns = (int[]) cache.get(labels);
+        if (columns == null || columns.length != getResultMappings().length) {
+          columns = resolveColumnIndexes(rs, labels);
+          cache.put(labels, columns);
+        }
+      }
+      request.setColumnIndexes(this, columns);
+    }
+    return columns;
+  }
+
+  static List getColumnLabels(ResultSet rs) {
+    try {
+      ResultSetMetaData metaData = rs.getMetaData();
+      int count = metaData.getColumnCount();
+      List labels = new ArrayList(count);
+      for (int i = 1; i <= count; i++) {
+        labels.add(metaData.getColumnLabel(i));
+      }
+      return labels;
+    } catch (SQLException e) {
+      return null;
+    } catch (RuntimeException e) {
+      // e.g. the result set of a CallableStatement has no metadata
+      return null;
+    }
+  }
+
+  private int[] resolveColumnIndexes(ResultSet rs, List labels) {
+    ResultMapping[] mappings = getResultMappings();
+    int[] columns = new int[mappings.length];
+    for (int i = 0; i < mappings.length; i++) {
+      BasicResultMapping mapping = (BasicResultMapping) mappings[i];
+      String columnName = mapping.getColumnName();
+      if (columnName == null) {
+        columns[i] = mapping.getColumnIndex();
+      } else if (mapping.getStatementName() == null && mapping.getNestedResultMapName() == null) {
+        for (int j = 0, n = labels.size(); j < n && columns[i] == 0; j++) {
+          if (columnName.equalsIgnoreCase((String) labels.get(j))) {
+            columns[i] = j + 1;
+          }
+        }
+        if (columns[i] == 0 && !labels.isEmpty()) {
+          try {
+            // some drivers also find columns by their name rather than their label
+            columns[i] = rs.findColumn(columnName);
+          } catch (SQLException e) {
+            // read by name, which reports the missing column
+          } catch (RuntimeException e) {
+            // read by name, which reports the missing column
+          }
+        }
+      }
+    }
+    return columns;
+  }
+
+  private static Map newColumnIndexCache() {
+    return Collections.synchronizedMap(new LinkedHashMap(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry eldest) {
+        return size() > MAX_COLUMN_SHAPES;
+      }
+    });
+  }
+
+  private RowMapper getRowMapper() {
+    if (!rowMapperResolved) {
+      synchronized (this) {
+        if (!rowMapperResolved) {
+          rowMapper = null;
+          if (getDelegate().isRowMapperGenerationEnabled() && isCompilable()) {
+            rowMapper = RowMapperGenerator.generate(resultClass, (BasicResultMapping[]) getResultMappings());
+          }
+          rowMapperResolved = true;
+        }
+      }
+    }
+    return rowMapper;
+  }
+
+  /**
+   * Tells if the rows of this result map can be mapped by a generated
+   * RowMapper.  Result maps with nested results or selects, groupBy or
+   * remapping always go through getResults.
+   *
+   * @return true if a RowMapper may be generated
+   */
+  protected boolean isCompilable() {
+    if (allowRemapping || groupByProps != null || nestedResultMappings != null
+        || !(dataExchange instanceof JavaBeanDataExchange) || getResultMappings() == null) {
+      return false;
+    }
+    ResultMapping[] mappings = getResultMappings();
+    for (int i = 0; i < mappings.length; i++) {
+      BasicResultMapping mapping = (BasicResultMapping) mappings[i];
+      if (mapping.getStatementName() != null || mapping.getNestedResultMapName() != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public Object setResultObjectValues(RequestScope request, Object resultObject, Object[] values) {
     Object ukey = getUniqueKey(values);
 
@@ -326,16 +523,22 @@ public class BasicResultMap implements ResultMap {
     if (uniqueKeys != null && uniqueKeys.containsKey(ukey)) {
       // Unique key is already known, so get the existing result object and process additional results.
       resultObject = uniqueKeys.get(ukey);
+      request.bindBatchTargets(null);
       applyNestedResultMap(request, resultObject, values);
       resultObject = NO_VALUE;
     } else if (ukey == null || uniqueKeys == null || !uniqueKeys.containsKey(ukey)) {
       // Unique key is NOT known, so create a new result object and then process additional results.
       resultObject = dataExchange.setData(request, this, resultObject, values);
+      request.bindBatchTargets(resultObject);
       // Lazy init key set, only if we're grouped by something (i.e. ukey != null)
       if (ukey != null) {
         if (uniqueKeys == null) {
           uniqueKeys = new HashMap();
           request.setUniqueKeys(this, uniqueKeys);
+        } else if (groupByOrdered) {
+          // the previous group is complete, and so are the groups nested in it
+          uniqueKeys.clear();
+          resetNestedUniqueKeys(request);
         }
         uniqueKeys.put(ukey, resultObject);
       }
@@ -359,6 +562,33 @@ public class BasicResultMap implements ResultMap {
     }
   }
 
+  private void resetNestedUniqueKeys(RequestScope request) {
+    if (nestedResultMappings != null) {
+      resetNestedUniqueKeys(request, new HashSet());
+    }
+  }
+
+  /**
+   * Forgets the groups of every result map nested in this one, however deep
+   *
+   * @param request - the request scope
+   * @param reset   - the result maps already reset, so that a map nested in itself ends the walk
+   */
+  private void resetNestedUniqueKeys(RequestScope request, Set reset) {
+    if (nestedResultMappings != null) {
+      for (int i = 0, n = nestedResultMappings.size(); i < n; i++) {
+        BasicResultMapping mapping = (BasicResultMapping) nestedResultMappings.get(i);
+        ResultMap nested = getDelegate().getResultMap(mapping.getNestedResultMapName());
+        if (reset.add(nested)) {
+          request.setUniqueKeys(nested, null);
+          if (nested instanceof BasicResultMap) {
+            ((BasicResultMap) nested).resetNestedUniqueKeys(request, reset);
+          }
+        }
+      }
+    }
+  }
+
   protected void setNestedResultMappingValue(BasicResultMapping mapping, RequestScope request, Object resultObject, Object[] values) {
     try {
 
@@ -439,13 +669,33 @@ public class BasicResultMap implements ResultMap {
           }
         }
 
-        result = ResultLoader.loadResult(client, statementName, parameterObject, targetType);
-
+        Object nullResult = null;
         String nullValue = mapping.getNullValue();
-        if (result == null && nullValue != null) {
+        if (nullValue != null) {
           TypeHandler typeHandler = typeHandlerFactory.getTypeHandler(targetType);
           if (typeHandler != null) {
-            result = typeHandler.valueOf(nullValue);
+            nullResult = typeHandler.valueOf(nullValue);
+          }
+        }
+
+        ResultBatch batch = null;
+        if (isBatchable(request, mapping, parameterObject, targetType)) {
+          batch = request.getResultBatch(mapping);
+          if (batch == null || batch.isFull()) {
+            batch = new ResultBatch(client, mapping.getBatchStatementName(), mapping.getBatchKeyProperty(),
+                getDelegate().getNestedSelectBatchSize());
+            request.setResultBatch(mapping, batch);
+          }
+          batch.addParameter(parameterObject);
+        }
+
+        if (batch != null && !ResultLoader.isLazyLoadable(client, targetType)) {
+          // set once the whole batch has been loaded, after the last row
+          request.addBatchTarget(batch.addTarget(mapping.getPropertyName(), parameterObject, targetType, nullResult));
+        } else {
+          result = ResultLoader.loadResult(client, statementName, parameterObject, targetType, batch);
+          if (result == null) {
+            result = nullResult;
           }
         }
       }
@@ -458,6 +708,15 @@ public class BasicResultMap implements ResultMap {
 
   }
 
+  private boolean isBatchable(RequestScope request, BasicResultMapping mapping, Object parameterObject, Class targetType) {
+    return request.isResultBatching()
+        && mapping.getBatchStatementName() != null
+        && getDelegate().getNestedSelectBatchSize() > 0
+        && getDelegate().getTypeHandlerFactory().hasTypeHandler(parameterObject.getClass())
+        && !DomTypeMarker.class.isAssignableFrom(targetType)
+        && !DomCollectionTypeMarker.class.isAssignableFrom(targetType);
+  }
+
   private Object preparePrimitiveParameterObject(ResultSet rs, BasicResultMapping mapping, Class parameterType) throws SQLException {
     Object parameterObject;
     TypeHandlerFactory typeHandlerFactory = getDelegate().getTypeHandlerFactory();
@@ -540,13 +799,28 @@ public class BasicResultMap implements ResultMap {
   }
 
   protected Object getPrimitiveResultMappingValue(ResultSet rs, BasicResultMapping mapping) throws SQLException {
+    return getPrimitiveResultMappingValue(rs, mapping, 0);
+  }
+
+  /**
+   * Reads the value of a result mapping from the current row
+   *
+   * @param rs             - the result set
+   * @param mapping        - the result mapping
+   * @param resolvedColumn - the index the column was resolved to, or 0 to read it as mapped
+   * @return the value
+   * @throws SQLException - if the column cannot be read
+   */
+  protected Object getPrimitiveResultMappingValue(ResultSet rs, BasicResultMapping mapping, int resolvedColumn) throws SQLException {
     Object value = null;
     TypeHandler typeHandler = mapping.getTypeHandler();
     if (typeHandler != null) {
       String columnName = mapping.getColumnName();
       int columnIndex = mapping.getColumnIndex();
       String nullValue = mapping.getNullValue();
-      if (columnName == null) {
+      if (resolvedColumn > 0) {
+        value = typeHandler.getResult(rs, resolvedColumn);
+      } else if (columnName == null) {
         value = typeHandler.getResult(rs, columnIndex);
       } else {
         value = typeHandler.getResult(rs, columnName);
@@ -560,6 +834,42 @@ public class BasicResultMap implements ResultMap {
     return value;
   }
 
+  /**
+   * The values of the group by properties of a row
+   */
+  private static class UniqueKey {
+    private Object[] values;
+    private int hashCode;
+
+    public UniqueKey(Object[] values) {
+      this.values = values;
+      int hash = 17;
+      for (int i = 0; i < values.length; i++) {
+        hash = 37 * hash + (values[i] == null ? 0 : values[i].hashCode());
+      }
+      this.hashCode = hash;
+    }
+
+    public boolean equals(Object object) {
+      if (this == object) return true;
+      if (!(object instanceof UniqueKey)) return false;
+
+      final UniqueKey key = (UniqueKey) object;
+      if (hashCode != key.hashCode || values.length != key.values.length) return false;
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] == null ? key.values[i] != null : !values[i].equals(key.values[i])) return false;
+      }
+      return true;
+    }
+
+    public int hashCode() {
+      return hashCode;
+    }
+
+    public String toString() {
+      return Arrays.asList(values).toString();
+    }
+  }
 
 }
 
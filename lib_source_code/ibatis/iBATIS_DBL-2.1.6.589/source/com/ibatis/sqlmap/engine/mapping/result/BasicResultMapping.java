@@ -31,6 +31,8 @@ public class BasicResultMapping implements ResultMapping {
   private String jdbcTypeName;
   private String nullValue;
   private String statementName;
+  private String batchStatementName;
+  private String batchKeyProperty;
   private Class javaType;
 
   private String nestedResultMapName;
@@ -195,6 +197,42 @@ public class BasicResultMapping implements ResultMapping {
     this.statementName = statementName;
   }
 
+  /**
+   * Getter for the name of the statement that loads many results at once
+   * 
+   * @return - the name
+   */
+  public String getBatchStatementName() {
+    return batchStatementName;
+  }
+
+  /**
+   * Setter for the name of the statement that loads many results at once
+   * 
+   * @param batchStatementName - the name
+   */
+  public void setBatchStatementName(String batchStatementName) {
+    this.batchStatementName = batchStatementName;
+  }
+
+  /**
+   * Getter for the property of the batch results that holds the parameter
+   * 
+   * @return - the property name
+   */
+  public String getBatchKeyProperty() {
+    return batchKeyProperty;
+  }
+
+  /**
+   * Setter for the property of the batch results that holds the parameter
+   * 
+   * @param batchKeyProperty - the property name
+   */
+  public void setBatchKeyProperty(String batchKeyProperty) {
+    this.batchKeyProperty = batchKeyProperty;
+  }
+
   public String getNestedResultMapName() {
     return nestedResultMapName;
   }
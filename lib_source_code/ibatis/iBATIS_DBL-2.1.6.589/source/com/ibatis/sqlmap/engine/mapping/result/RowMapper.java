@@ -0,0 +1,85 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.mapping.result;
+
+import com.ibatis.common.beans.ClassInfo;
+import com.ibatis.common.exception.NestedRuntimeException;
+import com.ibatis.sqlmap.engine.type.TypeHandler;
+
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a result set straight into a result object, with
+ * no intermediate array of values.
+ * <p/>
+ * Subclasses are generated for a result map by RowMapperGenerator.  They
+ * read each column with the primitive JDBC getter of its type handler and
+ * pass the value to the setter of the property.  Only null columns go
+ * through this class, so that null values are handled exactly as the
+ * result map would.
+ */
+public abstract class RowMapper {
+
+  private BasicResultMapping[] resultMappings;
+  private Method[] setters;
+
+  /**
+   * Sets up the mapper once it has been created
+   *
+   * @param resultMappings - the result mappings, in the order of the columns array
+   * @param setters        - the setter of each result mapping
+   */
+  void initialize(BasicResultMapping[] resultMappings, Method[] setters) {
+    this.resultMappings = resultMappings;
+    this.setters = setters;
+  }
+
+  /**
+   * Maps the current row
+   *
+   * @param rs           - the result set
+   * @param columns      - the column index of each result mapping
+   * @param resultObject - the object to map into (or null to create a new one)
+   * @return the result object
+   * @throws SQLException - if a column cannot be read
+   */
+  public abstract Object mapRow(ResultSet rs, int[] columns, Object resultObject) throws SQLException;
+
+  /**
+   * Sets a property whose column was null, using the null value of its
+   * result mapping
+   *
+   * @param resultObject - the result object
+   * @param index        - the index of the result mapping
+   */
+  public void setNullValue(Object resultObject, int index) {
+    Object value = null;
+    String nullValue = resultMappings[index].getNullValue();
+    if (nullValue != null) {
+      TypeHandler typeHandler = resultMappings[index].getTypeHandler();
+      value = typeHandler.valueOf(nullValue);
+    }
+    try {
+      setters[index].invoke(resultObject, new Object[]{value});
+    } catch (Throwable t) {
+      t = ClassInfo.unwrapThrowable(t);
+      throw new NestedRuntimeException("Error setting properties of '" + resultObject + "'.  Cause: " + t, t);
+    }
+  }
+
+}
@@ -0,0 +1,245 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.mapping.result;
+
+import com.ibatis.common.beans.ClassInfo;
+import com.ibatis.sqlmap.engine.accessplan.ClassFileWriter;
+import com.ibatis.sqlmap.engine.accessplan.ClassFileWriter.Code;
+import com.ibatis.sqlmap.engine.type.*;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generates the RowMapper of a result map.
+ * <p/>
+ * Only simple result maps are compiled: a public JavaBean result class
+ * with a public no argument constructor, and result mappings that each
+ * set a simple property with one of the standard type handlers below.
+ */
+final class RowMapperGenerator {
+
+  private static final String CLASS_NAME_PREFIX = "com/ibatis/sqlmap/engine/mapping/result/GeneratedRowMapper";
+  private static final String RESULT_SET = "java/sql/ResultSet";
+  private static final String ROW_MAPPER = ClassFileWriter.internalName(RowMapper.class);
+
+  private static final Map READERS = new HashMap();
+
+  static {
+    READERS.put(IntegerTypeHandler.class, new Reader("getInt", Integer.TYPE, "java/lang/Integer"));
+    READERS.put(LongTypeHandler.class, new Reader("getLong", Long.TYPE, "java/lang/Long"));
+    READERS.put(ShortTypeHandler.class, new Reader("getShort", Short.TYPE, "java/lang/Short"));
+    READERS.put(ByteTypeHandler.class, new Reader("getByte", Byte.TYPE, "java/lang/Byte"));
+    READERS.put(FloatTypeHandler.class, new Reader("getFloat", Float.TYPE, "java/lang/Float"));
+    READERS.put(DoubleTypeHandler.class, new Reader("getDouble", Double.TYPE, "java/lang/Double"));
+    READERS.put(BooleanTypeHandler.class, new Reader("getBoolean", Boolean.TYPE, "java/lang/Boolean"));
+    READERS.put(StringTypeHandler.class, new Reader("getString", String.class, null));
+    READERS.put(BigDecimalTypeHandler.class, new Reader("getBigDecimal", BigDecimal.class, null));
+    READERS.put(SqlTimestampTypeHandler.class, new Reader("getTimestamp", Timestamp.class, null));
+    READERS.put(SqlDateTypeHandler.class, new Reader("getDate", java.sql.Date.class, null));
+    READERS.put(SqlTimeTypeHandler.class, new Reader("getTime", Time.class, null));
+  }
+
+  private RowMapperGenerator() {
+  }
+
+  /**
+   * Generates a row mapper
+   *
+   * @param resultClass    - the result class
+   * @param resultMappings - the result mappings
+   * @return the row mapper, or null if the result map cannot be compiled
+   */
+  public static RowMapper generate(Class resultClass, BasicResultMapping[] resultMappings) {
+    if (resultClass == null || resultMappings == null || !isInstantiable(resultClass)) {
+      return null;
+    }
+    ClassInfo info = ClassInfo.getInstance(resultClass);
+    Method[] setters = new Method[resultMappings.length];
+    Reader[] readers = new Reader[resultMappings.length];
+    for (int i = 0; i < resultMappings.length; i++) {
+      BasicResultMapping mapping = resultMappings[i];
+      String propertyName = mapping.getPropertyName();
+      if (mapping.getTypeHandler() == null || propertyName.indexOf('.') > -1 || propertyName.indexOf('[') > -1
+          || !info.hasWritableProperty(propertyName)) {
+        return null;
+      }
+      readers[i] = (Reader) READERS.get(mapping.getTypeHandler().getClass());
+      setters[i] = info.getSetter(propertyName);
+      if (readers[i] == null || !isAccessible(setters[i]) || !readers[i].canSet(setters[i].getParameterTypes()[0])) {
+        return null;
+      }
+    }
+    String className = ClassFileWriter.nextClassName(CLASS_NAME_PREFIX);
+    byte[] classFile = writeClass(className, resultClass, setters, readers);
+    try {
+      Class mapperClass = ClassFileWriter.defineClass(resultClass.getClassLoader(), className, classFile, new Class[]{RowMapper.class});
+      RowMapper mapper = (RowMapper) mapperClass.newInstance();
+      mapper.initialize(resultMappings, setters);
+      return mapper;
+    } catch (Exception e) {
+      return null;
+    } catch (LinkageError e) {
+      return null;
+    }
+  }
+
+  private static boolean isInstantiable(Class resultClass) {
+    if (!ClassFileWriter.isPublic(resultClass) || resultClass.isInterface()
+        || Modifier.isAbstract(resultClass.getModifiers())) {
+      return false;
+    }
+    try {
+      Constructor constructor = resultClass.getConstructor(new Class[0]);
+      return Modifier.isPublic(constructor.getModifiers());
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private static boolean isAccessible(Method setter) {
+    return Modifier.isPublic(setter.getModifiers()) && !Modifier.isStatic(setter.getModifiers());
+  }
+
+  private static byte[] writeClass(String className, Class resultClass, Method[] setters, Reader[] readers) {
+    ClassFileWriter writer = new ClassFileWriter(className, ROW_MAPPER, new String[0]);
+    writer.addDefaultConstructor(ROW_MAPPER);
+    String owner = ClassFileWriter.internalName(resultClass);
+
+    Code code = new Code();
+    code.op(Code.ALOAD_3);
+    code.op(Code.IFNONNULL, 11);
+    code.op(Code.NEW, writer.classRef(owner));
+    code.op(Code.DUP);
+    code.op(Code.INVOKESPECIAL, writer.methodRef(owner, "<init>", "()V"));
+    code.op(Code.ASTORE_3);
+    code.op(Code.ALOAD_3);
+    code.op(Code.CHECKCAST, writer.classRef(owner));
+    code.op(Code.ASTORE);
+    code.u1(4);
+
+    for (int i = 0; i < setters.length; i++) {
+      Reader reader = readers[i];
+      Class propertyType = setters[i].getParameterTypes()[0];
+
+      // value = rs.getXxx(columns[i])
+      code.op(Code.ALOAD_1);
+      code.op(Code.ALOAD_2);
+      code.pushInt(i);
+      code.op(Code.IALOAD);
+      code.op(Code.INVOKEINTERFACE, writer.interfaceMethodRef(RESULT_SET, reader.getter,
+          "(I)" + ClassFileWriter.descriptor(reader.type)));
+      code.u1(2);
+      code.u1(0);
+      code.op(reader.storeOpcode());
+      code.u1(5);
+
+      // setNullValue(bean, i)
+      Code nullBlock = new Code();
+      nullBlock.op(Code.ALOAD_0);
+      nullBlock.op(Code.ALOAD);
+      nullBlock.u1(4);
+      nullBlock.pushInt(i);
+      nullBlock.op(Code.INVOKEVIRTUAL, writer.methodRef(ROW_MAPPER, "setNullValue", "(Ljava/lang/Object;I)V"));
+
+      // bean.setXxx(value)
+      Code setBlock = new Code();
+      setBlock.op(Code.ALOAD);
+      setBlock.u1(4);
+      boolean box = reader.wrapper != null && !propertyType.isPrimitive();
+      if (box) {
+        setBlock.op(Code.NEW, writer.classRef(reader.wrapper));
+        setBlock.op(Code.DUP);
+      }
+      setBlock.op(reader.loadOpcode());
+      setBlock.u1(5);
+      if (box) {
+        setBlock.op(Code.INVOKESPECIAL, writer.methodRef(reader.wrapper, "<init>",
+            "(" + ClassFileWriter.descriptor(reader.type) + ")V"));
+      }
+      setBlock.op(Code.INVOKEVIRTUAL, writer.methodRef(owner, setters[i].getName(), ClassFileWriter.descriptor(setters[i])));
+      Class returnType = setters[i].getReturnType();
+      if (returnType == Long.TYPE || returnType == Double.TYPE) {
+        setBlock.op(Code.POP2);
+      } else if (returnType != Void.TYPE) {
+        setBlock.op(Code.POP);
+      }
+
+      // if (rs.wasNull()) nullBlock else setBlock
+      code.op(Code.ALOAD_1);
+      code.op(Code.INVOKEINTERFACE, writer.interfaceMethodRef(RESULT_SET, "wasNull", "()Z"));
+      code.u1(1);
+      code.u1(0);
+      code.op(Code.IFEQ, 3 + nullBlock.length() + 3);
+      code.append(nullBlock);
+      code.op(Code.GOTO, 3 + setBlock.length());
+      code.append(setBlock);
+    }
+    code.op(Code.ALOAD_3);
+    code.op(Code.ARETURN);
+
+    writer.addMethod("mapRow", "(Ljava/sql/ResultSet;[ILjava/lang/Object;)Ljava/lang/Object;", 6, 7, code);
+    return writer.toByteArray();
+  }
+
+  /**
+   * How the columns of a type handler are read
+   */
+  private static class Reader {
+    private String getter;
+    private Class type;
+    private String wrapper;
+
+    public Reader(String getter, Class type, String wrapper) {
+      this.getter = getter;
+      this.type = type;
+      this.wrapper = wrapper;
+    }
+
+    public boolean canSet(Class propertyType) {
+      if (type.isPrimitive()) {
+        return propertyType == type || ClassFileWriter.internalName(propertyType).equals(wrapper);
+      } else {
+        return propertyType.isAssignableFrom(type) && ClassFileWriter.isPublic(propertyType);
+      }
+    }
+
+    public int storeOpcode() {
+      if (type == Long.TYPE) {
+        return Code.LSTORE;
+      } else if (type == Float.TYPE) {
+        return Code.FSTORE;
+      } else if (type == Double.TYPE) {
+        return Code.DSTORE;
+      } else if (type.isPrimitive()) {
+        return Code.ISTORE;
+      } else {
+        return Code.ASTORE;
+      }
+    }
+
+    public int loadOpcode() {
+      return storeOpcode() - Code.ISTORE + Code.ILOAD;
+    }
+  }
+
+}
@@ -48,6 +48,21 @@ public class EnhancedLazyResultLoader {
     loader = new EnhancedLazyResultLoaderImpl(client, statementName, parameterObject, targetType);
   }
 
+  /**
+   * Constructor for an enhanced lazy loader that is loaded with a batch of others
+   *
+   * @param client - the client that is creating the lazy list
+   * @param statementName - the statement to be used to build the list
+   * @param parameterObject - the parameter object to be used to build the list
+   * @param targetType - the type we are putting data into
+   * @param batch - the batch the parameter object belongs to (or null)
+   */
+  public EnhancedLazyResultLoader(ExtendedSqlMapClient client, String statementName, Object parameterObject, Class targetType, ResultBatch batch) {
+    EnhancedLazyResultLoaderImpl impl = new EnhancedLazyResultLoaderImpl(client, statementName, parameterObject, targetType);
+    impl.batch = batch;
+    loader = impl;
+  }
+
   /**
    * Loads the result
    *
@@ -67,6 +82,7 @@ public class EnhancedLazyResultLoader {
     protected String statementName;
     protected Object parameterObject;
     protected Class targetType;
+    protected ResultBatch batch;
 
     protected boolean loaded;
     protected Object resultObject;
@@ -127,7 +143,11 @@ public class EnhancedLazyResultLoader {
       if (!loaded) {
         try {
           loaded = true;
-          resultObject = ResultLoader.getResult(client, statementName, parameterObject, targetType);
+          if (batch != null) {
+            resultObject = batch.getResult(parameterObject, targetType);
+          } else {
+            resultObject = ResultLoader.getResult(client, statementName, parameterObject, targetType);
+          }
         } catch (SQLException e) {
           throw new NestedRuntimeException("Error lazy loading result. Cause: " + e, e);
         }
@@ -37,6 +37,7 @@ public class LazyResultLoader implements InvocationHandler {
   protected String statementName;
   protected Object parameterObject;
   protected Class targetType;
+  protected ResultBatch batch;
 
   protected boolean loaded;
   protected Object resultObject;
@@ -56,6 +57,20 @@ public class LazyResultLoader implements InvocationHandler {
     this.targetType = targetType;
   }
 
+  /**
+   * Constructor for a lazy list loader that is loaded with a batch of others
+   *
+   * @param client - the client that is creating the lazy list
+   * @param statementName - the statement to be used to build the list
+   * @param parameterObject - the parameter object to be used to build the list
+   * @param targetType - the type we are putting data into
+   * @param batch - the batch the parameter object belongs to (or null)
+   */
+  public LazyResultLoader(ExtendedSqlMapClient client, String statementName, Object parameterObject, Class targetType, ResultBatch batch) {
+    this(client, statementName, parameterObject, targetType);
+    this.batch = batch;
+  }
+
   /**
    * Loads the result
    *
@@ -65,7 +80,7 @@ public class LazyResultLoader implements InvocationHandler {
    */
   public Object loadResult() throws SQLException {
     if (Collection.class.isAssignableFrom(targetType)) {
-      InvocationHandler handler = new LazyResultLoader(client, statementName, parameterObject, targetType);
+      InvocationHandler handler = new LazyResultLoader(client, statementName, parameterObject, targetType, batch);
       ClassLoader cl = targetType.getClassLoader();
       return Proxy.newProxyInstance(cl, LIST_INTERFACES, handler);
     } else {
@@ -95,7 +110,11 @@ public class LazyResultLoader implements InvocationHandler {
     if (!loaded) {
       try {
         loaded = true;
-        resultObject = ResultLoader.getResult(client, statementName, parameterObject, targetType);
+        if (batch != null) {
+          resultObject = batch.getResult(parameterObject, targetType);
+        } else {
+          resultObject = ResultLoader.getResult(client, statementName, parameterObject, targetType);
+        }
       } catch (SQLException e) {
         throw new NestedRuntimeException("Error lazy loading result. Cause: " + e, e);
       }
@@ -0,0 +1,219 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.mapping.result.loader;
+
+import com.ibatis.common.beans.Probe;
+import com.ibatis.common.beans.ProbeFactory;
+import com.ibatis.sqlmap.client.SqlMapException;
+import com.ibatis.sqlmap.engine.impl.ExtendedSqlMapClient;
+
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Class to load the results of a nested select for many parent rows at once.
+ * <p/>
+ * The parameters of the nested select are collected from the parent rows,
+ * and the first time a result is needed they are all passed (as a List) to
+ * a single batch statement.  The rows it returns are matched to the
+ * parameters by the value of their key property.
+ */
+public class ResultBatch {
+
+  private static final Probe PROBE = ProbeFactory.getProbe();
+
+  private ExtendedSqlMapClient client;
+  private String statementName;
+  private String keyProperty;
+  private int maxSize;
+
+  private List parameters = new ArrayList();
+  private Set keys = new HashSet();
+  private List targets;
+  private Map results;
+
+  /**
+   * Constructor for a batch of nested select parameters
+   *
+   * @param client        - the client that is loading the results
+   * @param statementName - the batch statement, which takes a List of parameters
+   * @param keyProperty   - the property of the batch results that holds the parameter
+   * @param maxSize       - the maximum number of parameters in the batch
+   */
+  public ResultBatch(ExtendedSqlMapClient client, String statementName, String keyProperty, int maxSize) {
+    this.client = client;
+    this.statementName = statementName;
+    this.keyProperty = keyProperty;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Tells if the batch can take more parameters
+   *
+   * @return true if the batch is full or has been loaded
+   */
+  public synchronized boolean isFull() {
+    return results != null || keys.size() >= maxSize;
+  }
+
+  /**
+   * Adds a parameter to the batch
+   *
+   * @param parameterObject - the nested select parameter of a parent row
+   */
+  public synchronized void addParameter(Object parameterObject) {
+    if (keys.add(keyOf(parameterObject))) {
+      parameters.add(parameterObject);
+    }
+  }
+
+  /**
+   * Registers a property to be set once the batch has been loaded
+   *
+   * @param propertyName    - the property of the parent object
+   * @param parameterObject - the nested select parameter of the parent row
+   * @param targetType      - the type of the property
+   * @param nullResult      - the value to set if there is no result
+   * @return the target, which must be given its parent object
+   */
+  public synchronized Target addTarget(String propertyName, Object parameterObject, Class targetType, Object nullResult) {
+    if (targets == null) {
+      targets = new ArrayList();
+    }
+    Target target = new Target(propertyName, parameterObject, targetType, nullResult);
+    targets.add(target);
+    return target;
+  }
+
+  /**
+   * Loads the batch if needed and sets the registered properties
+   *
+   * @throws SQLException if there is a problem
+   */
+  public void setTargetValues() throws SQLException {
+    List list;
+    synchronized (this) {
+      list = targets;
+      targets = null;
+    }
+    if (list != null) {
+      for (int i = 0, n = list.size(); i < n; i++) {
+        Target target = (Target) list.get(i);
+        if (target.resultObject != null) {
+          Object value = getResult(target.parameterObject, target.targetType);
+          if (value == null) {
+            value = target.nullResult;
+          }
+          PROBE.setObject(target.resultObject, target.propertyName, value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the result for one parameter, loading the whole batch if needed
+   *
+   * @param parameterObject - the nested select parameter
+   * @param targetType      - the type of the result
+   * @return the result - a list, set, array or object
+   * @throws SQLException if there is a problem
+   */
+  public synchronized Object getResult(Object parameterObject, Class targetType) throws SQLException {
+    if (results == null) {
+      load();
+    }
+    List list = (List) results.get(keyOf(parameterObject));
+    if (list == null) {
+      list = Collections.EMPTY_LIST;
+    }
+    Object value;
+    if (Set.class.isAssignableFrom(targetType)) {
+      value = new HashSet(list);
+    } else if (Collection.class.isAssignableFrom(targetType)) {
+      value = new ArrayList(list);
+    } else if (targetType.isArray()) {
+      value = ResultLoader.listToArray(list, targetType.getComponentType());
+    } else if (list.size() > 1) {
+      throw new SQLException("Error: batch statement '" + statementName + "' returned too many results for the key '"
+          + parameterObject + "'.");
+    } else if (list.size() > 0) {
+      value = list.get(0);
+    } else {
+      value = null;
+    }
+    return value;
+  }
+
+  private void load() throws SQLException {
+    Map map = new HashMap();
+    List rows = client.queryForList(statementName, parameters);
+    for (int i = 0, n = rows.size(); i < n; i++) {
+      Object row = rows.get(i);
+      if (row == null) {
+        continue;
+      }
+      if (!PROBE.hasReadableProperty(row, keyProperty)) {
+        throw new SqlMapException("The results of the batch statement '" + statementName
+            + "' do not have a readable property named '" + keyProperty + "'.");
+      }
+      Object key = keyOf(PROBE.getObject(row, keyProperty));
+      List list = (List) map.get(key);
+      if (list == null) {
+        list = new ArrayList();
+        map.put(key, list);
+      }
+      list.add(row);
+    }
+    results = map;
+    parameters = null;
+  }
+
+  /**
+   * Parameters and keys are compared as strings, so that (for example) an
+   * Integer parameter matches a BigDecimal key
+   */
+  private static Object keyOf(Object value) {
+    return String.valueOf(value);
+  }
+
+  /**
+   * A property of a parent object waiting for the batch to be loaded
+   */
+  public static class Target {
+    private Object resultObject;
+    private String propertyName;
+    private Object parameterObject;
+    private Class targetType;
+    private Object nullResult;
+
+    private Target(String propertyName, Object parameterObject, Class targetType, Object nullResult) {
+      this.propertyName = propertyName;
+      this.parameterObject = parameterObject;
+      this.targetType = targetType;
+      this.nullResult = nullResult;
+    }
+
+    /**
+     * Setter for the parent object that the property belongs to
+     *
+     * @param resultObject - the parent object
+     */
+    public void setResultObject(Object resultObject) {
+      this.resultObject = resultObject;
+    }
+  }
+
+}
@@ -15,8 +15,10 @@
  */
 package com.ibatis.sqlmap.engine.mapping.result.loader;
 
+import com.ibatis.common.beans.ClassInfo;
 import com.ibatis.sqlmap.engine.impl.ExtendedSqlMapClient;
 import com.ibatis.sqlmap.engine.type.DomCollectionTypeMarker;
+import com.ibatis.sqlmap.engine.type.DomTypeMarker;
 
 import java.sql.SQLException;
 import java.util.Collection;
@@ -44,17 +46,35 @@ public class ResultLoader {
    */
   public static Object loadResult(ExtendedSqlMapClient client, String statementName, Object parameterObject, Class targetType)
       throws SQLException {
+    return loadResult(client, statementName, parameterObject, targetType, null);
+  }
+
+  /**
+   * Loads a result lazily, as part of a batch
+   *
+   * @param client          - the client creating the object
+   * @param statementName   - the name of the statement to be used
+   * @param parameterObject - the parameters for the statement
+   * @param targetType      - the target type of the result
+   * @param batch           - the batch the parameters belong to (or null)
+   * @return the loaded result
+   * @throws SQLException
+   */
+  public static Object loadResult(ExtendedSqlMapClient client, String statementName, Object parameterObject, Class targetType, ResultBatch batch)
+      throws SQLException {
     Object value = null;
 
 
     if (client.isLazyLoadingEnabled()) {
       if (client.isEnhancementEnabled()) {
-        EnhancedLazyResultLoader lazy = new EnhancedLazyResultLoader(client, statementName, parameterObject, targetType);
+        EnhancedLazyResultLoader lazy = new EnhancedLazyResultLoader(client, statementName, parameterObject, targetType, batch);
         value = lazy.loadResult();
       } else {
-        LazyResultLoader lazy = new LazyResultLoader(client, statementName, parameterObject, targetType);
+        LazyResultLoader lazy = new LazyResultLoader(client, statementName, parameterObject, targetType, batch);
         value = lazy.loadResult();
       }
+    } else if (batch != null) {
+      value = batch.getResult(parameterObject, targetType);
     } else {
       value = getResult(client, statementName, parameterObject, targetType);
     }
@@ -62,6 +82,24 @@ public class ResultLoader {
     return value;
   }
 
+  /**
+   * Tells if results of a type will be loaded lazily, behind a proxy
+   *
+   * @param client     - the client creating the object
+   * @param targetType - the target type of the result
+   * @return true if the result will only be loaded when it is first used
+   */
+  public static boolean isLazyLoadable(ExtendedSqlMapClient client, Class targetType) {
+    if (!client.isLazyLoadingEnabled() || DomTypeMarker.class.isAssignableFrom(targetType)
+        || DomCollectionTypeMarker.class.isAssignableFrom(targetType)) {
+      return false;
+    } else if (Collection.class.isAssignableFrom(targetType)) {
+      return true;
+    } else {
+      return client.isEnhancementEnabled() && !targetType.isArray() && !ClassInfo.isKnownType(targetType);
+    }
+  }
+
   protected static Object getResult(ExtendedSqlMapClient client, String statementName, Object parameterObject, Class targetType) throws SQLException {
     Object value = null;
     if (DomCollectionTypeMarker.class.isAssignableFrom(targetType)) {
@@ -80,7 +118,7 @@ public class ResultLoader {
   }
 
 
-  private static Object[] listToArray(List list, Class type) {
+  static Object[] listToArray(List list, Class type) {
     Object array = java.lang.reflect.Array.newInstance(type, list.size());
     array = list.toArray((Object[]) array);
     return (Object[]) array;
@@ -32,6 +32,7 @@ public abstract class BaseStatement implements MappedStatement {
   private String id;
   private Integer resultSetType;
   private Integer fetchSize;
+  private String pageKey;
   private ResultMap resultMap;
   private ParameterMap parameterMap;
   private Class parameterClass;
@@ -63,6 +64,14 @@ public abstract class BaseStatement implements MappedStatement {
     this.fetchSize = fetchSize;
   }
 
+  public String getPageKey() {
+    return pageKey;
+  }
+
+  public void setPageKey(String pageKey) {
+    this.pageKey = pageKey;
+  }
+
   public void setId(String id) {
     this.id = id;
   }
@@ -114,6 +123,9 @@ public abstract class BaseStatement implements MappedStatement {
     cacheKey.update(id);
     cacheKey.update(baseCacheKey);
     cacheKey.update(sql.getSql(request, parameterObject)); //Fixes bug 953001
+    if (request.getPageKey() != null) {
+      cacheKey.update(request.getPageKey());
+    }
     return cacheKey;
   }
 
@@ -125,9 +137,9 @@ public abstract class BaseStatement implements MappedStatement {
     executeListeners.add(listener);
   }
 
-  public void notifyListeners() {
+  public void notifyListeners(Object parameterObject) {
     for (int i = 0, n = executeListeners.size(); i < n; i++) {
-      ((ExecuteListener) executeListeners.get(i)).onExecuteStatement(this);
+      ((ExecuteListener) executeListeners.get(i)).onExecuteStatement(this, parameterObject);
     }
   }
 
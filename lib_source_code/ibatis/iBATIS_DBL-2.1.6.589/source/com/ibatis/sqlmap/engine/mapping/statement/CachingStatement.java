@@ -17,7 +17,9 @@ package com.ibatis.sqlmap.engine.mapping.statement;
 
 import com.ibatis.sqlmap.client.event.RowHandler;
 import com.ibatis.sqlmap.engine.cache.CacheKey;
+import com.ibatis.sqlmap.engine.cache.CacheLoader;
 import com.ibatis.sqlmap.engine.cache.CacheModel;
+import com.ibatis.sqlmap.engine.execution.ResultSetCursor;
 import com.ibatis.sqlmap.engine.mapping.parameter.ParameterMap;
 import com.ibatis.sqlmap.engine.mapping.result.ResultMap;
 import com.ibatis.sqlmap.engine.mapping.sql.Sql;
@@ -53,6 +55,10 @@ public class CachingStatement implements MappedStatement {
     return statement.getFetchSize();
   }
 
+  public String getPageKey() {
+    return statement.getPageKey();
+  }
+
   public ParameterMap getParameterMap() {
     return statement.getParameterMap();
   }
@@ -67,43 +73,28 @@ public class CachingStatement implements MappedStatement {
     return n;
   }
 
-  public Object executeQueryForObject(RequestScope request, Transaction trans, Object parameterObject, Object resultObject)
+  public Object executeQueryForObject(final RequestScope request, final Transaction trans, final Object parameterObject, final Object resultObject)
       throws SQLException {
     CacheKey cacheKey = getCacheKey(request, parameterObject);
     cacheKey.update("executeQueryForObject");
-    Object object = cacheModel.getObject(cacheKey);
-    if (object == CacheModel.NULL_OBJECT){
-    	//	This was cached, but null
-    	object = null;
-    }else if (object == null) {
-      synchronized (cacheModel.getLock(cacheKey)) {
-        object = statement.executeQueryForObject(request, trans, parameterObject, resultObject);
-        cacheModel.putObject(cacheKey, object);
+    return cacheModel.getObject(cacheKey, parameterObject, new CacheLoader() {
+      public Object load() throws SQLException {
+        return statement.executeQueryForObject(request, trans, parameterObject, resultObject);
       }
-    }
-    return object;
+    });
   }
 
-  public List executeQueryForList(RequestScope request, Transaction trans, Object parameterObject, int skipResults, int maxResults)
+  public List executeQueryForList(final RequestScope request, final Transaction trans, final Object parameterObject, final int skipResults, final int maxResults)
       throws SQLException {
     CacheKey cacheKey = getCacheKey(request, parameterObject);
     cacheKey.update("executeQueryForList");
     cacheKey.update(skipResults);
     cacheKey.update(maxResults);
-    Object listAsObject = cacheModel.getObject(cacheKey);
-    List list;
-    if(listAsObject == CacheModel.NULL_OBJECT){
-      // The cached object was null
-      list = null;
-    }else if (listAsObject == null) {
-      synchronized (cacheModel.getLock(cacheKey)) {
-        list = statement.executeQueryForList(request, trans, parameterObject, skipResults, maxResults);
-        cacheModel.putObject(cacheKey, list);
+    return (List) cacheModel.getObject(cacheKey, parameterObject, new CacheLoader() {
+      public Object load() throws SQLException {
+        return statement.executeQueryForList(request, trans, parameterObject, skipResults, maxResults);
       }
-    }else{
-      list = (List) listAsObject;
-    }
-    return list;
+    });
   }
 
   public void executeQueryWithRowHandler(RequestScope request, Transaction trans, Object parameterObject, RowHandler rowHandler)
@@ -111,6 +102,11 @@ public class CachingStatement implements MappedStatement {
     statement.executeQueryWithRowHandler(request, trans, parameterObject, rowHandler);
   }
 
+  public ResultSetCursor executeQueryForCursor(RequestScope request, Transaction trans, Object parameterObject, RowHandler rowHandler)
+      throws SQLException {
+    return statement.executeQueryForCursor(request, trans, parameterObject, rowHandler);
+  }
+
   public CacheKey getCacheKey(RequestScope request, Object parameterObject) {
     CacheKey key = statement.getCacheKey(request, parameterObject);
     if (!cacheModel.isReadOnly() && !cacheModel.isSerialize()) {
@@ -127,8 +123,8 @@ public class CachingStatement implements MappedStatement {
     statement.addExecuteListener(listener);
   }
 
-  public void notifyListeners() {
-    statement.notifyListeners();
+  public void notifyListeners(Object parameterObject) {
+    statement.notifyListeners(parameterObject);
   }
 
   public void initRequest(RequestScope request) {
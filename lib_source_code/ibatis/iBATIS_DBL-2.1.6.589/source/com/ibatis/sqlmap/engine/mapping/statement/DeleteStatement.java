@@ -16,6 +16,7 @@
 package com.ibatis.sqlmap.engine.mapping.statement;
 
 import com.ibatis.sqlmap.client.event.RowHandler;
+import com.ibatis.sqlmap.engine.execution.ResultSetCursor;
 import com.ibatis.sqlmap.engine.scope.RequestScope;
 import com.ibatis.sqlmap.engine.transaction.Transaction;
 
@@ -43,4 +44,9 @@ public class DeleteStatement extends GeneralStatement {
     throw new SQLException("Delete statements cannot be executed as a query.");
   }
 
+  public ResultSetCursor executeQueryForCursor(RequestScope request, Transaction trans, Object parameterObject, RowHandler rowHandler)
+      throws SQLException {
+    throw new SQLException("Delete statements cannot be executed as a query.");
+  }
+
 }
@@ -17,6 +17,6 @@ package com.ibatis.sqlmap.engine.mapping.statement;
 
 public interface ExecuteListener {
 
-  public void onExecuteStatement(MappedStatement statement);
+  public void onExecuteStatement(MappedStatement statement, Object parameterObject);
 
 }
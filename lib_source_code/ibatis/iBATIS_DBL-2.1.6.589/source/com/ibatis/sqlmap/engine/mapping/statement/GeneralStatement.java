@@ -19,6 +19,7 @@ import com.ibatis.common.jdbc.exception.NestedSQLException;
 import com.ibatis.common.io.ReaderInputStream;
 import com.ibatis.common.exception.NestedRuntimeException;
 import com.ibatis.sqlmap.client.event.RowHandler;
+import com.ibatis.sqlmap.engine.execution.ResultSetCursor;
 import com.ibatis.sqlmap.engine.execution.SqlExecutor;
 import com.ibatis.sqlmap.engine.mapping.parameter.ParameterMap;
 import com.ibatis.sqlmap.engine.mapping.result.ResultMap;
@@ -84,7 +85,7 @@ public class GeneralStatement extends BaseStatement {
 
       errorContext.reset();
       sql.cleanup(request);
-      notifyListeners();
+      notifyListeners(parameterObject);
       return rows;
     } catch (SQLException e) {
       errorContext.setCause(e);
@@ -130,12 +131,61 @@ public class GeneralStatement extends BaseStatement {
   public void executeQueryWithRowHandler(RequestScope request, Transaction trans, Object parameterObject, RowHandler rowHandler)
       throws SQLException {
     try {
+      // The row handler sees each row as it is read, before a batch could be loaded
+      request.setResultBatching(false);
       executeQueryWithCallback(request, trans.getConnection(), parameterObject, null, rowHandler, SqlExecutor.NO_SKIPPED_RESULTS, SqlExecutor.NO_MAXIMUM_RESULTS);
     } catch (TransactionException e) {
       throw new NestedSQLException("Error getting Connection from Transaction.  Cause: " + e, e);
     }
   }
 
+  public ResultSetCursor executeQueryForCursor(RequestScope request, Transaction trans, Object parameterObject, RowHandler rowHandler)
+      throws SQLException {
+    ErrorContext errorContext = request.getErrorContext();
+    errorContext.setActivity("preparing the mapped statement for execution");
+    errorContext.setObjectId(this.getId());
+    errorContext.setResource(this.getResource());
+
+    try {
+      parameterObject = validateParameter(parameterObject);
+
+      Sql sql = getSql();
+
+      errorContext.setMoreInfo("Check the parameter map.");
+      ParameterMap parameterMap = sql.getParameterMap(request, parameterObject);
+
+      errorContext.setMoreInfo("Check the result map.");
+      ResultMap resultMap = sql.getResultMap(request, parameterObject);
+
+      request.setResultMap(resultMap);
+      request.setParameterMap(parameterMap);
+
+      errorContext.setMoreInfo("Check the parameter map.");
+      Object[] parameters = parameterMap.getParameterObjectValues(request, parameterObject);
+
+      errorContext.setMoreInfo("Check the SQL statement.");
+      String sqlString = sql.getSql(request, parameterObject);
+
+      errorContext.setActivity("executing mapped statement");
+      errorContext.setMoreInfo("Check the SQL statement or the result map.");
+      RowHandlerCallback callback = new RowHandlerCallback(resultMap, null, rowHandler);
+      ResultSetCursor cursor = sqlExecuteQueryForCursor(request, trans.getConnection(), sqlString, parameters, callback);
+
+      errorContext.reset();
+      sql.cleanup(request);
+      notifyListeners(parameterObject);
+      return cursor;
+    } catch (TransactionException e) {
+      throw new NestedSQLException("Error getting Connection from Transaction.  Cause: " + e, e);
+    } catch (SQLException e) {
+      errorContext.setCause(e);
+      throw new NestedSQLException(errorContext.toString(), e.getSQLState(), e.getErrorCode(), e);
+    } catch (Exception e) {
+      errorContext.setCause(e);
+      throw new NestedSQLException(errorContext.toString(), e);
+    }
+  }
+
   //
   //  PROTECTED METHODS
   //
@@ -172,6 +222,9 @@ public class GeneralStatement extends BaseStatement {
       RowHandlerCallback callback = new RowHandlerCallback(resultMap, resultObject, rowHandler);
       sqlExecuteQuery(request, conn, sqlString, parameters, skipResults, maxResults, callback);
 
+      errorContext.setMoreInfo("Check the batch statements of the nested selects.");
+      request.loadResultBatches();
+
       errorContext.setMoreInfo("Check the output parameters.");
       if (parameterObject != null) {
         postProcessParameterObject(request, parameterObject, parameters);
@@ -179,7 +232,7 @@ public class GeneralStatement extends BaseStatement {
 
       errorContext.reset();
       sql.cleanup(request);
-      notifyListeners();
+      notifyListeners(parameterObject);
     } catch (SQLException e) {
       errorContext.setCause(e);
       throw new NestedSQLException(errorContext.toString(), e.getSQLState(), e.getErrorCode(), e);
@@ -205,6 +258,10 @@ public class GeneralStatement extends BaseStatement {
     getSqlExecutor().executeQuery(request, conn, sqlString, parameters, skipResults, maxResults, callback);
   }
 
+  protected ResultSetCursor sqlExecuteQueryForCursor(RequestScope request, Connection conn, String sqlString, Object[] parameters, RowHandlerCallback callback) throws SQLException {
+    return getSqlExecutor().executeQueryForCursor(request, conn, sqlString, parameters, callback);
+  }
+
   protected Object validateParameter(Object param)
       throws SQLException {
     Object newParam = param;
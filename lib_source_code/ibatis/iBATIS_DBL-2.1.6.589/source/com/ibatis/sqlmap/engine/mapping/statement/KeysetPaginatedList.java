@@ -0,0 +1,289 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.mapping.statement;
+
+import com.ibatis.common.beans.ProbeFactory;
+import com.ibatis.common.exception.NestedRuntimeException;
+import com.ibatis.common.util.PaginatedList;
+import com.ibatis.sqlmap.client.SqlMapException;
+import com.ibatis.sqlmap.engine.execution.PageKey;
+import com.ibatis.sqlmap.engine.impl.ExtendedSqlMapExecutor;
+import com.ibatis.sqlmap.engine.mapping.result.BasicResultMapping;
+import com.ibatis.sqlmap.engine.mapping.result.ResultMap;
+import com.ibatis.sqlmap.engine.mapping.result.ResultMapping;
+
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * A paginated list for statements with a page key.  Each page is queried from
+ * the key of the last result of the page before it, instead of skipping the
+ * results of all the pages before it, so the cost of a page does not grow with
+ * its index.  The statement must be ordered by its page key, each column
+ * ascending or DESC, and the key properties of its results must not be null.
+ */
+public class KeysetPaginatedList implements PaginatedList {
+
+  private ExtendedSqlMapExecutor executor;
+  private MappedStatement statement;
+  private String statementName;
+  private Object parameterObject;
+
+  private int pageSize;
+  private int index;
+
+  private String[] keyProperties;
+  private String[] keyColumns;
+
+  // The key each known page starts after, null for the first page
+  private List pageKeys = new ArrayList();
+
+  private List currentPageList;
+  private boolean nextPageAvailable;
+
+  public KeysetPaginatedList(ExtendedSqlMapExecutor executor, MappedStatement statement, Object parameterObject, int pageSize)
+      throws SQLException {
+    this.executor = executor;
+    this.statement = statement;
+    this.statementName = statement.getId();
+    this.parameterObject = parameterObject;
+    this.pageSize = pageSize;
+
+    StringTokenizer parser = new StringTokenizer(statement.getPageKey(), ", ", false);
+    keyProperties = new String[parser.countTokens()];
+    for (int i = 0; i < keyProperties.length; i++) {
+      keyProperties[i] = parser.nextToken();
+    }
+
+    pageKeys.add(null);
+    pageTo(0);
+  }
+
+  public void pageTo(int idx) throws SQLException {
+    if (idx < 0) {
+      idx = 0;
+    }
+    // Pages past the last known key can only be found by seeking forward to them
+    int known = Math.min(idx, pageKeys.size() - 1);
+    loadPage(known);
+    while (index < idx && nextPageAvailable) {
+      loadPage(index + 1);
+    }
+    if (index < idx) {
+      index = idx;
+      currentPageList = new ArrayList(0);
+      nextPageAvailable = false;
+    }
+  }
+
+  private void loadPage(int idx) throws SQLException {
+    List list = executor.queryForPage(statementName, parameterObject, (PageKey) pageKeys.get(idx), pageSize + 1);
+    index = idx;
+    nextPageAvailable = list.size() > pageSize;
+    if (nextPageAvailable) {
+      currentPageList = list.subList(0, pageSize);
+      if (pageKeys.size() == idx + 1) {
+        pageKeys.add(getPageKey(currentPageList.get(pageSize - 1)));
+      }
+    } else {
+      currentPageList = list;
+    }
+  }
+
+  private PageKey getPageKey(Object object) {
+    if (keyColumns == null) {
+      keyColumns = getKeyColumns();
+    }
+    Object[] values = new Object[keyProperties.length];
+    for (int i = 0; i < keyProperties.length; i++) {
+      values[i] = ProbeFactory.getProbe(object).getObject(object, keyProperties[i]);
+      if (values[i] == null) {
+        throw new SqlMapException("The page key property '" + keyProperties[i] + "' of a result of statement '"
+            + statementName + "' is null.  Keyset pagination needs a page key that is never null.");
+      }
+    }
+    return new PageKey(keyColumns, values);
+  }
+
+  private String[] getKeyColumns() {
+    // Resolved from the result map once a page has been mapped, so that automatic result maps are known
+    ResultMap resultMap = statement.getResultMap();
+    ResultMapping[] mappings = resultMap == null ? null : resultMap.getResultMappings();
+    String[] columns = new String[keyProperties.length];
+    for (int i = 0; i < keyProperties.length; i++) {
+      columns[i] = keyProperties[i];
+      for (int j = 0; mappings != null && j < mappings.length; j++) {
+        BasicResultMapping mapping = (BasicResultMapping) mappings[j];
+        if (keyProperties[i].equals(mapping.getPropertyName()) && mapping.getColumnName() != null) {
+          columns[i] = mapping.getColumnName();
+          break;
+        }
+      }
+    }
+    return columns;
+  }
+
+  private void safePageTo(int idx) {
+    try {
+      pageTo(idx);
+    } catch (SQLException e) {
+      throw new NestedRuntimeException("Unexpected error while repaginating paged list.  Cause: " + e, e);
+    }
+  }
+
+  public boolean nextPage() {
+    if (isNextPageAvailable()) {
+      safePageTo(index + 1);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  public boolean previousPage() {
+    if (isPreviousPageAvailable()) {
+      safePageTo(index - 1);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  public void gotoPage(int pageNumber) {
+    safePageTo(pageNumber);
+  }
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public boolean isFirstPage() {
+    return index == 0;
+  }
+
+  public boolean isMiddlePage() {
+    return !(isFirstPage() || isLastPage());
+  }
+
+  public boolean isLastPage() {
+    return !nextPageAvailable;
+  }
+
+  public boolean isNextPageAvailable() {
+    return nextPageAvailable;
+  }
+
+  public boolean isPreviousPageAvailable() {
+    return index > 0;
+  }
+
+  public int size() {
+    return currentPageList.size();
+  }
+
+  public boolean isEmpty() {
+    return currentPageList.isEmpty();
+  }
+
+  public boolean contains(Object o) {
+    return currentPageList.contains(o);
+  }
+
+  public Iterator iterator() {
+    return currentPageList.iterator();
+  }
+
+  public Object[] toArray() {
+    return currentPageList.toArray();
+  }
+
+  public Object[] toArray(Object a[]) {
+    return currentPageList.toArray(a);
+  }
+
+  public boolean containsAll(Collection c) {
+    return currentPageList.containsAll(c);
+  }
+
+  public Object get(int index) {
+    return currentPageList.get(index);
+  }
+
+  public int indexOf(Object o) {
+    return currentPageList.indexOf(o);
+  }
+
+  public int lastIndexOf(Object o) {
+    return currentPageList.lastIndexOf(o);
+  }
+
+  public ListIterator listIterator() {
+    return currentPageList.listIterator();
+  }
+
+  public ListIterator listIterator(int index) {
+    return currentPageList.listIterator(index);
+  }
+
+  public List subList(int fromIndex, int toIndex) {
+    return currentPageList.subList(fromIndex, toIndex);
+  }
+
+  public boolean add(Object o) {
+    return currentPageList.add(o);
+  }
+
+  public boolean remove(Object o) {
+    return currentPageList.remove(o);
+  }
+
+  public boolean addAll(Collection c) {
+    return currentPageList.addAll(c);
+  }
+
+  public boolean addAll(int index, Collection c) {
+    return currentPageList.addAll(index, c);
+  }
+
+  public boolean removeAll(Collection c) {
+    return currentPageList.removeAll(c);
+  }
+
+  public boolean retainAll(Collection c) {
+    return currentPageList.retainAll(c);
+  }
+
+  public void clear() {
+    currentPageList.clear();
+  }
+
+  public Object set(int index, Object element) {
+    return currentPageList.set(index, element);
+  }
+
+  public void add(int index, Object element) {
+    currentPageList.add(index, element);
+  }
+
+  public Object remove(int index) {
+    return currentPageList.remove(index);
+  }
+
+  public int getPageIndex() {
+    return index;
+  }
+
+}
@@ -17,6 +17,7 @@ package com.ibatis.sqlmap.engine.mapping.statement;
 
 import com.ibatis.sqlmap.client.event.RowHandler;
 import com.ibatis.sqlmap.engine.cache.CacheKey;
+import com.ibatis.sqlmap.engine.execution.ResultSetCursor;
 import com.ibatis.sqlmap.engine.mapping.parameter.ParameterMap;
 import com.ibatis.sqlmap.engine.mapping.result.ResultMap;
 import com.ibatis.sqlmap.engine.mapping.sql.Sql;
@@ -46,6 +47,9 @@ public interface MappedStatement {
   public void executeQueryWithRowHandler(RequestScope request, Transaction trans, Object parameterObject, RowHandler rowHandler)
       throws SQLException;
 
+  public ResultSetCursor executeQueryForCursor(RequestScope request, Transaction trans, Object parameterObject, RowHandler rowHandler)
+      throws SQLException;
+
   public CacheKey getCacheKey(RequestScope request, Object parameterObject);
 
   public ParameterMap getParameterMap();
@@ -56,7 +60,7 @@ public interface MappedStatement {
 
   public void addExecuteListener(ExecuteListener listener);
 
-  public void notifyListeners();
+  public void notifyListeners(Object parameterObject);
 
   public void initRequest(RequestScope request);
 
@@ -66,5 +70,7 @@ public interface MappedStatement {
 
   public Integer getFetchSize();
 
+  public String getPageKey();
+
 
 }
@@ -0,0 +1,400 @@
+/*
+ *  Copyright 2004 Clinton Begin
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.ibatis.sqlmap.engine.mapping.statement;
+
+import com.ibatis.common.exception.NestedRuntimeException;
+import com.ibatis.common.jdbc.exception.NestedSQLException;
+import com.ibatis.common.util.BoundedExecutor;
+import com.ibatis.common.util.PaginatedList;
+import com.ibatis.sqlmap.client.SqlMapClient;
+import com.ibatis.sqlmap.client.SqlMapSession;
+
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * A paginated list that loads the pages after the current page in the
+ * background, while the current page is being used.
+ * <p/>
+ * Every page is loaded with a session of its own, opened from the SqlMapClient
+ * by whichever thread loads it, so the pages are never read within the
+ * transaction of the caller.  Pages that are loaded ahead but no longer needed
+ * after a gotoPage() are cancelled.
+ */
+public class PrefetchingPaginatedList implements PaginatedList {
+
+  private SqlMapClient client;
+  private BoundedExecutor executor;
+  private String statementName;
+  private Object parameterObject;
+
+  private int pageSize;
+  private int prefetchDepth;
+  private int index;
+
+  // The results read for the current page, including the one that tells whether there is a next page
+  private List pageList;
+  private List currentPageList;
+  private boolean nextPageAvailable;
+
+  // Pages loaded or being loaded around the current page, by page index
+  private Map pages = new HashMap();
+
+  private int prefetchHits;
+  private int prefetchMisses;
+
+  public PrefetchingPaginatedList(SqlMapClient client, BoundedExecutor executor, String statementName,
+                                  Object parameterObject, int pageSize, int prefetchDepth)
+      throws SQLException {
+    this.client = client;
+    this.executor = executor;
+    this.statementName = statementName;
+    this.parameterObject = parameterObject;
+    this.pageSize = pageSize;
+    this.prefetchDepth = prefetchDepth;
+    this.index = -1;
+    pageTo(0);
+  }
+
+  public void pageTo(int idx) throws SQLException {
+    if (idx < 0) {
+      idx = 0;
+    }
+
+    List list;
+    Page page = (Page) pages.remove(new Integer(idx));
+    if (page == null) {
+      list = getList(idx);
+      prefetchMisses++;
+    } else {
+      list = page.getResult();
+      if (page.loadedByCaller) {
+        prefetchMisses++;
+      } else if (page.prefetched) {
+        prefetchHits++;
+      }
+    }
+
+    if (index >= 0) {
+      // Keep the page being left, for a move back to it
+      pages.put(new Integer(index), new Page(index, pageList));
+    }
+
+    index = idx;
+    pageList = list;
+    if (list.size() > pageSize) {
+      currentPageList = list.subList(0, pageSize);
+      nextPageAvailable = true;
+    } else {
+      currentPageList = list;
+      nextPageAvailable = false;
+    }
+
+    // Cancel the pages too far from the new page, then load the pages after it
+    Iterator i = pages.values().iterator();
+    while (i.hasNext()) {
+      page = (Page) i.next();
+      if (page.index < idx - 1 || page.index > idx + prefetchDepth) {
+        page.cancel();
+        i.remove();
+      }
+    }
+    if (nextPageAvailable) {
+      for (int next = idx + 1; next <= idx + prefetchDepth; next++) {
+        Integer key = new Integer(next);
+        if (!pages.containsKey(key)) {
+          page = new Page(next);
+          if (!executor.execute(page)) {
+            break;
+          }
+          pages.put(key, page);
+        }
+      }
+    }
+  }
+
+  private List getList(int idx) throws SQLException {
+    // One more result than the page holds tells whether there is a next page
+    SqlMapSession session = client.openSession();
+    try {
+      return session.queryForList(statementName, parameterObject, idx * pageSize, pageSize + 1);
+    } finally {
+      session.close();
+    }
+  }
+
+  private void safePageTo(int idx) {
+    try {
+      pageTo(idx);
+    } catch (SQLException e) {
+      throw new NestedRuntimeException("Unexpected error while repaginating paged list.  Cause: " + e, e);
+    }
+  }
+
+  /**
+   * Get the number of pages that had been loaded ahead when they were needed
+   *
+   * @return - the number of prefetch hits
+   */
+  public int getPrefetchHits() {
+    return prefetchHits;
+  }
+
+  /**
+   * Get the number of pages that had to be loaded when they were needed,
+   * including pages that were queued but not started by then
+   *
+   * @return - the number of prefetch misses
+   */
+  public int getPrefetchMisses() {
+    return prefetchMisses;
+  }
+
+  public boolean nextPage() {
+    if (isNextPageAvailable()) {
+      safePageTo(index + 1);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  public boolean previousPage() {
+    if (isPreviousPageAvailable()) {
+      safePageTo(index - 1);
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  public void gotoPage(int pageNumber) {
+    safePageTo(pageNumber);
+  }
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public boolean isFirstPage() {
+    return index == 0;
+  }
+
+  public boolean isMiddlePage() {
+    return !(isFirstPage() || isLastPage());
+  }
+
+  public boolean isLastPage() {
+    return !nextPageAvailable;
+  }
+
+  public boolean isNextPageAvailable() {
+    return nextPageAvailable;
+  }
+
+  public boolean isPreviousPageAvailable() {
+    return index > 0;
+  }
+
+  public int size() {
+    return currentPageList.size();
+  }
+
+  public boolean isEmpty() {
+    return currentPageList.isEmpty();
+  }
+
+  public boolean contains(Object o) {
+    return currentPageList.contains(o);
+  }
+
+  public Iterator iterator() {
+    return currentPageList.iterator();
+  }
+
+  public Object[] toArray() {
+    return currentPageList.toArray();
+  }
+
+  public Object[] toArray(Object a[]) {
+    return currentPageList.toArray(a);
+  }
+
+  public boolean containsAll(Collection c) {
+    return currentPageList.containsAll(c);
+  }
+
+  public Object get(int index) {
+    return currentPageList.get(index);
+  }
+
+  public int indexOf(Object o) {
+    return currentPageList.indexOf(o);
+  }
+
+  public int lastIndexOf(Object o) {
+    return currentPageList.lastIndexOf(o);
+  }
+
+  public ListIterator listIterator() {
+    return currentPageList.listIterator();
+  }
+
+  public ListIterator listIterator(int index) {
+    return currentPageList.listIterator(index);
+  }
+
+  public List subList(int fromIndex, int toIndex) {
+    return currentPageList.subList(fromIndex, toIndex);
+  }
+
+  public boolean add(Object o) {
+    return currentPageList.add(o);
+  }
+
+  public boolean remove(Object o) {
+    return currentPageList.remove(o);
+  }
+
+  public boolean addAll(Collection c) {
+    return currentPageList.addAll(c);
+  }
+
+  public boolean addAll(int index, Collection c) {
+    return currentPageList.addAll(index, c);
+  }
+
+  public boolean removeAll(Collection c) {
+    return currentPageList.removeAll(c);
+  }
+
+  public boolean retainAll(Collection c) {
+    return currentPageList.retainAll(c);
+  }
+
+  public void clear() {
+    currentPageList.clear();
+  }
+
+  public Object set(int index, Object element) {
+    return currentPageList.set(index, element);
+  }
+
+  public void add(int index, Object element) {
+    currentPageList.add(index, element);
+  }
+
+  public Object remove(int index) {
+    return currentPageList.remove(index);
+  }
+
+  public int getPageIndex() {
+    return index;
+  }
+
+  /**
+   * A page loaded by the executor, or kept from an earlier move
+   */
+  private class Page implements Runnable {
+
+    private int index;
+    private boolean prefetched;
+
+    private boolean started;
+    private boolean loadedByCaller;
+    private boolean done;
+    private boolean cancelled;
+    private List list;
+    private SQLException error;
+
+    private Page(int index) {
+      this.index = index;
+      this.prefetched = true;
+    }
+
+    private Page(int index, List list) {
+      this.index = index;
+      this.started = true;
+      this.done = true;
+      this.list = list;
+    }
+
+    public void run() {
+      load();
+    }
+
+    /**
+     * Loads the page unless it has been started or cancelled
+     *
+     * @return - true if this call loaded the page
+     */
+    private boolean load() {
+      synchronized (this) {
+        if (started || cancelled) {
+          return false;
+        }
+        started = true;
+      }
+      List result = null;
+      SQLException failure = null;
+      try {
+        result = getList(index);
+      } catch (SQLException e) {
+        failure = e;
+      } catch (RuntimeException e) {
+        failure = new NestedSQLException("Error loading page " + index + " in the background.  Cause: " + e, e);
+      }
+      synchronized (this) {
+        list = result;
+        error = failure;
+        done = true;
+        notifyAll();
+      }
+      return true;
+    }
+
+    private List getResult() throws SQLException {
+      // Load the page here if no thread has started it yet (or the executor has dropped it)
+      executor.remove(this);
+      if (load()) {
+        loadedByCaller = true;
+      }
+      synchronized (this) {
+        while (!done) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for page " + index + " to load.");
+          }
+        }
+        if (error != null) {
+          throw error;
+        }
+        return list;
+      }
+    }
+
+    private void cancel() {
+      synchronized (this) {
+        cancelled = true;
+      }
+      executor.remove(this);
+    }
+
+  }
+
+}
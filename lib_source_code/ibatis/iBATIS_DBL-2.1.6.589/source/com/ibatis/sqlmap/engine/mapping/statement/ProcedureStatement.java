@@ -15,6 +15,7 @@
  */
 package com.ibatis.sqlmap.engine.mapping.statement;
 
+import com.ibatis.sqlmap.engine.execution.ResultSetCursor;
 import com.ibatis.sqlmap.engine.scope.RequestScope;
 
 import java.sql.Connection;
@@ -34,6 +35,10 @@ public class ProcedureStatement extends GeneralStatement {
     getSqlExecutor().executeQueryProcedure(request, conn, sqlString.trim(), parameters, skipResults, maxResults, callback);
   }
 
+  protected ResultSetCursor sqlExecuteQueryForCursor(RequestScope request, Connection conn, String sqlString, Object[] parameters, RowHandlerCallback callback) throws SQLException {
+    throw new SQLException("Procedures cannot be executed as a cursor (output parameters are only set once all results are read).");
+  }
+
   public StatementType getStatementType() {
     return StatementType.PROCEDURE;
   }
@@ -16,6 +16,7 @@
 package com.ibatis.sqlmap.engine.mapping.statement;
 
 import com.ibatis.sqlmap.client.event.RowHandler;
+import com.ibatis.sqlmap.engine.mapping.result.BasicResultMap;
 import com.ibatis.sqlmap.engine.mapping.result.ResultMap;
 import com.ibatis.sqlmap.engine.scope.RequestScope;
 import com.ibatis.sqlmap.engine.type.XmlTypeMarker;
@@ -38,6 +39,9 @@ public class RowHandlerCallback {
   private ResultMap resultMap;
   private Object resultObject;
 
+  // A result object of an ordered group by that may still be receiving rows
+  private Object pendingObject = ResultMap.NO_VALUE;
+
   /**
    * Constructor
    *
@@ -60,8 +64,38 @@ public class RowHandlerCallback {
   public void handleResultObject(RequestScope request, Object[] results, ResultSet rs) throws SQLException {
     Object object;
 
-    object = resultMap.resolveSubMap(request, rs).setResultObjectValues(request, resultObject, results);
+    ResultMap rowMap = resultMap.resolveSubMap(request, rs);
+    object = rowMap.setResultObjectValues(request, resultObject, results);
+
+    if (rowMap instanceof BasicResultMap && ((BasicResultMap) rowMap).isGroupByOrdered()
+        && object != ResultMap.NO_VALUE) {
+      // a new group has started, so the previous one is complete
+      Object completed = pendingObject;
+      pendingObject = object;
+      object = completed;
+    }
+
+    handleMappedObject(request, object);
+  }
+
+  /**
+   * Passes on the result object of the last ordered group, once there are no more rows
+   *
+   * @param request - the request scope
+   */
+  public void handlePendingObject(RequestScope request) {
+    Object object = pendingObject;
+    pendingObject = ResultMap.NO_VALUE;
+    handleMappedObject(request, object);
+  }
 
+  /**
+   * Passes a row object that has already been mapped to the row handler
+   *
+   * @param request - the request scope
+   * @param object  - the row object
+   */
+  public void handleMappedObject(RequestScope request, Object object) {
     if (object != ResultMap.NO_VALUE) {
       //  XML Only special processing. (converts elements to string for easy insertion).
       int stackDepth = request.getSession().getRequestStackDepth();
@@ -77,6 +111,15 @@ public class RowHandlerCallback {
     }
   }
 
+  /**
+   * Getter for the object the rows are mapped into
+   *
+   * @return - the result object (or null if a new object is created for each row)
+   */
+  public Object getResultObject() {
+    return resultObject;
+  }
+
   private String documentToString(Document document) {
     String s = null;
 
@@ -15,12 +15,18 @@
  */
 package com.ibatis.sqlmap.engine.scope;
 
+import com.ibatis.sqlmap.engine.execution.PageKey;
 import com.ibatis.sqlmap.engine.mapping.parameter.ParameterMap;
 import com.ibatis.sqlmap.engine.mapping.result.ResultMap;
+import com.ibatis.sqlmap.engine.mapping.result.ResultMapping;
+import com.ibatis.sqlmap.engine.mapping.result.loader.ResultBatch;
 import com.ibatis.sqlmap.engine.mapping.sql.Sql;
 import com.ibatis.sqlmap.engine.mapping.statement.MappedStatement;
 
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 
@@ -42,10 +48,22 @@ public class RequestScope extends BaseScope {
   private ParameterMap dynamicParameterMap;
   private String dynamicSql;
 
+  // Used by keyset pagination
+  private PageKey pageKey;
+
   // Used by N+1 Select solution
   private ResultSet resultSet;
   private Map uniqueKeys;
   private boolean rowDataFound;
+  private Map columnIndexes;
+  private Map resolvedResultMaps;
+
+  // Used by batched nested selects
+  private Map resultBatches;
+  private List loadedBatches;
+  private List batchTargets;
+  private boolean resultBatching;
+
   /**
    * Default constructor
    */
@@ -187,12 +205,82 @@ public class RequestScope extends BaseScope {
     this.dynamicSql = dynamicSql;
   }
 
+  /**
+   * Get the key that the results of the request must follow
+   * @return - the page key (or null)
+   */
+  public PageKey getPageKey() {
+    return pageKey;
+  }
+
+  /**
+   * Set the key that the results of the request must follow
+   * @param pageKey - the page key (or null)
+   */
+  public void setPageKey(PageKey pageKey) {
+    this.pageKey = pageKey;
+  }
+
   public ResultSet getResultSet() {
     return resultSet;
   }
 
   public void setResultSet(ResultSet resultSet) {
     this.resultSet = resultSet;
+    this.columnIndexes = null;
+    this.resolvedResultMaps = null;
+  }
+
+  /**
+   * Get the result map an automatic result map resolved for the current result set
+   *
+   * @param map - the automatic result map
+   * @return - the resolved result map (or null)
+   */
+  public ResultMap getResolvedResultMap(ResultMap map) {
+    if (resolvedResultMaps == null) {
+      return null;
+    }
+    return (ResultMap) resolvedResultMaps.get(map);
+  }
+
+  /**
+   * Set the result map an automatic result map resolved for the current result set
+   *
+   * @param map      - the automatic result map
+   * @param resolved - the resolved result map
+   */
+  public void setResolvedResultMap(ResultMap map, ResultMap resolved) {
+    if (resolvedResultMaps == null) {
+      resolvedResultMaps = new HashMap();
+    }
+    resolvedResultMaps.put(map, resolved);
+  }
+
+  /**
+   * Get the column indexes a result map found in the current result set
+   *
+   * @param map - the result map
+   * @return - the column index of each result mapping (or null)
+   */
+  public int[] getColumnIndexes(ResultMap map) {
+    if (columnIndexes == null) {
+      return null;
+    }
+    return (int[]) columnIndexes.get(map);
+  }
+
+  /**
+   * Set the column indexes a result map found in the current result set
+   *
+   * @param map     - the result map
+   * @param indexes - the column index of each result mapping
+   */
+  public void setColumnIndexes(ResultMap map, int[] indexes) {
+    if (columnIndexes == null) {
+      columnIndexes = new HashMap();
+    }
+    columnIndexes.put(map, indexes);
   }
 
   public Map getUniqueKeys(ResultMap map) {
@@ -209,6 +297,93 @@ public class RequestScope extends BaseScope {
     this.uniqueKeys.put(map, keys);
   }
 
+  /**
+   * Tells whether nested selects of this request may be loaded in batches
+   *
+   * @return - true if they may be batched
+   */
+  public boolean isResultBatching() {
+    return resultBatching;
+  }
+
+  /**
+   * Allow or prevent loading the nested selects of this request in batches
+   *
+   * @param resultBatching - false to load them row by row
+   */
+  public void setResultBatching(boolean resultBatching) {
+    this.resultBatching = resultBatching;
+  }
+
+  /**
+   * Get the batch currently collecting parameters for a nested select
+   *
+   * @param mapping - the result mapping of the nested select
+   * @return - the batch (or null)
+   */
+  public ResultBatch getResultBatch(ResultMapping mapping) {
+    if (resultBatches == null) {
+      return null;
+    }
+    return (ResultBatch) resultBatches.get(mapping);
+  }
+
+  /**
+   * Set the batch collecting parameters for a nested select
+   *
+   * @param mapping - the result mapping of the nested select
+   * @param batch   - the new batch
+   */
+  public void setResultBatch(ResultMapping mapping, ResultBatch batch) {
+    if (resultBatches == null) {
+      resultBatches = new HashMap();
+      loadedBatches = new ArrayList();
+    }
+    resultBatches.put(mapping, batch);
+    loadedBatches.add(batch);
+  }
+
+  /**
+   * Add a property of the current row to be set when its batch is loaded
+   *
+   * @param target - the property
+   */
+  public void addBatchTarget(ResultBatch.Target target) {
+    if (batchTargets == null) {
+      batchTargets = new ArrayList();
+    }
+    batchTargets.add(target);
+  }
+
+  /**
+   * Give the properties of the current row their result object
+   *
+   * @param resultObject - the result object of the row (or null to discard them)
+   */
+  public void bindBatchTargets(Object resultObject) {
+    if (batchTargets != null) {
+      for (int i = 0, n = batchTargets.size(); i < n; i++) {
+        ((ResultBatch.Target) batchTargets.get(i)).setResultObject(resultObject);
+      }
+      batchTargets.clear();
+    }
+  }
+
+  /**
+   * Load the batches that have properties waiting for them
+   *
+   * @throws SQLException - if a batch statement fails
+   */
+  public void loadResultBatches() throws SQLException {
+    if (loadedBatches != null) {
+      for (int i = 0, n = loadedBatches.size(); i < n; i++) {
+        ((ResultBatch) loadedBatches.get(i)).setTargetValues();
+      }
+      resultBatches = null;
+      loadedBatches = null;
+    }
+  }
+
   public boolean isRowDataFound() {
     return rowDataFound;
   }
@@ -230,6 +405,13 @@ public class RequestScope extends BaseScope {
     resultSet = null;
     uniqueKeys = null;
     rowDataFound = true;
+    columnIndexes = null;
+    resolvedResultMaps = null;
+    resultBatches = null;
+    loadedBatches = null;
+    batchTargets = null;
+    resultBatching = true;
+    pageKey = null;
   }
 
 }
@@ -48,6 +48,7 @@ public class SessionScope extends BaseScope {
 
   // Used by SqlExecutor
   private Object batch;
+  private Object statementCache;
 
   private boolean commitRequired;
 
@@ -184,6 +185,24 @@ public class SessionScope extends BaseScope {
     this.batch = batch;
   }
 
+  /**
+   * Getter for the prepared statement cache of the session
+   * 
+   * @return - the statement cache
+   */
+  public Object getStatementCache() {
+    return statementCache;
+  }
+
+  /**
+   * Setter for the prepared statement cache of the session
+   * 
+   * @param statementCache - the new statement cache
+   */
+  public void setStatementCache(Object statementCache) {
+    this.statementCache = statementCache;
+  }
+
   /**
    * Get the request stack depth
    * 
@@ -234,6 +253,7 @@ public class SessionScope extends BaseScope {
     transaction = null;
     transactionState = null;
     batch = null;
+    statementCache = null;
     requestStackDepth = 0;
     id = getNextId();
   }